@@ -4,14 +4,14 @@ import android.app.Application;
 import android.util.Log;
 
 import com.stonecraft.datastore.Datastore;
+import com.stonecraft.datastore.DbSchema;
 import com.stonecraft.datastore.OnConnectionListener;
 import com.stonecraft.datastore.exceptions.DatabaseException;
 
-import java.io.IOException;
-
 /**
  * Created by michaeldelaney on 20/11/15.
  */
+@DbSchema("database.xml")
 public class DatastoreApplication extends Application {
 
     @Override
@@ -23,7 +23,7 @@ public class DatastoreApplication extends Application {
 
     private void connectToDB() {
         try {
-            Datastore.createConnection(this, getAssets().open("database.xml"),
+            Datastore.createConnection(this, new DatastoreApplication_SchemaFactory(),
                     new OnConnectionListener() {
                         @Override
                         public void onConnectionCreated(Datastore datastore) {
@@ -49,10 +49,14 @@ public class DatastoreApplication extends Application {
                         public void closingAndCreatingNewConnection(String dbName) {
                             Log.d("TEST", "closingAndCreatingNewConnection " + dbName);
                         }
+
+                        @Override
+                        public void onMigrationProgress(String tableName, long copiedRows,
+                                long totalRows) {
+                            Log.d("TEST", "Rebuilding " + tableName + " " + copiedRows + "/"
+                                    + totalRows);
+                        }
                     });
-        } catch(IOException e)
-        {
-            Log.e("DB connection/creation", "Failed to get database xml [" + e + "]");
         } catch (DatabaseException e) {
             Log.e("DB connection/creation", "Failed to create database [" + e + "]");
         }
@@ -20,6 +20,7 @@ import android.widget.TextView;
 
 import com.stonecraft.database.datastoredemo.app.R;
 import com.stonecraft.datastore.AggregateQuery;
+import com.stonecraft.datastore.BulkInsertResult;
 import com.stonecraft.datastore.Datastore;
 import com.stonecraft.datastore.DatastoreTransaction;
 import com.stonecraft.datastore.DbDataLoader;
@@ -41,6 +42,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -535,20 +537,36 @@ public class MainActivity extends AppCompatActivity
 
         long millis = Calendar.getInstance().getTimeInMillis();
         Datastore ds = Datastore.getDataStore(DB_NAME);
-        DatastoreTransaction dt = new DatastoreTransaction();
-
-        for(int i = 0; i < 25000; i++) {
-            Shortlist shortlist = new Shortlist();
-            shortlist.setIsFavourite(true);
-            shortlist.setAddress("This is the property address");
-            shortlist.setPostcode(2079);
-            Insert<Shortlist> insert = new Insert("SHORT_LIST", shortlist);
-            dt.addStatement(insert);
-        }
+
+        // the rows are created as they are inserted so they are never all held in memory
+        Iterator<Shortlist> rows = new Iterator<Shortlist>() {
+            int count = 0;
+
+            @Override
+            public boolean hasNext() {
+                return count < 25000;
+            }
+
+            @Override
+            public Shortlist next() {
+                count++;
+                Shortlist shortlist = new Shortlist();
+                shortlist.setIsFavourite(true);
+                shortlist.setAddress("This is the property address");
+                shortlist.setPostcode(2079);
+                return shortlist;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
 
         try {
-            dt.executeOnCurrentThread(ds);
-            Log.d("TEST", "Time to save = " + (Calendar.getInstance().getTimeInMillis() - millis));
+            BulkInsertResult result = ds.bulkInsert("SHORT_LIST", rows, null);
+            Log.d("TEST", "Time to save " + result.getInsertedCount() + " rows = "
+                    + (Calendar.getInstance().getTimeInMillis() - millis));
         } catch (DatabaseException e) {
             e.printStackTrace();
         }
@@ -584,8 +602,11 @@ public class MainActivity extends AppCompatActivity
                         values.put("PROPERTY_POSTCODE", (2000 + i + extra.get()));
                         rows.add(values);
                     }
-                    Insert insert = new Insert("SHORT_LIST", rows);
-                    ds.executeNonQuery(1, insert, null);
+                    try {
+                        ds.bulkInsert("SHORT_LIST", rows, null);
+                    } catch (DatabaseException e) {
+                        e.printStackTrace();
+                    }
                     query();
                     Log.d("TEST", "Completed iteration " + extra.get());
 
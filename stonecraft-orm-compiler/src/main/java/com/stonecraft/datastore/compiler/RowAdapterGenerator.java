@@ -0,0 +1,531 @@
+package com.stonecraft.datastore.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * This class writes the source of the RowMapper and RowBinder of a class with fields annotated
+ * with DbColumnName. The generated code does what the object injectors and the
+ * ContentValueCreator do with reflection, reading and writing the fields directly or through
+ * their getters and setters, so a class can only have a generated adapter if the adapter can
+ * reach each of it's annotated fields. Objects whose fields can't all be set, such as Kotlin
+ * data classes, are created with the constructor whose parameters match the annotated fields
+ * by name and type.
+ */
+class RowAdapterGenerator {
+    static final String DB_COLUMN_NAME = "com.stonecraft.datastore.DbColumnName";
+    static final String DB_TABLE_NAME = "com.stonecraft.datastore.DbTableName";
+    static final String DB_TABLE_GROUP = "com.stonecraft.datastore.DbTableGroup";
+    static final String MAPPER_SUFFIX = "_RowMapper";
+    static final String BINDER_SUFFIX = "_RowBinder";
+    private static final String VALUE = "value";
+    private static final String IS_QUERY_ONLY = "isQueryOnly";
+    private static final String BITMAP = "android.graphics.Bitmap";
+    //the RSData getter for each type the object injectors can inject
+    private static final Map<String, String> DATA_GETTERS = new HashMap<String, String>();
+
+    static {
+        DATA_GETTERS.put("int", "getIntValue");
+        DATA_GETTERS.put("java.lang.Integer", "getIntValue");
+        DATA_GETTERS.put("boolean", "getBooleanValue");
+        DATA_GETTERS.put("java.lang.Boolean", "getBooleanValue");
+        DATA_GETTERS.put("double", "getDoubleValue");
+        DATA_GETTERS.put("java.lang.Double", "getDoubleValue");
+        DATA_GETTERS.put("float", "getFloatValue");
+        DATA_GETTERS.put("java.lang.Float", "getFloatValue");
+        DATA_GETTERS.put("java.lang.String", "getStringValue");
+        DATA_GETTERS.put("java.util.Calendar", "getCalendarValue");
+        DATA_GETTERS.put("java.util.Date", "getDateValue");
+        DATA_GETTERS.put(BITMAP, "getBlobData");
+    }
+
+    private final ProcessingEnvironment myEnv;
+    private final TypeElement myType;
+    private final String myPackageName;
+    private final String myTypeName;
+    private final String myFlatName;
+    private final List<ColumnField> myFields;
+    private boolean myHasJoinedFields;
+
+    RowAdapterGenerator(ProcessingEnvironment env, TypeElement type) {
+        myEnv = env;
+        myType = type;
+        PackageElement packageElement = env.getElementUtils().getPackageOf(type);
+        myPackageName = packageElement.getQualifiedName().toString();
+        myTypeName = type.getQualifiedName().toString();
+        myFlatName = getFlatName(type);
+        myFields = new ArrayList<ColumnField>();
+        readFields();
+    }
+
+    String getPackageName() {
+        return myPackageName;
+    }
+
+    String getMapperName() {
+        return myFlatName + MAPPER_SUFFIX;
+    }
+
+    String getBinderName() {
+        return myFlatName + BINDER_SUFFIX;
+    }
+
+    /**
+     * This method returns why a mapper can't be generated for the class or null if it can.
+     *
+     * @return
+     */
+    String getMapperProblem() {
+        String problem = getTypeProblem();
+        if (problem != null) {
+            return problem;
+        }
+        if (myHasJoinedFields) {
+            return "it has fields annotated with DbTableName or DbTableGroup";
+        }
+        if (myType.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "it is abstract";
+        }
+        if (myType.getNestingKind() == NestingKind.MEMBER
+                && !myType.getModifiers().contains(Modifier.STATIC)) {
+            return "it is an inner class";
+        }
+        if (findConstructor() == null) {
+            return "it has no constructor with no parameters or with parameters that match "
+                    + "it's annotated fields";
+        }
+        for (ColumnField field : myFields) {
+            if (field.dataGetter != null && !field.isConstructorParameter
+                    && !field.isSettable()) {
+                return "the field " + field.name + " can't be set";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method returns why a binder can't be generated for the class or null if it can.
+     *
+     * @return
+     */
+    String getBinderProblem() {
+        String problem = getTypeProblem();
+        if (problem != null) {
+            return problem;
+        }
+        for (ColumnField field : myFields) {
+            if (!field.isQueryOnly && field.reader == null) {
+                return "the field " + field.name + " can't be read";
+            }
+        }
+        return null;
+    }
+
+    String generateMapper() {
+        ExecutableElement constructor = findConstructor();
+        List<ColumnField> mappedFields = new ArrayList<ColumnField>();
+        for (ColumnField field : myFields) {
+            if (field.dataGetter != null) {
+                mappedFields.add(field);
+            }
+        }
+
+        StringBuilder source = new StringBuilder();
+        writeHeader(source);
+        source.append("import com.stonecraft.datastore.RSData;\n");
+        source.append("import com.stonecraft.datastore.RowMapper;\n");
+        source.append("import com.stonecraft.datastore.exceptions.DatabaseException;\n\n");
+        writeClassDoc(source);
+        source.append("public final class ").append(getMapperName())
+                .append(" implements RowMapper<").append(myTypeName).append("> {\n");
+        source.append("    private static final String[] COLUMN_NAMES = {");
+        for (int i = 0; i < mappedFields.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append(literal(mappedFields.get(i).column));
+        }
+        source.append("};\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public String[] getColumnNames() {\n");
+        source.append("        return COLUMN_NAMES.clone();\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public ").append(myTypeName)
+                .append(" map(RSData data, int[] columnIndexes) throws DatabaseException {\n");
+
+        //the constructor parameters are read first so the object can be created with them
+        List<String> arguments = new ArrayList<String>();
+        if (constructor != null) {
+            for (VariableElement parameter : constructor.getParameters()) {
+                ColumnField field = getField(parameter.getSimpleName().toString());
+                String variable = "_" + field.name;
+                source.append("        ").append(field.typeName).append(' ').append(variable)
+                        .append(" = ").append(getDefaultValue(field.type)).append(";\n");
+                int index = mappedFields.indexOf(field);
+                if (index >= 0) {
+                    writeRead(source, field, index, variable);
+                }
+                arguments.add(variable);
+            }
+        }
+
+        source.append("        ").append(myTypeName).append(" row = new ").append(myTypeName)
+                .append('(');
+        for (int i = 0; i < arguments.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append(arguments.get(i));
+        }
+        source.append(");\n");
+
+        for (int i = 0; i < mappedFields.size(); i++) {
+            ColumnField field = mappedFields.get(i);
+            if (!field.isConstructorParameter) {
+                String target = field.isFieldWritable ? "row." + field.name : null;
+                writeRead(source, field, i, target);
+            }
+        }
+
+        source.append("        return row;\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    String generateBinder() {
+        StringBuilder source = new StringBuilder();
+        writeHeader(source);
+        source.append("import com.stonecraft.datastore.RowBinder;\n\n");
+        source.append("import java.util.List;\n\n");
+        writeClassDoc(source);
+        source.append("public final class ").append(getBinderName())
+                .append(" implements RowBinder<").append(myTypeName).append("> {\n");
+        source.append("    @Override\n");
+        source.append("    public void getColumnValues(").append(myTypeName)
+                .append(" object, List<String> columns, List<Object> values) {\n");
+        source.append("        Object value;\n");
+        for (ColumnField field : myFields) {
+            if (field.isQueryOnly) {
+                continue;
+            }
+            source.append("        value = object.").append(field.reader).append(";\n");
+            source.append("        if (value != null) {\n");
+            source.append("            columns.add(").append(literal(field.column)).append(");\n");
+            source.append("            values.add(value);\n");
+            source.append("        }\n");
+        }
+        source.append("    }\n");
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    /**
+     * This method writes the statements that read the column of a field from the data if it is
+     * in the data and isn't null. The value is either assigned to the passed in target or
+     * passed to the field's setter if the target is null.
+     */
+    private void writeRead(StringBuilder source, ColumnField field, int index, String target) {
+        String key = "columnIndexes[" + index + "]";
+        source.append("        if (").append(key).append(" >= 0 && !data.containsNull(")
+                .append(key).append(")) {\n");
+        String value = "data." + field.dataGetter + "(" + key + ")";
+        if (BITMAP.equals(field.typeName)) {
+            source.append("            byte[] bitmapData = ").append(value).append(";\n");
+            value = "android.graphics.BitmapFactory.decodeByteArray(bitmapData, 0, "
+                    + "bitmapData.length)";
+        }
+        if (target != null) {
+            source.append("            ").append(target).append(" = ").append(value)
+                    .append(";\n");
+        } else {
+            source.append("            row.").append(field.setter).append('(').append(value)
+                    .append(");\n");
+        }
+        source.append("        }\n");
+    }
+
+    private void writeHeader(StringBuilder source) {
+        if (!myPackageName.isEmpty()) {
+            source.append("package ").append(myPackageName).append(";\n\n");
+        }
+    }
+
+    private void writeClassDoc(StringBuilder source) {
+        source.append("/**\n");
+        source.append(" * This class was generated by the stonecraft-orm-compiler for ")
+                .append(myTypeName).append(". Do not edit it.\n");
+        source.append(" */\n");
+    }
+
+    /**
+     * @return why no adapter can be generated for the class or null if the class can have
+     * adapters
+     */
+    private String getTypeProblem() {
+        if (myType.getKind() != ElementKind.CLASS) {
+            return "it isn't a class";
+        }
+        if (!myType.getTypeParameters().isEmpty()) {
+            return "it has type parameters";
+        }
+        Element element = myType;
+        while (element instanceof TypeElement) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return "it is private";
+            }
+            element = element.getEnclosingElement();
+        }
+        return null;
+    }
+
+    /**
+     * This method finds the constructor the mapper creates the object with. A constructor with
+     * no parameters is used if there is one, otherwise it is the constructor whose parameters
+     * are all annotated fields with the same name and type.
+     *
+     * @return the constructor or null if there isn't a usable constructor
+     */
+    private ExecutableElement findConstructor() {
+        ExecutableElement matchingConstructor = null;
+        for (ExecutableElement constructor :
+                ElementFilter.constructorsIn(myType.getEnclosedElements())) {
+            if (!isAccessible(constructor)) {
+                continue;
+            }
+            if (constructor.getParameters().isEmpty()) {
+                markConstructorParameters(constructor);
+                return constructor;
+            }
+            if (matchingConstructor == null && isMatchingConstructor(constructor)) {
+                matchingConstructor = constructor;
+            }
+        }
+
+        markConstructorParameters(matchingConstructor);
+        return matchingConstructor;
+    }
+
+    private boolean isMatchingConstructor(ExecutableElement constructor) {
+        for (VariableElement parameter : constructor.getParameters()) {
+            ColumnField field = getField(parameter.getSimpleName().toString());
+            if (field == null || !myEnv.getTypeUtils().isSameType(field.type,
+                    parameter.asType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markConstructorParameters(ExecutableElement constructor) {
+        for (ColumnField field : myFields) {
+            field.isConstructorParameter = false;
+        }
+        if (constructor == null) {
+            return;
+        }
+        for (VariableElement parameter : constructor.getParameters()) {
+            getField(parameter.getSimpleName().toString()).isConstructorParameter = true;
+        }
+    }
+
+    private ColumnField getField(String name) {
+        for (ColumnField field : myFields) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method reads the annotated fields of the class and it's super classes in the same
+     * order DatabaseUtils.getFieldsFromClass() returns them.
+     */
+    private void readFields() {
+        Map<String, ExecutableElement> methods = new LinkedHashMap<String, ExecutableElement>();
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                myEnv.getElementUtils().getAllMembers(myType))) {
+            if (isAccessible(method) && !method.getModifiers().contains(Modifier.STATIC)) {
+                methods.put(method.getSimpleName() + "/" + method.getParameters().size(),
+                        method);
+            }
+        }
+
+        TypeElement current = myType;
+        while (current != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (getAnnotation(field, DB_TABLE_NAME) != null
+                        || getAnnotation(field, DB_TABLE_GROUP) != null) {
+                    myHasJoinedFields = true;
+                }
+                AnnotationMirror annotation = getAnnotation(field, DB_COLUMN_NAME);
+                if (annotation != null) {
+                    myFields.add(new ColumnField(field, annotation, methods));
+                }
+            }
+
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement)((DeclaredType)superclass).asElement() : null;
+        }
+    }
+
+    /**
+     * @return whether the generated classes, which are in the same package as the class, can
+     * use the passed in member
+     */
+    private boolean isAccessible(Element member) {
+        if (member.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (member.getModifiers().contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return myEnv.getElementUtils().getPackageOf(member).getQualifiedName().toString()
+                .equals(myPackageName);
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement)annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static Object getAnnotationValue(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String getDefaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+                return "0";
+            case FLOAT:
+                return "0f";
+            case DOUBLE:
+                return "0d";
+            default:
+                return "null";
+        }
+    }
+
+    private static String getFlatName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.toString();
+    }
+
+    private static String capitalise(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * This class holds an annotated field and how the generated code reads and writes it.
+     */
+    private class ColumnField {
+        final String name;
+        final String column;
+        final boolean isQueryOnly;
+        final TypeMirror type;
+        final String typeName;
+        //the RSData method that reads the column or null if the injectors don't inject the type
+        final String dataGetter;
+        //the expression that reads the field from an object or null if it can't be read
+        String reader;
+        //the setter of the field or null if there isn't one
+        String setter;
+        boolean isFieldWritable;
+        boolean isConstructorParameter;
+
+        ColumnField(VariableElement field, AnnotationMirror annotation,
+                    Map<String, ExecutableElement> methods) {
+            name = field.getSimpleName().toString();
+            column = String.valueOf(getAnnotationValue(annotation, VALUE));
+            isQueryOnly = Boolean.TRUE.equals(getAnnotationValue(annotation, IS_QUERY_ONLY));
+            type = field.asType();
+            typeName = myEnv.getTypeUtils().erasure(type).toString();
+            dataGetter = DATA_GETTERS.get(typeName);
+
+            if (isAccessible(field) && !field.getModifiers().contains(Modifier.STATIC)) {
+                reader = name;
+                isFieldWritable = !field.getModifiers().contains(Modifier.FINAL);
+            }
+
+            if (reader == null) {
+                for (String getterName : new String[]{"get" + capitalise(name),
+                        "is" + capitalise(name), name}) {
+                    ExecutableElement method = methods.get(getterName + "/0");
+                    if (method != null && myEnv.getTypeUtils().isSameType(
+                            method.getReturnType(), type)) {
+                        reader = getterName + "()";
+                        break;
+                    }
+                }
+            }
+
+            if (!isFieldWritable) {
+                //Kotlin names the setter of a property called isName setName()
+                String propertyName = name.length() > 2 && name.startsWith("is")
+                        && Character.isUpperCase(name.charAt(2)) ? name.substring(2) : name;
+                for (String setterName : new String[]{"set" + capitalise(name),
+                        "set" + capitalise(propertyName)}) {
+                    ExecutableElement method = methods.get(setterName + "/1");
+                    if (method != null && myEnv.getTypeUtils().isSameType(
+                            method.getParameters().get(0).asType(), type)) {
+                        setter = setterName;
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return whether the mapper can set this field after the object has been created
+         */
+        boolean isSettable() {
+            return isFieldWritable || setter != null;
+        }
+    }
+}
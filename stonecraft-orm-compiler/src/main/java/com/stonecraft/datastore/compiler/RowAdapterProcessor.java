@@ -0,0 +1,92 @@
+package com.stonecraft.datastore.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+/**
+ * This annotation processor generates a RowMapper and a RowBinder for each class with fields
+ * annotated with DbColumnName. The object injectors and the ContentValueCreator find the
+ * generated classes by name and use them instead of reflection. A class that an adapter can't be
+ * generated for is still injected with reflection, so the reason is only reported as a note.
+ */
+public class RowAdapterProcessor extends AbstractProcessor {
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(RowAdapterGenerator.DB_COLUMN_NAME);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            for (Element field : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (field.getEnclosingElement() instanceof TypeElement) {
+                    types.add((TypeElement)field.getEnclosingElement());
+                }
+            }
+        }
+
+        for (TypeElement type : types) {
+            RowAdapterGenerator generator = new RowAdapterGenerator(processingEnv, type);
+            String mapperProblem = generator.getMapperProblem();
+            if (mapperProblem == null) {
+                write(type, generator.getPackageName(), generator.getMapperName(),
+                        generator.generateMapper());
+            } else {
+                note(type, "No RowMapper was generated for " + type.getQualifiedName()
+                        + " as " + mapperProblem + ". Reflection will be used instead");
+            }
+
+            String binderProblem = generator.getBinderProblem();
+            if (binderProblem == null) {
+                write(type, generator.getPackageName(), generator.getBinderName(),
+                        generator.generateBinder());
+            } else {
+                note(type, "No RowBinder was generated for " + type.getQualifiedName()
+                        + " as " + binderProblem + ". Reflection will be used instead");
+            }
+        }
+
+        return false;
+    }
+
+    private void write(TypeElement type, String packageName, String className, String source) {
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        Writer writer = null;
+        try {
+            writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write "
+                    + qualifiedName + " [" + e.getMessage() + "]", type);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // nothing can be done if the file fails to close
+                }
+            }
+        }
+    }
+
+    private void note(TypeElement type, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, type);
+    }
+}
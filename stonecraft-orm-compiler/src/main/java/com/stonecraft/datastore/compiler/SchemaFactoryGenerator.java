@@ -0,0 +1,380 @@
+package com.stonecraft.datastore.compiler;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * This class reads a schema xml and writes the source of a SchemaFactory that builds the same
+ * DbSchemaModel the DatabaseParser would build from the xml at runtime. The xml is checked while
+ * it is read so a schema that the parser would fail on, or silently get wrong, fails the build
+ * instead.
+ */
+class SchemaFactoryGenerator {
+    private static final String SCHEMA = "Schema";
+    private static final String NAME = "Name";
+    private static final String VERSION = "Version";
+    private static final String TABLE = "Table";
+    private static final String COLUMN = "Column";
+    private static final String TYPE = "Type";
+    private static final String PRIMARY = "Primary";
+    private static final String AUTOINCREMENT = "AutoIncrement";
+    private static final String NULLABLE = "Nullable";
+    private static final String LENGTH = "length";
+    private static final String URI = "uri";
+    private static final String DEFAULT = "Default";
+    private static final String INDEX = "Index";
+    private static final String INDEX_COLUMNS = "Columns";
+    private static final String WHERE = "Where";
+    private static final String UNIQUE = "unique";
+    private static final String CONNECTION = "Connection";
+    private static final String WRITE_AHEAD_LOGGING = "WriteAheadLogging";
+    private static final String FOREIGN_KEYS = "ForeignKeys";
+    private static final String STATEMENT_CACHE_SIZE = "StatementCacheSize";
+    private static final String PRAGMA = "Pragma";
+
+    private static final Pattern PRAGMA_NAME = Pattern.compile("[A-Za-z_]+");
+    private static final Pattern DIGITS = Pattern.compile("[0-9]+");
+    private static final Map<String, String> DATATYPES = new HashMap<String, String>();
+
+    static {
+        DATATYPES.put("Null", "DBConstants.DATATYPE_INT_NULL");
+        DATATYPES.put("Integer", "DBConstants.DATATYPE_INT_INTEGER");
+        DATATYPES.put("Boolean", "DBConstants.DATATYPE_INT_BOOLEAN");
+        DATATYPES.put("Double", "DBConstants.DATATYPE_INT_DOUBLE");
+        DATATYPES.put("String", "DBConstants.DATATYPE_INT_STRING");
+        DATATYPES.put("Datetime", "DBConstants.DATATYPE_INT_DATETIME");
+        DATATYPES.put("Blob", "DBConstants.DATATYPE_INT_BLOB");
+    }
+
+    private final String myPackageName;
+    private final String myClassName;
+    private final String mySchemaFile;
+    private final StringBuilder mySource;
+
+    /**
+     * @param packageName the package of the generated factory
+     * @param className the simple name of the generated factory
+     * @param schemaFile the name of the xml, which is added to the generated class's doc
+     */
+    SchemaFactoryGenerator(String packageName, String className, String schemaFile) {
+        myPackageName = packageName;
+        myClassName = className;
+        mySchemaFile = schemaFile;
+        mySource = new StringBuilder();
+    }
+
+    /**
+     * This method reads the passed in schema xml and returns the source of the factory.
+     *
+     * @param xml
+     * @return
+     * @throws SchemaGenerationException if the xml can't be read or is invalid
+     */
+    String generate(InputStream xml) throws SchemaGenerationException {
+        Element schema = readDocument(xml).getDocumentElement();
+        if (!SCHEMA.equalsIgnoreCase(schema.getTagName())) {
+            throw new SchemaGenerationException("The root element of " + mySchemaFile
+                    + " must be " + SCHEMA);
+        }
+
+        writeHeader();
+        line(2, "DbSchemaModel schema = new DbSchemaModel();");
+        line(2, "schema.setName(" + literal(getRequiredText(schema, NAME, SCHEMA)) + ");");
+        line(2, "schema.setVersion(" + parseInt(getRequiredText(schema, VERSION, SCHEMA),
+                VERSION) + ");");
+
+        Element connection = getChild(schema, CONNECTION);
+        if (connection != null) {
+            writeConnection(connection);
+        }
+
+        List<Element> tables = getDescendants(schema, TABLE);
+        if (!tables.isEmpty()) {
+            mySource.append('\n');
+            line(2, "DatabaseTable table;");
+            line(2, "DatabaseColumn column;");
+        }
+        for (Element table : tables) {
+            writeTable(table);
+        }
+
+        line(2, "return schema;");
+        line(1, "}");
+        mySource.append("}\n");
+
+        return mySource.toString();
+    }
+
+    private void writeHeader() {
+        if (!myPackageName.isEmpty()) {
+            mySource.append("package ").append(myPackageName).append(";\n\n");
+        }
+        mySource.append("import android.net.Uri;\n\n");
+        mySource.append("import com.stonecraft.datastore.ConnectionConfig;\n");
+        mySource.append("import com.stonecraft.datastore.DBConstants;\n");
+        mySource.append("import com.stonecraft.datastore.DbSchemaModel;\n");
+        mySource.append("import com.stonecraft.datastore.SchemaFactory;\n");
+        mySource.append("import com.stonecraft.datastore.view.DatabaseColumn;\n");
+        mySource.append("import com.stonecraft.datastore.view.DatabaseIndex;\n");
+        mySource.append("import com.stonecraft.datastore.view.DatabaseTable;\n");
+        mySource.append("import com.stonecraft.datastore.view.SQLiteColumn;\n");
+        mySource.append("import com.stonecraft.datastore.view.SQLiteTable;\n\n");
+        mySource.append("import java.util.Arrays;\n\n");
+        mySource.append("/**\n");
+        mySource.append(" * This class was generated by the stonecraft-orm-compiler from ")
+                .append(mySchemaFile).append(". Do not edit it.\n");
+        mySource.append(" */\n");
+        mySource.append("public final class ").append(myClassName)
+                .append(" implements SchemaFactory {\n");
+        line(1, "@Override");
+        line(1, "public DbSchemaModel createSchema() {");
+    }
+
+    private void writeConnection(Element connection) throws SchemaGenerationException {
+        line(2, "ConnectionConfig config = schema.getConnectionConfig();");
+        for (Element setting : getChildren(connection)) {
+            String name = setting.getTagName();
+            String value = getText(setting);
+            if (WRITE_AHEAD_LOGGING.equalsIgnoreCase(name)) {
+                line(2, "config.setWriteAheadLoggingEnabled(" + parseBoolean(value) + ");");
+            } else if (FOREIGN_KEYS.equalsIgnoreCase(name)) {
+                line(2, "config.setForeignKeysEnabled(" + parseBoolean(value) + ");");
+            } else if (STATEMENT_CACHE_SIZE.equalsIgnoreCase(name)) {
+                line(2, "config.setMaxSqlCacheSize(" + parseInt(value, name) + ");");
+            } else if (PRAGMA.equalsIgnoreCase(name)) {
+                String pragmaName = setting.getAttribute(NAME.toLowerCase());
+                if (!PRAGMA_NAME.matcher(pragmaName).matches()) {
+                    throw new SchemaGenerationException("Invalid PRAGMA name '" + pragmaName
+                            + "' in " + mySchemaFile);
+                }
+                if (value.contains(";")) {
+                    throw new SchemaGenerationException("Invalid value for PRAGMA "
+                            + pragmaName + " in " + mySchemaFile);
+                }
+                line(2, "config.setPragma(" + literal(pragmaName) + ", " + literal(value) + ");");
+            }
+        }
+    }
+
+    private void writeTable(Element table) throws SchemaGenerationException {
+        String name = getRequiredText(table, NAME, TABLE);
+        String uri = table.getAttribute(URI);
+        if (uri.isEmpty()) {
+            throw new SchemaGenerationException("There was no uri attribute in the table "
+                    + "element " + name);
+        }
+
+        mySource.append('\n');
+        line(2, "table = new SQLiteTable(" + literal(name) + ", Uri.parse(" + literal(uri)
+                + "));");
+        for (Element column : getDescendants(table, COLUMN)) {
+            writeColumn(name, column);
+        }
+        for (Element index : getDescendants(table, INDEX)) {
+            writeIndex(name, index);
+        }
+        line(2, "schema.addTable(table);");
+    }
+
+    private void writeColumn(String tableName, Element column)
+            throws SchemaGenerationException {
+        String name = getRequiredText(column, NAME, COLUMN + " of table " + tableName);
+        Element typeElement = getChild(column, TYPE);
+        String typeName = typeElement == null ? "" : getText(typeElement);
+        String type = DATATYPES.get(typeName);
+        if (type == null) {
+            throw new SchemaGenerationException("Unknown type '" + typeName + "' for column "
+                    + tableName + "." + name);
+        }
+        int length = 0;
+        String lengthString = typeElement.getAttribute(LENGTH);
+        if (DIGITS.matcher(lengthString).matches()) {
+            length = Integer.parseInt(lengthString);
+        }
+
+        line(2, "column = new SQLiteColumn(" + literal(name) + ", " + type + ", " + length
+                + ", " + getBoolean(column, PRIMARY) + ", " + getBoolean(column, NULLABLE)
+                + ", " + getBoolean(column, AUTOINCREMENT) + ");");
+        Element defaultElement = getChild(column, DEFAULT);
+        if (defaultElement != null && !getText(defaultElement).isEmpty()) {
+            line(2, "column.setDefaultValue(" + literal(getText(defaultElement)) + ");");
+        }
+        line(2, "table.addColumn(column);");
+    }
+
+    private void writeIndex(String tableName, Element index) throws SchemaGenerationException {
+        String name = getRequiredText(index, NAME, "index element of table " + tableName);
+        List<String> columns = new ArrayList<String>();
+        Element columnsElement = getChild(index, INDEX_COLUMNS);
+        if (columnsElement != null) {
+            for (String column : getText(columnsElement).split(",")) {
+                if (!column.trim().isEmpty()) {
+                    columns.add(literal(column.trim()));
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new SchemaGenerationException("There were no columns in the index element "
+                    + name);
+        }
+
+        Element where = getChild(index, WHERE);
+        String whereClause = where == null || getText(where).isEmpty()
+                ? "null" : literal(getText(where));
+        boolean unique = Boolean.TRUE.toString().equalsIgnoreCase(index.getAttribute(UNIQUE));
+        StringBuilder columnList = new StringBuilder();
+        for (String column : columns) {
+            if (columnList.length() > 0) {
+                columnList.append(", ");
+            }
+            columnList.append(column);
+        }
+
+        line(2, "table.addIndex(new DatabaseIndex(" + literal(name) + ", " + literal(tableName)
+                + ", Arrays.asList(" + columnList + "), " + unique + ", " + whereClause
+                + "));");
+    }
+
+    private Document readDocument(InputStream xml) throws SchemaGenerationException {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(xml);
+        } catch (ParserConfigurationException e) {
+            throw new SchemaGenerationException("Failed to create an xml parser", e);
+        } catch (SAXException e) {
+            throw new SchemaGenerationException("Failed to parse " + mySchemaFile + " ["
+                    + e.getMessage() + "]", e);
+        } catch (IOException e) {
+            throw new SchemaGenerationException("Failed to read " + mySchemaFile + " ["
+                    + e.getMessage() + "]", e);
+        }
+    }
+
+    private String getRequiredText(Element parent, String name, String parentDescription)
+            throws SchemaGenerationException {
+        Element child = getChild(parent, name);
+        String text = child == null ? "" : getText(child);
+        if (text.isEmpty()) {
+            throw new SchemaGenerationException("There was no " + name + " in the "
+                    + parentDescription + " element of " + mySchemaFile);
+        }
+        return text;
+    }
+
+    private boolean getBoolean(Element parent, String name) {
+        Element child = getChild(parent, name);
+        return child != null && parseBoolean(getText(child));
+    }
+
+    private static boolean parseBoolean(String value) {
+        return Boolean.TRUE.toString().equalsIgnoreCase(value);
+    }
+
+    private int parseInt(String value, String name) throws SchemaGenerationException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new SchemaGenerationException("Invalid " + name + " '" + value + "' in "
+                    + mySchemaFile, e);
+        }
+    }
+
+    private static String getText(Element element) {
+        return element.getTextContent().trim();
+    }
+
+    /**
+     * @return the first child element with the passed in name, ignoring case as the
+     * DatabaseParser does, or null if there isn't one
+     */
+    private static Element getChild(Element parent, String name) {
+        for (Element child : getChildren(parent)) {
+            if (name.equalsIgnoreCase(child.getTagName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> getChildren(Element parent) {
+        List<Element> children = new ArrayList<Element>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element)nodes.item(i));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return the elements with the passed in name below the parent. The search doesn't go
+     * into matching elements, so the columns of a table are found through it's Columns element.
+     */
+    private static List<Element> getDescendants(Element parent, String name) {
+        List<Element> descendants = new ArrayList<Element>();
+        for (Element child : getChildren(parent)) {
+            if (name.equalsIgnoreCase(child.getTagName())) {
+                descendants.add(child);
+            } else {
+                descendants.addAll(getDescendants(child, name));
+            }
+        }
+        return descendants;
+    }
+
+    private void line(int indent, String code) {
+        for (int i = 0; i < indent; i++) {
+            mySource.append("    ");
+        }
+        mySource.append(code).append('\n');
+    }
+
+    /**
+     * @return the passed in value as a java string literal
+     */
+    private static String literal(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7E) {
+                        builder.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.stonecraft.datastore.compiler;
+
+/**
+ * This exception is thrown when a schema factory can't be generated because the schema xml
+ * can't be read or is invalid.
+ */
+public class SchemaGenerationException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public SchemaGenerationException(String message) {
+        super(message);
+    }
+
+    public SchemaGenerationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,141 @@
+package com.stonecraft.datastore.compiler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * This annotation processor generates a SchemaFactory for each class annotated with DbSchema.
+ * The schema xml named in the annotation is read from the directory passed in with the
+ * stonecraft.schemaDir argument, eg.
+ * <pre>
+ * kapt {
+ *     arguments {
+ *         arg("stonecraft.schemaDir", "$projectDir/src/main/assets")
+ *     }
+ * }
+ * </pre>
+ * The annotation is matched by name so this module doesn't depend on the android library.
+ */
+public class SchemaProcessor extends AbstractProcessor {
+    public static final String OPTION_SCHEMA_DIR = "stonecraft.schemaDir";
+    private static final String DB_SCHEMA = "com.stonecraft.datastore.DbSchema";
+    private static final String FACTORY_SUFFIX = "_SchemaFactory";
+    private static final String VALUE = "value";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(DB_SCHEMA);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_SCHEMA_DIR);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                try {
+                    generateFactory((TypeElement)element, getSchemaFile(element, annotation));
+                } catch (SchemaGenerationException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            e.getMessage(), element);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generateFactory(TypeElement element, String schemaFile)
+            throws SchemaGenerationException {
+        String schemaDir = processingEnv.getOptions().get(OPTION_SCHEMA_DIR);
+        if (schemaDir == null || schemaDir.isEmpty()) {
+            throw new SchemaGenerationException("The " + OPTION_SCHEMA_DIR + " annotation "
+                    + "processor argument must be set to the directory of " + schemaFile);
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(element)
+                .getQualifiedName().toString();
+        String className = element.getSimpleName() + FACTORY_SUFFIX;
+        String source;
+        InputStream xml = null;
+        try {
+            xml = new FileInputStream(new File(schemaDir, schemaFile));
+            source = new SchemaFactoryGenerator(packageName, className, schemaFile)
+                    .generate(xml);
+        } catch (IOException e) {
+            throw new SchemaGenerationException("Failed to read " + schemaFile + " from "
+                    + schemaDir + " [" + e.getMessage() + "]", e);
+        } finally {
+            close(xml);
+        }
+
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName,
+                    element);
+            writer = file.openWriter();
+            writer.write(source);
+        } catch (IOException e) {
+            throw new SchemaGenerationException("Failed to write " + qualifiedName + " ["
+                    + e.getMessage() + "]", e);
+        } finally {
+            close(writer);
+        }
+
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Generated "
+                + qualifiedName + " from " + schemaFile);
+    }
+
+    private String getSchemaFile(Element element, TypeElement annotation)
+            throws SchemaGenerationException {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                    mirror.getElementValues().entrySet()) {
+                if (VALUE.equals(entry.getKey().getSimpleName().toString())) {
+                    return entry.getValue().getValue().toString();
+                }
+            }
+        }
+        throw new SchemaGenerationException("The schema xml was not set in " + DB_SCHEMA);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing can be done if the file fails to close
+        }
+    }
+}
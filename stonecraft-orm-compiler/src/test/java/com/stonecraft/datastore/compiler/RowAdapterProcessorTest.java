@@ -0,0 +1,236 @@
+package com.stonecraft.datastore.compiler;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowAdapterProcessorTest {
+    /**
+     * The parts of the orm the generated classes use, so they can be compiled without it.
+     */
+    private static final String[][] ORM_SOURCES = {
+            {"com.stonecraft.datastore.DbColumnName",
+                    "package com.stonecraft.datastore;\n"
+                            + "public @interface DbColumnName {\n"
+                            + "    String value();\n"
+                            + "    boolean isQueryOnly() default false;\n"
+                            + "}\n"},
+            {"com.stonecraft.datastore.exceptions.DatabaseException",
+                    "package com.stonecraft.datastore.exceptions;\n"
+                            + "public class DatabaseException extends Exception {\n"
+                            + "}\n"},
+            {"com.stonecraft.datastore.RSData",
+                    "package com.stonecraft.datastore;\n"
+                            + "import com.stonecraft.datastore.exceptions.DatabaseException;\n"
+                            + "public interface RSData {\n"
+                            + "    boolean containsNull(int index) throws DatabaseException;\n"
+                            + "    int getIntValue(int index) throws DatabaseException;\n"
+                            + "    String getStringValue(int index) throws DatabaseException;\n"
+                            + "}\n"},
+            {"com.stonecraft.datastore.RowMapper",
+                    "package com.stonecraft.datastore;\n"
+                            + "import com.stonecraft.datastore.exceptions.DatabaseException;\n"
+                            + "public interface RowMapper<T> {\n"
+                            + "    String[] getColumnNames();\n"
+                            + "    T map(RSData data, int[] columnIndexes) "
+                            + "throws DatabaseException;\n"
+                            + "}\n"},
+            {"com.stonecraft.datastore.RowBinder",
+                    "package com.stonecraft.datastore;\n"
+                            + "import java.util.List;\n"
+                            + "public interface RowBinder<T> {\n"
+                            + "    void getColumnValues(T object, List<String> columns, "
+                            + "List<Object> values);\n"
+                            + "}\n"},
+    };
+
+    @Rule
+    public TemporaryFolder myFolder = new TemporaryFolder();
+
+    private File myOutputDir;
+    private DiagnosticCollector<JavaFileObject> myDiagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        myOutputDir = myFolder.newFolder("generated");
+        myDiagnostics = new DiagnosticCollector<JavaFileObject>();
+    }
+
+    @Test
+    public void testAdaptersUseFieldsAndAccessors() throws IOException {
+        assertCompiles(source("test.Book",
+                "package test;\n"
+                        + "import com.stonecraft.datastore.DbColumnName;\n"
+                        + "public class Book {\n"
+                        + "    @DbColumnName(\"TITLE\")\n"
+                        + "    public String title;\n"
+                        + "    @DbColumnName(\"PAGES\")\n"
+                        + "    private int pages;\n"
+                        + "    @DbColumnName(value = \"ROW_COUNT\", isQueryOnly = true)\n"
+                        + "    public int rowCount;\n"
+                        + "    public int getPages() { return pages; }\n"
+                        + "    public void setPages(int pages) { this.pages = pages; }\n"
+                        + "}\n"));
+
+        String mapper = readGenerated("test/Book_RowMapper.java");
+        assertContains(mapper, "public final class Book_RowMapper "
+                + "implements RowMapper<test.Book> {");
+        assertContains(mapper, "COLUMN_NAMES = {\"TITLE\", \"PAGES\", \"ROW_COUNT\"};");
+        assertContains(mapper, "test.Book row = new test.Book();");
+        assertContains(mapper, "row.title = data.getStringValue(columnIndexes[0]);");
+        assertContains(mapper, "row.setPages(data.getIntValue(columnIndexes[1]));");
+        assertContains(mapper, "row.rowCount = data.getIntValue(columnIndexes[2]);");
+
+        String binder = readGenerated("test/Book_RowBinder.java");
+        assertContains(binder, "public final class Book_RowBinder "
+                + "implements RowBinder<test.Book> {");
+        assertContains(binder, "value = object.title;");
+        assertContains(binder, "value = object.getPages();");
+        assertFalse(binder.contains("ROW_COUNT"));
+    }
+
+    @Test
+    public void testMapperUsesConstructorMatchingFinalFields() throws IOException {
+        assertCompiles(source("test.Point",
+                "package test;\n"
+                        + "import com.stonecraft.datastore.DbColumnName;\n"
+                        + "public class Point {\n"
+                        + "    @DbColumnName(\"X\")\n"
+                        + "    public final int x;\n"
+                        + "    @DbColumnName(\"Y\")\n"
+                        + "    public final int y;\n"
+                        + "    public Point(int x, int y) { this.x = x; this.y = y; }\n"
+                        + "}\n"));
+
+        String mapper = readGenerated("test/Point_RowMapper.java");
+        assertContains(mapper, "int _x = 0;");
+        assertContains(mapper, "_x = data.getIntValue(columnIndexes[0]);");
+        assertContains(mapper, "_y = data.getIntValue(columnIndexes[1]);");
+        assertContains(mapper, "test.Point row = new test.Point(_x, _y);");
+    }
+
+    @Test
+    public void testPrivateClassIsReportedAndSkipped() {
+        assertCompiles(source("test.Outer",
+                "package test;\n"
+                        + "import com.stonecraft.datastore.DbColumnName;\n"
+                        + "public class Outer {\n"
+                        + "    private static class Hidden {\n"
+                        + "        @DbColumnName(\"NAME\")\n"
+                        + "        public String name;\n"
+                        + "    }\n"
+                        + "}\n"));
+
+        assertFalse(new File(myOutputDir, "test/Outer_Hidden_RowMapper.java").exists());
+        assertFalse(new File(myOutputDir, "test/Outer_Hidden_RowBinder.java").exists());
+        assertHasNote("No RowMapper was generated for test.Outer.Hidden as it is private");
+        assertHasNote("No RowBinder was generated for test.Outer.Hidden as it is private");
+    }
+
+    @Test
+    public void testMapperOfInnerClassIsSkipped() {
+        assertCompiles(source("test.Shelf",
+                "package test;\n"
+                        + "import com.stonecraft.datastore.DbColumnName;\n"
+                        + "public class Shelf {\n"
+                        + "    public class Slot {\n"
+                        + "        @DbColumnName(\"NAME\")\n"
+                        + "        public String name;\n"
+                        + "    }\n"
+                        + "}\n"));
+
+        assertFalse(new File(myOutputDir, "test/Shelf_Slot_RowMapper.java").exists());
+        assertTrue(new File(myOutputDir, "test/Shelf_Slot_RowBinder.java").exists());
+        assertHasNote("No RowMapper was generated for test.Shelf.Slot as it is an inner class");
+    }
+
+    /**
+     * This method compiles the passed in source with the orm sources and the processor. The
+     * generated classes are compiled too, so this also checks the generated code is valid.
+     */
+    private void assertCompiles(JavaFileObject entity) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+                myDiagnostics, null, null);
+        try {
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT,
+                    Collections.singletonList(myOutputDir));
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+                    Collections.singletonList(myFolder.newFolder("classes")));
+
+            List<JavaFileObject> sources = new ArrayList<JavaFileObject>();
+            for (String[] ormSource : ORM_SOURCES) {
+                sources.add(source(ormSource[0], ormSource[1]));
+            }
+            sources.add(entity);
+
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager,
+                    myDiagnostics, null, null, sources);
+            task.setProcessors(Arrays.asList(new RowAdapterProcessor()));
+            assertTrue("The compile failed " + myDiagnostics.getDiagnostics(), task.call());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                // the test has already finished with the file manager
+            }
+        }
+    }
+
+    private void assertHasNote(String message) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : myDiagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.NOTE
+                    && diagnostic.getMessage(null).startsWith(message)) {
+                return;
+            }
+        }
+        throw new AssertionError("There was no note '" + message + "' in "
+                + myDiagnostics.getDiagnostics());
+    }
+
+    private String readGenerated(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(myOutputDir, path).toPath()),
+                Charset.forName("UTF-8"));
+    }
+
+    private static void assertContains(String source, String expected) {
+        assertTrue("The source doesn't contain " + expected + "\n" + source,
+                source.contains(expected));
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///"
+                + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
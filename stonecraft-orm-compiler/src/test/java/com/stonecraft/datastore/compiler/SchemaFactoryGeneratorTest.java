@@ -0,0 +1,132 @@
+package com.stonecraft.datastore.compiler;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaFactoryGeneratorTest {
+    private static final String SCHEMA_FILE = "schema.xml";
+
+    @Test
+    public void testSourceBuildsTheSchemaOfTheXml() throws Exception {
+        String source = generate("<Schema>"
+                + "<Name>shop</Name>"
+                + "<Version>3</Version>"
+                + "<Connection>"
+                + "<WriteAheadLogging>true</WriteAheadLogging>"
+                + "<StatementCacheSize>40</StatementCacheSize>"
+                + "<Pragma name=\"synchronous\">NORMAL</Pragma>"
+                + "</Connection>"
+                + "<Tables>"
+                + "<Table uri=\"content://shop/items\">"
+                + "<Name>items</Name>"
+                + "<Columns>"
+                + "<Column><Name>id</Name><Type>Integer</Type><Primary>true</Primary>"
+                + "<AutoIncrement>true</AutoIncrement></Column>"
+                + "<Column><Name>title</Name><Type length=\"80\">String</Type>"
+                + "<Nullable>true</Nullable><Default>'untitled'</Default></Column>"
+                + "</Columns>"
+                + "<Indexes>"
+                + "<Index unique=\"true\"><Name>items_title</Name><Columns>title, id</Columns>"
+                + "<Where>title IS NOT NULL</Where></Index>"
+                + "</Indexes>"
+                + "</Table>"
+                + "</Tables>"
+                + "</Schema>");
+
+        assertTrue(source.startsWith("package com.example;\n"));
+        assertContains(source, "public final class ShopSchemaFactory implements SchemaFactory {");
+        assertContains(source, "schema.setName(\"shop\");");
+        assertContains(source, "schema.setVersion(3);");
+        assertContains(source, "config.setWriteAheadLoggingEnabled(true);");
+        assertContains(source, "config.setMaxSqlCacheSize(40);");
+        assertContains(source, "config.setPragma(\"synchronous\", \"NORMAL\");");
+        assertContains(source,
+                "table = new SQLiteTable(\"items\", Uri.parse(\"content://shop/items\"));");
+        assertContains(source, "column = new SQLiteColumn(\"id\", "
+                + "DBConstants.DATATYPE_INT_INTEGER, 0, true, false, true);");
+        assertContains(source, "column = new SQLiteColumn(\"title\", "
+                + "DBConstants.DATATYPE_INT_STRING, 80, false, true, false);");
+        assertContains(source, "column.setDefaultValue(\"'untitled'\");");
+        assertContains(source, "table.addIndex(new DatabaseIndex(\"items_title\", \"items\", "
+                + "Arrays.asList(\"title\", \"id\"), true, \"title IS NOT NULL\"));");
+        assertContains(source, "schema.addTable(table);");
+    }
+
+    @Test
+    public void testStringsAreEscaped() throws Exception {
+        String source = generate("<Schema><Name>shop</Name><Version>1</Version><Tables>"
+                + "<Table uri=\"content://shop/items\"><Name>items</Name><Columns>"
+                + "<Column><Name>title</Name><Type>String</Type>"
+                + "<Default>\"a\\b\"</Default></Column>"
+                + "</Columns></Table></Tables></Schema>");
+
+        assertContains(source, "column.setDefaultValue(\"\\\"a\\\\b\\\"\");");
+    }
+
+    @Test
+    public void testSchemaWithoutTablesHasNoTableVariables() throws Exception {
+        String source = generate("<Schema><Name>shop</Name><Version>1</Version></Schema>");
+
+        assertFalse(source.contains("DatabaseTable table;"));
+        assertContains(source, "return schema;");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testWrongRootElementFails() throws Exception {
+        generate("<Database><Name>shop</Name><Version>1</Version></Database>");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testMissingVersionFails() throws Exception {
+        generate("<Schema><Name>shop</Name></Schema>");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testTableWithoutUriFails() throws Exception {
+        generate("<Schema><Name>shop</Name><Version>1</Version><Tables>"
+                + "<Table><Name>items</Name></Table></Tables></Schema>");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testUnknownColumnTypeFails() throws Exception {
+        generate("<Schema><Name>shop</Name><Version>1</Version><Tables>"
+                + "<Table uri=\"content://shop/items\"><Name>items</Name><Columns>"
+                + "<Column><Name>id</Name><Type>Long</Type></Column>"
+                + "</Columns></Table></Tables></Schema>");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testInvalidPragmaNameFails() throws Exception {
+        generate("<Schema><Name>shop</Name><Version>1</Version><Connection>"
+                + "<Pragma name=\"user_version; DROP TABLE items\">1</Pragma>"
+                + "</Connection></Schema>");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testInvalidPragmaValueFails() throws Exception {
+        generate("<Schema><Name>shop</Name><Version>1</Version><Connection>"
+                + "<Pragma name=\"synchronous\">OFF; DROP TABLE items</Pragma>"
+                + "</Connection></Schema>");
+    }
+
+    @Test(expected = SchemaGenerationException.class)
+    public void testMalformedXmlFails() throws Exception {
+        generate("<Schema><Name>shop</Name>");
+    }
+
+    private static String generate(String xml)
+            throws SchemaGenerationException, UnsupportedEncodingException {
+        return new SchemaFactoryGenerator("com.example", "ShopSchemaFactory", SCHEMA_FILE)
+                .generate(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
+    private static void assertContains(String source, String expected) {
+        assertTrue("The source doesn't contain " + expected + "\n" + source,
+                source.contains(expected));
+    }
+}
@@ -1,6 +1,7 @@
 package com.stonecraft.datastore;
 
-import java.util.ArrayList;
+import com.stonecraft.datastore.interaction.BindArguments;
+
 import java.util.List;
 
 /**
@@ -16,11 +17,11 @@ import java.util.List;
 public class AggregateQuery {
     private String myTable;
     private String myWhereClause;
-    private List<String> myArguments;
+    private BindArguments myArguments;
 
     public AggregateQuery(String tableName) {
         myTable = tableName;
-        myArguments = new ArrayList<String>();
+        myArguments = new BindArguments();
     }
 
     /**
@@ -38,25 +39,40 @@ public class AggregateQuery {
     }
 
     /**
-     * @return the selection arguments
+     * @return the arguments that were added as Strings
+     * @deprecated arguments added through getBindArguments() aren't included. Use
+     * getBindArguments() instead.
      */
+    @Deprecated
     public List<String> getSelectionArgs() {
-        return myArguments;
+        return myArguments.getStringValues();
     }
 
     /**
      * You may include ?s in selection, which will be replaced by the
      * values from selectionArgs, in order that they appear in the
-     * selection. The values will be bound as Strings.
+     * selection. The values will be bound as Strings. Use getBindArguments() to add
+     * arguments of other types.
      *
      * @param arg
      * @return
      */
     public AggregateQuery addArgument(String arg) {
-        myArguments.add(arg);
+        myArguments.addString(arg);
         return this;
     }
 
+    /**
+     * This method returns the arguments that are bound in place of the '?'s in the where
+     * clause. Arguments that aren't Strings are added to the returned object so they are
+     * bound with their own type, eg. getBindArguments().addLong(id).
+     *
+     * @return
+     */
+    public BindArguments getBindArguments() {
+        return myArguments;
+    }
+
 
     /**+
      * A filter declaring which rows to return, formatted as an SQL
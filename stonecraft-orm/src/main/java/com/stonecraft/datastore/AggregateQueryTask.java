@@ -3,6 +3,8 @@ package com.stonecraft.datastore;
 import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interfaces.IDBConnector;
 
+import java.util.Set;
+
 /**
  * This class is used to execute aggregate functions. the result type will depend on the type
  * of aggregation being done.
@@ -27,13 +29,13 @@ public class AggregateQueryTask extends DatabaseTask {
 
     @Override
     public void startTask() throws DatabaseException {
-        myResult = run();
+        myResult = runQuery();
     }
 
-    public Object run() throws DatabaseException {
+    public Object runQuery() throws DatabaseException {
         IDBConnector connector = myDatastore.getActiveDatabase();
         if(myQuery instanceof RowCountQuery) {
-            return connector.queryNumEntries((RowCountQuery)myQuery);
+            return connector.queryNumEntries((RowCountQuery)myQuery, getCancellationSignal());
         } else {
             throw new DatabaseException("Unknown statement type "
                     + myQuery.getClass().getSimpleName());
@@ -50,6 +52,21 @@ public class AggregateQueryTask extends DatabaseTask {
         myQueryListener = listener;
     }
 
+    @Override
+    Object getResult() {
+        return myResult;
+    }
+
+    @Override
+    boolean isWriteTask() {
+        return false;
+    }
+
+    @Override
+    Set<String> getTables() {
+        return createTableSet(myQuery.getTable());
+    }
+
     /**
      * This method notifys any listeners that the task has completed.
      */
@@ -1,11 +1,14 @@
 package com.stonecraft.datastore;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.CancellationSignal;
+import android.text.TextUtils;
 
 import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interaction.Delete;
@@ -13,21 +16,27 @@ import com.stonecraft.datastore.interaction.Insert;
 import com.stonecraft.datastore.interaction.Join;
 import com.stonecraft.datastore.interaction.Query;
 import com.stonecraft.datastore.interaction.Update;
+import com.stonecraft.datastore.interaction.Upsert;
 import com.stonecraft.datastore.interfaces.IDBConnector;
 import com.stonecraft.datastore.interfaces.ISchemaCreator;
+import com.stonecraft.datastore.interfaces.OnTableChangeListener;
 import com.stonecraft.datastore.utils.StringUtils;
 import com.stonecraft.datastore.view.DatabaseColumn;
+import com.stonecraft.datastore.view.DatabaseIndex;
 import com.stonecraft.datastore.view.DatabaseTable;
 import com.stonecraft.datastore.view.DatabaseViewFactory;
 import com.stonecraft.datastore.view.SqliteDBViewFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class is the database connector for all Android database connection
@@ -47,9 +56,27 @@ public class AndroidDBConnection implements IDBConnector {
 	
 	private static final String QUERY_TABLE_EXISTS = "SELECT DISTINCT tbl_name FROM "
 		+ "sqlite_master WHERE tbl_name = '%s'";
+	private static final String QUERY_ROW_COUNT = "SELECT COUNT(*) FROM %s";
+	private static final String STATEMENT_SAVEPOINT = "SAVEPOINT %s";
+	private static final String STATEMENT_RELEASE_SAVEPOINT = "RELEASE SAVEPOINT %s";
+	// SQLiteDatabase treats any statement starting with ROL as a rollback of the whole
+	// transaction, so the comment stops it from being mistaken for one.
+	private static final String STATEMENT_ROLLBACK_TO_SAVEPOINT =
+			"/* savepoint */ ROLLBACK TO SAVEPOINT %s";
 	private static final String STATEMENT_COPY_TABLE = "INSERT INTO %s (%s) SELECT %s FROM %s";
 	private static final String STATEMENT_RENAME_TABLE = "ALTER TABLE %s RENAME TO %s";
 	private static final String STATEMENT_DROP_TABLE = "DROP TABLE %s";
+	private static final String STATEMENT_ADD_COLUMN = "ALTER TABLE %s ADD COLUMN %s";
+	private static final String DEFAULT_CURRENT_PREFIX = "CURRENT_";
+	private static final String STATEMENT_INSERT = "INSERT INTO %s (%s) VALUES (%s)";
+	private static final String STATEMENT_INSERT_DEFAULT_VALUES = "INSERT INTO %s DEFAULT VALUES";
+	private static final String STATEMENT_UPDATE = "UPDATE %s SET %s";
+	private static final String STATEMENT_INSERT_OR_IGNORE = "INSERT OR IGNORE INTO %s (%s) VALUES (%s)";
+	private static final String STATEMENT_UPSERT = "%s ON CONFLICT (%s) DO UPDATE SET %s";
+	private static final String QUERY_SQLITE_VERSION = "SELECT sqlite_version()";
+	// the first version of SQLite that supports INSERT ... ON CONFLICT DO UPDATE
+	private static final int[] NATIVE_UPSERT_VERSION = {3, 24};
+	private static final String STATEMENT_DELETE = "DELETE FROM %s";
 	
 	private static final String JOIN_CROSS_STRING = " CROSS JOIN ";
 	private static final String JOIN_INNER_STRING = " INNER JOIN ";
@@ -58,14 +85,19 @@ public class AndroidDBConnection implements IDBConnector {
 	private DatabaseHelper myDBOpenHelper;
 	private DbSchemaModel myDbSchema;
 	private Context myAppContext;
-	private Map<Class, ContentValueCreator> myContentValueCreator;
+	private ContentValueCreator myContentValueCreator;
+	private List<OnTableChangeListener> myTableChangeListeners;
+	private StatementCache myStatementCache;
+	private Boolean myIsNativeUpsertSupported;
 
 	public AndroidDBConnection(Context context, DbSchemaModel dbSchema,
 			OnConnectionListener listener) {
 		myAppContext = context;
 		myDbSchema = dbSchema;
 		myDBOpenHelper = new DatabaseHelper(context, this, myDbSchema, listener);
-        myContentValueCreator = new HashMap<>();
+		myContentValueCreator = new ContentValueCreator();
+		myTableChangeListeners = new CopyOnWriteArrayList<>();
+		myStatementCache = new StatementCache();
 	}
 
 	public String getName() {
@@ -82,20 +114,36 @@ public class AndroidDBConnection implements IDBConnector {
 	}
 
 	public void startTransaction() throws DatabaseException {
-		myDBOpenHelper.getReadableDatabase().beginTransaction();
+		beginTransaction(myDBOpenHelper.getWritableDatabase());
 	}
 
 	public void commit() throws DatabaseException {
-		myDBOpenHelper.getReadableDatabase().setTransactionSuccessful();
-		myDBOpenHelper.getReadableDatabase().endTransaction();
+		myDBOpenHelper.getWritableDatabase().setTransactionSuccessful();
+		myDBOpenHelper.getWritableDatabase().endTransaction();
 	}
 
 	public void rollBack() throws DatabaseException {
-		myDBOpenHelper.getReadableDatabase().endTransaction();
+		myDBOpenHelper.getWritableDatabase().endTransaction();
 
 	}
 
+	@Override
+	public void setSavepoint(String name) throws DatabaseException {
+		executeRawStatement(String.format(STATEMENT_SAVEPOINT, name));
+	}
+
+	@Override
+	public void releaseSavepoint(String name) throws DatabaseException {
+		executeRawStatement(String.format(STATEMENT_RELEASE_SAVEPOINT, name));
+	}
+
+	@Override
+	public void rollBackToSavepoint(String name) throws DatabaseException {
+		executeRawStatement(String.format(STATEMENT_ROLLBACK_TO_SAVEPOINT, name));
+	}
+
 	public void close() {
+		myStatementCache.clear();
 		myDBOpenHelper.close();
 	}
 
@@ -104,6 +152,12 @@ public class AndroidDBConnection implements IDBConnector {
 	}
 
 	public RSData query(Query query) throws DatabaseException {
+		return query(query, null);
+	}
+
+	@Override
+	public RSData query(Query query, CancellationSignal cancellationSignal)
+			throws DatabaseException {
 		try {
 			Cursor cursor = null;
 			if(query.getJoins().isEmpty()){
@@ -114,20 +168,19 @@ public class AndroidDBConnection implements IDBConnector {
                             .append(query.getOffset());
 				}
 
-				cursor = myDBOpenHelper.getReadableDatabase().query(
+				// the arguments are bound by the factory so they keep their types
+				cursor = myDBOpenHelper.getReadableDatabase().queryWithFactory(
+					BindArgsCursorFactory.create(query.getBindArguments().getValues()),
 					query.isdistinct(), query.getTable(), query.getColumns(),
-					query.getWhereClause(),
-					getArguments(query.getSelectionArgs()), query.getGroupBy(),
-					query.getHaving(), query.getOrderBy(), limit == null ? null : limit.toString());
+					query.getWhereClause(), null, query.getGroupBy(),
+					query.getHaving(), query.getOrderBy(), limit == null ? null : limit.toString(),
+					cancellationSignal);
 
 			} else {
 				String queryString = getSQLJoinQuery(query);
-				String[] args = null;
-				List<String> listArgs = query.getSelectionArgs();
-				if(listArgs != null && !listArgs.isEmpty()) {
-					args = listArgs.toArray(new String[listArgs.size()]);
-				}
-				cursor = myDBOpenHelper.getReadableDatabase().rawQuery(queryString, args);
+				cursor = myDBOpenHelper.getReadableDatabase().rawQueryWithFactory(
+						BindArgsCursorFactory.create(query.getBindArguments().getValues()),
+						queryString, null, null, cancellationSignal);
 			}
 
 			return new QueryRSData(cursor);
@@ -138,53 +191,167 @@ public class AndroidDBConnection implements IDBConnector {
 
 	@Override
 	public long queryNumEntries(RowCountQuery query) {
-		if(query.getSelectionArgs() != null && !query.getSelectionArgs().isEmpty()) {
-			List<String> args = query.getSelectionArgs();
-			return android.database.DatabaseUtils.queryNumEntries(
-					myDBOpenHelper.getReadableDatabase(), query.getTable(), query.getWhereClause(),
-					args.toArray(new String[args.size()]));
+		SQLiteStatement stmt = myDBOpenHelper.getReadableDatabase().compileStatement(
+				getRowCountStatement(query));
+		try {
+			bindValues(stmt, query.getBindArguments().getValues(), null);
+			return stmt.simpleQueryForLong();
+		} catch (DatabaseException e) {
+			throw new IllegalArgumentException("Failed to bind the query's arguments", e);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	@Override
+	public long queryNumEntries(RowCountQuery query, CancellationSignal cancellationSignal) {
+		if (cancellationSignal == null) {
+			return queryNumEntries(query);
+		}
+
+		Cursor cursor = myDBOpenHelper.getReadableDatabase().rawQueryWithFactory(
+				BindArgsCursorFactory.create(query.getBindArguments().getValues()),
+				getRowCountStatement(query), null, null, cancellationSignal);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		} finally {
+			cursor.close();
 		}
-		return android.database.DatabaseUtils.queryNumEntries(
-				myDBOpenHelper.getReadableDatabase(), query.getTable(), query.getWhereClause());
 	}
 
 	public void insert(Insert insert) throws DatabaseException {
-		ContentValues cv;
-		if(insert.getInsertRowClasses() != null) {
-            ContentValueCreator cvCreator = myContentValueCreator.get(
-                    insert.getInsertRowClasses().getClass());
-            if(cvCreator == null) {
-                cvCreator = new ContentValueCreator();
-                myContentValueCreator.put(insert.getInsertRowClasses().getClass(),
-                        cvCreator);
-            }
-			cv = cvCreator.getContentValues(insert.getInsertRowClasses());
-		} else {
-			cv = new ContentValueCreator().getContentValues(
-                    insert.getValues().entrySet());
+		List<String> columns = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
+		getInsertColumnValues(insert.getInsertRowClasses() != null ?
+				insert.getInsertRowClasses() : insert.getValues(), columns, values);
+
+		executeInsert(getInsertStatement(insert.getTable(), columns), values);
+	}
+
+	@Override
+	public int upsert(Upsert upsert) throws DatabaseException {
+		String table = upsert.getTable();
+		List<String> conflictColumns = null;
+		boolean isNativeUpsert = false;
+		if (upsert.getWhereClause() == null) {
+			conflictColumns = getConflictColumns(upsert);
+			isNativeUpsert = isNativeUpsertSupported();
 		}
 
+		List<String> columns = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
+		int changeCount = 0;
+		for (Object row : (Iterable<?>)upsert.getRows()) {
+			columns.clear();
+			values.clear();
+			getInsertColumnValues(row, columns, values);
+			if (columns.isEmpty()) {
+				throw new DatabaseException("No values were given for the row to upsert into "
+						+ table);
+			}
+
+			if (conflictColumns == null) {
+				changeCount += updateOrInsert(table, columns, values, upsert.getWhereClause(),
+						upsert.getBindArguments().getValues());
+			} else if (!columns.containsAll(conflictColumns)) {
+				// without all of the conflict columns the row can't match an existing row
+				executeInsert(getInsertStatement(table, columns), values);
+				changeCount++;
+			} else if (isNativeUpsert) {
+				changeCount += executeUpdateDelete(
+						getNativeUpsertStatement(table, columns, conflictColumns), values, null);
+			} else {
+				changeCount += updateOrInsert(table, columns, values, conflictColumns);
+			}
+		}
+
+		return changeCount;
+	}
+
+	@Override
+	public BulkInsertResult bulkInsert(String table, Iterator<?> rows, BulkInsertOptions options)
+			throws DatabaseException {
 		SQLiteDatabase db = myDBOpenHelper.getWritableDatabase();
-		db.insertOrThrow(insert.getTable(), null, cv);
+		List<String> columns = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
+		long[] rowIds = options.isReturnRowIds() ? new long[options.getChunkSize()] : null;
+		int insertedCount = 0;
+		int committedCount = 0;
+		String sql = null;
+		SQLiteStatement stmt = null;
+		try {
+			while (rows.hasNext()) {
+				beginTransaction(db);
+				try {
+					for (int i = 0; i < options.getChunkSize() && rows.hasNext(); i++) {
+						columns.clear();
+						values.clear();
+						getInsertColumnValues(rows.next(), columns, values);
+
+						// rows only need a different statement when they set different columns
+						String rowSql = getInsertStatement(table, columns);
+						if (!rowSql.equals(sql)) {
+							if (stmt != null) {
+								stmt.releaseReference();
+								stmt = null;
+							}
+							stmt = myStatementCache.get(db, rowSql);
+							sql = rowSql;
+						}
+
+						long rowId;
+						synchronized (stmt) {
+							bindValues(stmt, values, null);
+							rowId = stmt.executeInsert();
+						}
+						if (rowIds != null) {
+							if (insertedCount == rowIds.length) {
+								rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+							}
+							rowIds[insertedCount] = rowId;
+						}
+						insertedCount++;
+					}
+					db.setTransactionSuccessful();
+				} catch (SQLException e) {
+					throw new DatabaseException("Failed to insert row " + (insertedCount + 1)
+							+ " into " + table + ". " + committedCount
+							+ " rows had already been committed", e);
+				} finally {
+					db.endTransaction();
+				}
+				committedCount = insertedCount;
+			}
+		} finally {
+			if (stmt != null) {
+				stmt.releaseReference();
+			}
+			if (committedCount > 0) {
+				sendTableUpdateNotification(table);
+			}
+		}
+
+		return new BulkInsertResult(insertedCount,
+				rowIds == null ? null : Arrays.copyOf(rowIds, insertedCount));
 	}
 
     public int update(Update update) throws DatabaseException {
-		ContentValues cv;
+		List<String> columns = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
 		if(update.getUpdateClass() != null) {
-            ContentValueCreator cvCreator = myContentValueCreator.get(
-                    update.getUpdateClass());
-            if(cvCreator == null) {
-                cvCreator = new ContentValueCreator();
-                myContentValueCreator.put(update.getUpdateClass().getClass(),
-                        cvCreator);
-            }
-			cv = cvCreator.getContentValues(update.getUpdateClass());
+			myContentValueCreator.getColumnValues(update.getUpdateClass(), columns, values);
 		} else {
-			cv = new ContentValueCreator().getContentValues(update.getValues().entrySet());
+			myContentValueCreator.getColumnValues(update.getValues().entrySet(), columns,
+					values);
 		}
+		if(columns.isEmpty()) {
+			throw new DatabaseException("Empty values passed to update on " + update.getTable());
+		}
+
+		String sql = getUpdateStatement(update.getTable(), columns, update.getWhereClause());
 
-		int updateCount = myDBOpenHelper.getWritableDatabase().update(
-                update.getTable(), cv, update.getWhereClause(), getArguments(update.getArguments()));
+		int updateCount = executeUpdateDelete(sql, values,
+				update.getBindArguments().getValues());
 		DatabaseTable table = myDbSchema.getTable(update.getTable());
 		if(table != null) {
 			myAppContext.getContentResolver().notifyChange(table.getUri(), null, false);
@@ -193,9 +360,10 @@ public class AndroidDBConnection implements IDBConnector {
 	}
 
 	public int delete(Delete delete) throws DatabaseException {
-		int deleteCount = myDBOpenHelper.getWritableDatabase().delete(
-				delete.getTable(), delete.getWhereClause(),
-				getArguments(delete.getArguments()));
+		String sql = appendWhereClause(String.format(STATEMENT_DELETE, delete.getTable()),
+				delete.getWhereClause());
+		int deleteCount = executeUpdateDelete(sql, new ArrayList<Object>(),
+				delete.getBindArguments().getValues());
 		DatabaseTable table = myDbSchema.getTable(delete.getTable());
 		if(table != null) {
 			myAppContext.getContentResolver().notifyChange(table.getUri(), null, false);
@@ -204,8 +372,30 @@ public class AndroidDBConnection implements IDBConnector {
 		return deleteCount;
 	}
 
+	/**
+	 * This method returns the hit and miss counts of the cache of compiled insert, update and
+	 * delete statements.
+	 *
+	 * @return
+	 */
+	@Override
+	public StatementCacheStats getStatementCacheStats() {
+		return myStatementCache.getStats();
+	}
+
+	/**
+	 * This method returns the settings the database is running with, read back from the
+	 * database.
+	 *
+	 * @return
+	 */
+	@Override
+	public ConnectionSettings getConnectionSettings() {
+		return myDBOpenHelper.getConnectionSettings();
+	}
+
 	public void executeRawStatement(String stmt) throws DatabaseException {
-		myDBOpenHelper.getReadableDatabase().execSQL(stmt);
+		myDBOpenHelper.getWritableDatabase().execSQL(stmt);
 	}
 	
 	/* (non-Javadoc)
@@ -213,7 +403,13 @@ public class AndroidDBConnection implements IDBConnector {
 	 */
 	@Override
 	public RSData executeRawQuery(String stmt) throws DatabaseException {
-		Cursor c = myDBOpenHelper.getReadableDatabase().rawQuery(stmt, null);
+		return executeRawQuery(stmt, null);
+	}
+
+	@Override
+	public RSData executeRawQuery(String stmt, CancellationSignal cancellationSignal)
+			throws DatabaseException {
+		Cursor c = myDBOpenHelper.getReadableDatabase().rawQuery(stmt, null, cancellationSignal);
 		return new QueryRSData(c);
 	}
 	
@@ -282,6 +478,22 @@ public class AndroidDBConnection implements IDBConnector {
             myAppContext.getContentResolver().notifyChange(
                     table.getUri(), null, false);
         }
+
+		for (OnTableChangeListener listener : myTableChangeListeners) {
+			listener.onTableChanged(tableName);
+		}
+	}
+
+	@Override
+	public void addTableChangeListener(OnTableChangeListener listener) {
+		if (listener != null) {
+			myTableChangeListeners.add(listener);
+		}
+	}
+
+	@Override
+	public void removeTableChangeListener(OnTableChangeListener listener) {
+		myTableChangeListeners.remove(listener);
 	}
 
 	/**
@@ -306,6 +518,8 @@ public class AndroidDBConnection implements IDBConnector {
 	 */
 	@Override
 	public void updateTable(DatabaseTable oldTable, DatabaseTable newTable) throws DatabaseException {
+		// the cached statements may refer to the columns of the old table
+		myStatementCache.clear();
 		newTable.setTempTable(true);
 		//create new table
 		executeRawStatement(newTable.getCreateTableStmt());
@@ -318,8 +532,53 @@ public class AndroidDBConnection implements IDBConnector {
 		executeRawStatement(String.format(STATEMENT_DROP_TABLE, oldTable.getName()));
 		//rename new table to match the old tables name
 		executeRawStatement(String.format(STATEMENT_RENAME_TABLE, newTable.getDBName(), oldTable.getName()));
+		//dropping the old table dropped it's indexes so they are created on the new table
+		for(DatabaseIndex index : newTable.getIndexes().values()) {
+			executeRawStatement(index.getCreateIndexStmt());
+		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see IDBConnector#addColumn(String, DatabaseColumn)
+	 */
+	@Override
+	public void addColumn(String tableName, DatabaseColumn column) throws DatabaseException {
+		myStatementCache.clear();
+		executeRawStatement(String.format(STATEMENT_ADD_COLUMN, tableName,
+			column.getCreateColumnStmt(false)));
+	}
+
+	/**
+	 * This method checks the passed in column against SQLite's rules for ALTER TABLE ADD
+	 * COLUMN. The column can't be a primary key and if it isn't nullable it must have a
+	 * default value. The default value can't be a CURRENT_ time or an expression.
+	 *
+	 * @param column
+	 * @return
+	 */
+	@Override
+	public boolean canAddColumn(DatabaseColumn column) {
+		if(column.isPrimarykey() || column.isAutoIncrement()) {
+			return false;
+		}
+
+		String defaultValue = column.getDefaultValue();
+		if(TextUtils.isEmpty(defaultValue)) {
+			return column.isNullable();
+		}
+
+		// text defaults are always quoted so they are literals
+		if(column.getType() != DBConstants.DATATYPE_INT_STRING) {
+			String value = defaultValue.trim();
+			if(value.startsWith(DBConstants.OPEN_BRACKET) ||
+				value.toUpperCase().startsWith(DEFAULT_CURRENT_PREFIX)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	/**
 	 * This method checks the passed in columns if there has been any modification done.
 	 * 
@@ -372,6 +631,18 @@ public class AndroidDBConnection implements IDBConnector {
 		return false;
 	}
 
+	/**
+	 * This method begins a write transaction. The transaction is started in IMMEDIATE mode so
+	 * when write ahead logging is enabled queries can keep running on the pool's other
+	 * connections while the transaction is open. Queries are never run in a transaction so
+	 * that they can use those connections.
+	 *
+	 * @param db
+	 */
+	private static void beginTransaction(SQLiteDatabase db) {
+		db.beginTransactionNonExclusive();
+	}
+
 	/**
 	 * This method compares the oldtable with the new table and creates a delimited string
 	 * containing the columns that are to be copied across to the new table
@@ -393,24 +664,273 @@ public class AndroidDBConnection implements IDBConnector {
 	}
 
 	/**
-	 * This method converts a nameValuePair array into a string array.
-	 * 
-	 * @param args
+	 * This method adds the columns and values of a row to be inserted to the passed in lists.
+	 * The row can be either a map of column names to values or an object with fields
+	 * annotated with DbColumnName.
+	 *
+	 * @param row
+	 * @param columns
+	 * @param values
+	 * @throws DatabaseException
+	 */
+	private void getInsertColumnValues(Object row, List<String> columns, List<Object> values)
+			throws DatabaseException {
+		if (row instanceof Map) {
+			myContentValueCreator.getColumnValues(
+					((Map<String, Object>) row).entrySet(), columns, values);
+			return;
+		}
+
+		myContentValueCreator.getColumnValues(row, columns, values);
+	}
+
+	/**
+	 * This method returns the columns an upsert uses to find an existing row. These are the
+	 * conflict columns of the upsert if it has them or the primary key of the table otherwise.
+	 *
+	 * @param upsert
 	 * @return
+	 * @throws DatabaseException
 	 */
-	private String[] getArguments(List<String> args) {
-		if (args == null) {
-			return null;
+	private List<String> getConflictColumns(Upsert upsert) throws DatabaseException {
+		if (upsert.getConflictColumns() != null && !upsert.getConflictColumns().isEmpty()) {
+			return upsert.getConflictColumns();
 		}
 
-		String[] returnArgs = new String[args.size()];
-		for (int i = 0; i < args.size(); i++) {
-			returnArgs[i] = args.get(i);
+		List<String> conflictColumns = new ArrayList<>();
+		DatabaseTable table = myDbSchema.getTable(upsert.getTable());
+		if (table != null) {
+			for (DatabaseColumn column : table.getColumns().values()) {
+				if (column.isPrimarykey()) {
+					conflictColumns.add(column.getName());
+				}
+			}
 		}
 
-		return returnArgs;
+		if (conflictColumns.isEmpty()) {
+			throw new DatabaseException("The table " + upsert.getTable() + " has no primary key. "
+					+ "Set the conflict columns or a where clause on the upsert");
+		}
+		return conflictColumns;
 	}
-	
+
+	/**
+	 * This method returns true if the SQLite version of this connection supports
+	 * INSERT ... ON CONFLICT DO UPDATE.
+	 *
+	 * @return
+	 */
+	private boolean isNativeUpsertSupported() {
+		if (myIsNativeUpsertSupported == null) {
+			SQLiteStatement stmt = myDBOpenHelper.getWritableDatabase().compileStatement(
+					QUERY_SQLITE_VERSION);
+			try {
+				myIsNativeUpsertSupported = isVersionAtLeast(stmt.simpleQueryForString(),
+						NATIVE_UPSERT_VERSION);
+			} finally {
+				stmt.close();
+			}
+		}
+		return myIsNativeUpsertSupported;
+	}
+
+	private static boolean isVersionAtLeast(String version, int[] minVersion) {
+		String[] parts = version.split("\\.");
+		for (int i = 0; i < minVersion.length; i++) {
+			int part = 0;
+			if (i < parts.length) {
+				try {
+					part = Integer.parseInt(parts[i]);
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+			if (part != minVersion[i]) {
+				return part > minVersion[i];
+			}
+		}
+		return true;
+	}
+
+	private static String getNativeUpsertStatement(String table, List<String> columns,
+			List<String> conflictColumns) {
+		StringBuilder setClause = new StringBuilder();
+		for (String column : columns) {
+			if (!conflictColumns.contains(column)) {
+				if (setClause.length() > 0) {
+					setClause.append(StringUtils.COMMA);
+				}
+				setClause.append(column).append(" = excluded.").append(column);
+			}
+		}
+
+		if (setClause.length() == 0) {
+			// only the key is being set so there is nothing to update
+			return String.format(STATEMENT_INSERT_OR_IGNORE, table,
+					StringUtils.convertListToDelimitedString(columns, StringUtils.COMMA),
+					getBindParameters(columns.size()));
+		}
+		return String.format(STATEMENT_UPSERT, getInsertStatement(table, columns),
+				StringUtils.convertListToDelimitedString(conflictColumns, StringUtils.COMMA),
+				setClause);
+	}
+
+	/**
+	 * This method updates the row with the same values in the conflict columns as the passed in
+	 * row, and inserts the row if no row was updated. This must be run inside a transaction.
+	 *
+	 * @return the number of rows changed
+	 * @throws DatabaseException
+	 */
+	private int updateOrInsert(String table, List<String> columns, List<Object> values,
+			List<String> conflictColumns) throws DatabaseException {
+		List<String> updateColumns = new ArrayList<>();
+		List<Object> updateValues = new ArrayList<>();
+		List<Object> keyValues = new ArrayList<>();
+		StringBuilder whereClause = new StringBuilder();
+		for (int i = 0; i < columns.size(); i++) {
+			String column = columns.get(i);
+			if (conflictColumns.contains(column)) {
+				if (whereClause.length() > 0) {
+					whereClause.append(" ").append(DBConstants.AND).append(" ");
+				}
+				whereClause.append(column).append(" = ?");
+				keyValues.add(values.get(i));
+			} else {
+				updateColumns.add(column);
+				updateValues.add(values.get(i));
+			}
+		}
+
+		if (updateColumns.isEmpty()) {
+			executeInsert(String.format(STATEMENT_INSERT_OR_IGNORE, table,
+					StringUtils.convertListToDelimitedString(columns, StringUtils.COMMA),
+					getBindParameters(columns.size())), values);
+			return 1;
+		}
+
+		updateValues.addAll(keyValues);
+		int updateCount = executeUpdateDelete(getUpdateStatement(table, updateColumns,
+				whereClause.toString()), updateValues, null);
+		if (updateCount > 0) {
+			return updateCount;
+		}
+
+		executeInsert(getInsertStatement(table, columns), values);
+		return 1;
+	}
+
+	/**
+	 * This method updates the rows that match the where clause with the passed in values, and
+	 * inserts the values as a new row if no rows match. This must be run inside a transaction.
+	 *
+	 * @return the number of rows changed
+	 * @throws DatabaseException
+	 */
+	private int updateOrInsert(String table, List<String> columns, List<Object> values,
+			String whereClause, List<Object> whereArgs) throws DatabaseException {
+		int updateCount = executeUpdateDelete(getUpdateStatement(table, columns, whereClause),
+				values, whereArgs);
+		if (updateCount > 0) {
+			return updateCount;
+		}
+
+		executeInsert(getInsertStatement(table, columns), values);
+		return 1;
+	}
+
+	private long executeInsert(String sql, List<Object> values) throws DatabaseException {
+		SQLiteStatement stmt = myStatementCache.get(myDBOpenHelper.getWritableDatabase(), sql);
+		try {
+			synchronized (stmt) {
+				bindValues(stmt, values, null);
+				return stmt.executeInsert();
+			}
+		} finally {
+			stmt.releaseReference();
+		}
+	}
+
+	private static String getRowCountStatement(RowCountQuery query) {
+		return appendWhereClause(String.format(QUERY_ROW_COUNT, query.getTable()),
+				query.getWhereClause());
+	}
+
+	private static String getUpdateStatement(String table, List<String> columns,
+			String whereClause) {
+		StringBuilder setClause = new StringBuilder();
+		for(String column : columns) {
+			if(setClause.length() > 0) {
+				setClause.append(StringUtils.COMMA);
+			}
+			setClause.append(column).append(" = ?");
+		}
+		return appendWhereClause(String.format(STATEMENT_UPDATE, table, setClause), whereClause);
+	}
+
+	private static String getInsertStatement(String table, List<String> columns) {
+		if(columns.isEmpty()) {
+			return String.format(STATEMENT_INSERT_DEFAULT_VALUES, table);
+		}
+		return String.format(STATEMENT_INSERT, table,
+				StringUtils.convertListToDelimitedString(columns, StringUtils.COMMA),
+				getBindParameters(columns.size()));
+	}
+
+	/**
+	 * This method runs an update or delete using a compiled statement from the cache.
+	 *
+	 * @param sql
+	 * @param values the values that are bound first
+	 * @param whereArgs the arguments of the where clause that are bound after the values
+	 * @return the number of rows changed
+	 * @throws DatabaseException
+	 */
+	private int executeUpdateDelete(String sql, List<Object> values, List<Object> whereArgs)
+			throws DatabaseException {
+		SQLiteStatement stmt = myStatementCache.get(myDBOpenHelper.getWritableDatabase(), sql);
+		try {
+			synchronized (stmt) {
+				bindValues(stmt, values, whereArgs);
+				return stmt.executeUpdateDelete();
+			}
+		} finally {
+			stmt.releaseReference();
+		}
+	}
+
+	private void bindValues(SQLiteStatement stmt, List<Object> values, List<Object> whereArgs)
+			throws DatabaseException {
+		stmt.clearBindings();
+		int index = 1;
+		for (Object value : values) {
+			ContentValueCreator.bindValue(stmt, index++, value);
+		}
+		if (whereArgs != null) {
+			for (Object arg : whereArgs) {
+				ContentValueCreator.bindValue(stmt, index++, arg);
+			}
+		}
+	}
+
+	private static String getBindParameters(int count) {
+		StringBuilder parameters = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				parameters.append(StringUtils.COMMA);
+			}
+			parameters.append("?");
+		}
+		return parameters.toString();
+	}
+
+	private static String appendWhereClause(String sql, String whereClause) {
+		if (StringUtils.isEmpty(whereClause)) {
+			return sql;
+		}
+		return sql + " " + DBConstants.WHERE + " " + whereClause;
+	}
+
 	/**
 	 * This method
 	 *
@@ -636,20 +1156,32 @@ public class AndroidDBConnection implements IDBConnector {
 
 		@Override
 		public String getStringValue(String column) throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			return myCursor.getString(colIndex);
+			return getStringValue(getCursorIndex(column));
+		}
+
+		@Override
+		public String getStringValue(int columnIndex) {
+			return myCursor.getString(columnIndex);
 		}
 
 		@Override
 		public boolean getBooleanValue(String column) throws DatabaseException {
-			int intValue = getIntValue(column);
-			return intValue != 0;
+			return getBooleanValue(getCursorIndex(column));
+		}
+
+		@Override
+		public boolean getBooleanValue(int columnIndex) {
+			return getIntValue(columnIndex) != 0;
 		}
 
 		@Override
 		public int getIntValue(String column) throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			return myCursor.getInt(colIndex);
+			return getIntValue(getCursorIndex(column));
+		}
+
+		@Override
+		public int getIntValue(int columnIndex) {
+			return myCursor.getInt(columnIndex);
 		}
 
         public int getColumnCount() {
@@ -658,27 +1190,43 @@ public class AndroidDBConnection implements IDBConnector {
 
         @Override
 		public long getLongValue(String column) throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			return myCursor.getLong(colIndex);
+			return getLongValue(getCursorIndex(column));
+		}
+
+		@Override
+		public long getLongValue(int columnIndex) {
+			return myCursor.getLong(columnIndex);
 		}
 
 		@Override
 		public double getDoubleValue(String column) throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			return myCursor.getDouble(colIndex);
+			return getDoubleValue(getCursorIndex(column));
+		}
+
+		@Override
+		public double getDoubleValue(int columnIndex) {
+			return myCursor.getDouble(columnIndex);
 		}
 
 		@Override
 		public float getFloatValue(String column) throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			return myCursor.getFloat(colIndex);
+			return getFloatValue(getCursorIndex(column));
+		}
+
+		@Override
+		public float getFloatValue(int columnIndex) {
+			return myCursor.getFloat(columnIndex);
 		}
 
 		@Override
 		public Date getDateValue(String column)
 				throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			long timeInMillis = myCursor.getLong(colIndex);
+			return getDateValue(getCursorIndex(column));
+		}
+
+		@Override
+		public Date getDateValue(int columnIndex) {
+			long timeInMillis = myCursor.getLong(columnIndex);
 			return new Date(timeInMillis);
 		}
 		
@@ -688,8 +1236,13 @@ public class AndroidDBConnection implements IDBConnector {
 		@Override
 		public Calendar getCalendarValue(String column)
 				throws DatabaseException {
+			return getCalendarValue(getCursorIndex(column));
+		}
+
+		@Override
+		public Calendar getCalendarValue(int columnIndex) {
 
-			Date date = getDateValue(column);
+			Date date = getDateValue(columnIndex);
 			
 			if(date != null) {
 				Calendar calendar = Calendar.getInstance();
@@ -705,8 +1258,12 @@ public class AndroidDBConnection implements IDBConnector {
 		 */
 		@Override
 		public boolean containsNull(String column) throws DatabaseException {
-			int colIndex = getCursorIndex(column);
-			return myCursor.isNull(colIndex);
+			return containsNull(getCursorIndex(column));
+		}
+
+		@Override
+		public boolean containsNull(int columnIndex) {
+			return myCursor.isNull(columnIndex);
 		}
 		
 		/* (non-Javadoc)
@@ -714,9 +1271,13 @@ public class AndroidDBConnection implements IDBConnector {
 		 */
 		@Override
 		public byte[] getBlobData(String column) throws DatabaseException {
+			return getBlobData(getCursorIndex(column));
+		}
+
+		@Override
+		public byte[] getBlobData(int columnIndex) {
 			try {
-				int colIndex = getCursorIndex(column);
-				return myCursor.getBlob(colIndex);
+				return myCursor.getBlob(columnIndex);
 			} catch( IllegalStateException e) {
 				throw new IllegalStateException("This could be caused by a limitation in the size " +
 						"of data that can be stored in a sqlite database cell.", e);
@@ -734,17 +1295,26 @@ public class AndroidDBConnection implements IDBConnector {
 		}		
 
 		private int getCursorIndex(String column) throws DatabaseException {
-			if(myColumnIndexes.containsKey(column)){
-				return myColumnIndexes.get(column);
-			}
-			int colIndex = myCursor.getColumnIndex(column);
+			int colIndex = getColumnIndex(column);
 
 			if (colIndex == COLUMN_NOT_FOUND) {
 				throw new DatabaseException("The column " + column
 						+ " is not a valid column in this result set");
 			}
 
-			myColumnIndexes.put(column, colIndex);
+			return colIndex;
+		}
+
+		/* (non-Javadoc)
+		 * @see RSData#getColumnIndex(java.lang.String)
+		 */
+		@Override
+		public int getColumnIndex(String columnName) {
+			Integer colIndex = myColumnIndexes.get(columnName);
+			if(colIndex == null) {
+				colIndex = myCursor.getColumnIndex(columnName);
+				myColumnIndexes.put(columnName, colIndex);
+			}
 
 			return colIndex;
 		}
@@ -764,7 +1334,7 @@ public class AndroidDBConnection implements IDBConnector {
 		 */
 		@Override
 		public boolean hasColumn(String columnName) {
-            return myCursor.getColumnIndex(columnName) >= 0;
+			return getColumnIndex(columnName) != COLUMN_NOT_FOUND;
 		}
 
 		@Override
@@ -0,0 +1,51 @@
+package com.stonecraft.datastore;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+import java.util.List;
+
+/**
+ * This class binds typed arguments to a query before it's cursor is created. SQLiteDatabase's
+ * query methods only accept String arguments, so queries with typed arguments are run with this
+ * factory and no selection args, and the arguments are bound here with their own types.
+ */
+class BindArgsCursorFactory implements SQLiteDatabase.CursorFactory {
+    private final List<Object> myArguments;
+
+    BindArgsCursorFactory(List<Object> arguments) {
+        myArguments = arguments;
+    }
+
+    /**
+     * This method returns a factory for the passed in arguments or null if there are no
+     * arguments to bind.
+     *
+     * @param arguments
+     * @return
+     */
+    static BindArgsCursorFactory create(List<Object> arguments) {
+        if (arguments == null || arguments.isEmpty()) {
+            return null;
+        }
+        return new BindArgsCursorFactory(arguments);
+    }
+
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                            SQLiteQuery query) {
+        try {
+            for (int i = 0; i < myArguments.size(); i++) {
+                ContentValueCreator.bindValue(query, i + 1, myArguments.get(i));
+            }
+        } catch (DatabaseException e) {
+            throw new IllegalArgumentException("Failed to bind the query's arguments", e);
+        }
+        return new SQLiteCursor(masterQuery, editTable, query);
+    }
+}
@@ -0,0 +1,67 @@
+package com.stonecraft.datastore;
+
+/**
+ * This class holds the settings used by Datastore.bulkInsert().
+ * <p/>
+ * Rows are inserted in chunks. Each chunk is committed in it's own transaction so that the
+ * database isn't locked for the whole import and a failure only loses the chunk that was being
+ * inserted. A larger chunk size is faster but holds the database for longer.
+ */
+public class BulkInsertOptions {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private int myChunkSize;
+    private boolean myIsReturnRowIds;
+    private int myPriority;
+
+    public BulkInsertOptions() {
+        myChunkSize = DEFAULT_CHUNK_SIZE;
+        myPriority = Datastore.PRIORITY_NORMAL;
+    }
+
+    public int getChunkSize() {
+        return myChunkSize;
+    }
+
+    /**
+     * @param chunkSize the number of rows inserted in each transaction
+     * @return
+     */
+    public BulkInsertOptions setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be at least 1");
+        }
+        myChunkSize = chunkSize;
+        return this;
+    }
+
+    public boolean isReturnRowIds() {
+        return myIsReturnRowIds;
+    }
+
+    /**
+     * This method sets whether the row id of each inserted row is returned in the result. This
+     * is off by default as it means keeping a long for every row that is inserted.
+     *
+     * @param returnRowIds
+     * @return
+     */
+    public BulkInsertOptions setReturnRowIds(boolean returnRowIds) {
+        myIsReturnRowIds = returnRowIds;
+        return this;
+    }
+
+    public int getPriority() {
+        return myPriority;
+    }
+
+    /**
+     * @param priority one of Datastore.PRIORITY_BACKGROUND, Datastore.PRIORITY_NORMAL or
+     *                 Datastore.PRIORITY_USER_VISIBLE
+     * @return
+     */
+    public BulkInsertOptions setPriority(int priority) {
+        myPriority = priority;
+        return this;
+    }
+}
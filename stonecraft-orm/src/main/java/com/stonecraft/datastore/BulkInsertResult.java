@@ -0,0 +1,29 @@
+package com.stonecraft.datastore;
+
+/**
+ * This class holds the result of a bulk insert.
+ */
+public class BulkInsertResult {
+    private final int myInsertedCount;
+    private final long[] myRowIds;
+
+    BulkInsertResult(int insertedCount, long[] rowIds) {
+        myInsertedCount = insertedCount;
+        myRowIds = rowIds;
+    }
+
+    /**
+     * @return the number of rows that were inserted.
+     */
+    public int getInsertedCount() {
+        return myInsertedCount;
+    }
+
+    /**
+     * @return the row id of each inserted row in the order the rows were passed in, or null if
+     * BulkInsertOptions.setReturnRowIds() was not set.
+     */
+    public long[] getRowIds() {
+        return myRowIds;
+    }
+}
@@ -0,0 +1,61 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * This class inserts the rows of an iterator into a table. The rows are read from the iterator
+ * as they are inserted so they never need to all be held in memory at once.
+ */
+class BulkInsertTask extends DatabaseTask {
+    private final String myTable;
+    private final Iterator<?> myRows;
+    private final BulkInsertOptions myOptions;
+    private BulkInsertResult myResult;
+
+    BulkInsertTask(int taskId, Datastore datastore, String table, Iterator<?> rows,
+                   BulkInsertOptions options) {
+        super(taskId, Datastore.DEFAULT_TOKEN, datastore);
+        myTable = table;
+        myRows = rows;
+        myOptions = options;
+        setPriority(options.getPriority());
+    }
+
+    @Override
+    public void startTask() throws DatabaseException {
+        if (!myDatastore.validateDBConnection()) {
+            throw new DatabaseException(
+                    "Attempt to reopen an already closed database object. "
+                            + "Ensure a connection to the database is currently valid and open");
+        }
+
+        myResult = myDatastore.getActiveDatabase().bulkInsert(myTable, myRows, myOptions);
+    }
+
+    BulkInsertResult getTaskResult() {
+        return myResult;
+    }
+
+    @Override
+    Object getResult() {
+        return myResult;
+    }
+
+    @Override
+    boolean isWriteTask() {
+        return true;
+    }
+
+    @Override
+    Set<String> getTables() {
+        return createTableSet(myTable);
+    }
+
+    @Override
+    void notifyStmtListeners(DatabaseException e) {
+        // the result is only passed to the task's future
+    }
+}
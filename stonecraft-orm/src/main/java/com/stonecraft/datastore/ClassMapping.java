@@ -0,0 +1,238 @@
+package com.stonecraft.datastore;
+
+import android.graphics.Bitmap;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds everything the object injectors and the ContentValueCreator need to know
+ * about a class to move it's data in and out of the database. It is worked out once when the
+ * mapping is created and never changes afterwards, so a mapping can be shared by every thread.
+ * Mappings should be got from {@link ClassMappingRegistry} rather than created directly.
+ */
+final class ClassMapping<T> {
+    static final int BINDING_NONE = 0;
+    static final int BINDING_INT = 1;
+    static final int BINDING_INTEGER = 2;
+    static final int BINDING_PRIMITIVE_BOOLEAN = 3;
+    static final int BINDING_BOOLEAN = 4;
+    static final int BINDING_PRIMITIVE_DOUBLE = 5;
+    static final int BINDING_DOUBLE = 6;
+    static final int BINDING_PRIMITIVE_FLOAT = 7;
+    static final int BINDING_FLOAT = 8;
+    static final int BINDING_STRING = 9;
+    static final int BINDING_CALENDAR = 10;
+    static final int BINDING_DATE = 11;
+    static final int BINDING_BLOB = 12;
+    static final int BINDING_BITMAP = 13;
+
+    private final Class<T> myClass;
+    private final Constructor<T> myConstructor;
+    private final Field[] myFields;
+    private final Annotation[] myAnnotations;
+    private final int[] myBindingTypes;
+    private final Map<Field, Annotation> myFieldAnnotations;
+    private final Map<Field, Class> myListTypes;
+    private final Field[] myInsertFields;
+    private final String[] myInsertColumns;
+    private final RowMapper<T> myMapper;
+    private final RowBinder<T> myBinder;
+
+    ClassMapping(Class<T> klass) {
+        myClass = klass;
+        myConstructor = findConstructor(klass);
+        myFields = DatabaseUtils.getFieldsFromClass(klass);
+        myAnnotations = new Annotation[myFields.length];
+        myBindingTypes = new int[myFields.length];
+        Map<Field, Annotation> fieldAnnotations = new HashMap<>();
+        Map<Field, Class> listTypes = new HashMap<>();
+        List<Field> insertFields = new ArrayList<>();
+        List<String> insertColumns = new ArrayList<>();
+
+        for(int i = 0; i < myFields.length; i++) {
+            Field field = myFields[i];
+            Annotation annotation = findAnnotation(field);
+            if(annotation == null) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            myAnnotations[i] = annotation;
+            fieldAnnotations.put(field, annotation);
+            if(annotation instanceof DbColumnName) {
+                DbColumnName columnAnnotation = (DbColumnName)annotation;
+                myBindingTypes[i] = getBindingType(field.getType());
+                if(!columnAnnotation.isQueryOnly()) {
+                    insertFields.add(field);
+                    insertColumns.add(columnAnnotation.value());
+                }
+            } else if(annotation instanceof DbTableGroup
+                    && field.getGenericType() instanceof ParameterizedType) {
+                ParameterizedType listType = (ParameterizedType)field.getGenericType();
+                listTypes.put(field, (Class)listType.getActualTypeArguments()[0]);
+            }
+        }
+
+        myFieldAnnotations = Collections.unmodifiableMap(fieldAnnotations);
+        myListTypes = Collections.unmodifiableMap(listTypes);
+        myInsertFields = insertFields.toArray(new Field[insertFields.size()]);
+        myInsertColumns = insertColumns.toArray(new String[insertColumns.size()]);
+        myMapper = RowAdapters.getMapper(klass);
+        myBinder = RowAdapters.getBinder(klass);
+    }
+
+    /**
+     * @return every field of the class, including the fields of it's super classes. The array
+     * is shared so it must not be modified.
+     */
+    Field[] getFields() {
+        return myFields;
+    }
+
+    /**
+     * @param index the index of the field in {@link #getFields()}
+     * @return the DbColumnName, DbTableName or DbTableGroup annotation of the field or null if
+     * it doesn't have one
+     */
+    Annotation getAnnotation(int index) {
+        return myAnnotations[index];
+    }
+
+    /**
+     * @return the DbColumnName, DbTableName or DbTableGroup annotation of the passed in field or
+     * null if it doesn't have one
+     */
+    Annotation getAnnotation(Field field) {
+        return myFieldAnnotations.get(field);
+    }
+
+    /**
+     * @param index the index of the field in {@link #getFields()}
+     * @return one of the BINDING constants for the type of the field
+     */
+    int getBindingType(int index) {
+        return myBindingTypes[index];
+    }
+
+    /**
+     * @return the type of the objects in the list of the passed in DbTableGroup field
+     */
+    Class getListType(Field field) {
+        return myListTypes.get(field);
+    }
+
+    /**
+     * @return the public no argument constructor of the class
+     * @throws NoSuchMethodException if the class doesn't have one
+     */
+    Constructor<T> getConstructor() throws NoSuchMethodException {
+        if(myConstructor == null) {
+            throw new NoSuchMethodException(myClass.getName() + " doesn't have a public no "
+                    + "argument constructor");
+        }
+        return myConstructor;
+    }
+
+    T newInstance() throws NoSuchMethodException, InstantiationException,
+            IllegalAccessException, InvocationTargetException {
+        return getConstructor().newInstance();
+    }
+
+    /**
+     * @return the generated mapper of the class or null if it doesn't have one
+     */
+    RowMapper<T> getMapper() {
+        return myMapper;
+    }
+
+    /**
+     * @return the generated binder of the class or null if it doesn't have one
+     */
+    RowBinder<T> getBinder() {
+        return myBinder;
+    }
+
+    /**
+     * This method adds the column name and value of each DbColumnName field of the passed in
+     * object that isn't query only and isn't null to the passed in lists.
+     *
+     * @param object
+     * @param columns
+     * @param values
+     * @throws IllegalAccessException
+     */
+    void getColumnValues(Object object, List<String> columns, List<Object> values)
+            throws IllegalAccessException {
+        for(int i = 0; i < myInsertFields.length; i++) {
+            Object value = myInsertFields[i].get(object);
+            if(value != null) {
+                columns.add(myInsertColumns[i]);
+                values.add(value);
+            }
+        }
+    }
+
+    private static <T> Constructor<T> findConstructor(Class<T> klass) {
+        try {
+            return klass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            // classes that are only inserted don't need a no argument constructor
+            return null;
+        }
+    }
+
+    private static Annotation findAnnotation(Field field) {
+        for(Annotation annotation : field.getAnnotations()) {
+            if(annotation instanceof DbTableGroup ||
+                    annotation instanceof DbTableName ||
+                    annotation instanceof DbColumnName) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private static int getBindingType(Class fieldType) {
+        if(fieldType == Integer.TYPE) {
+            return BINDING_INT;
+        } else if(fieldType == Integer.class) {
+            return BINDING_INTEGER;
+        } else if(fieldType == Boolean.TYPE) {
+            return BINDING_PRIMITIVE_BOOLEAN;
+        } else if(fieldType == Boolean.class) {
+            return BINDING_BOOLEAN;
+        } else if(fieldType == Double.TYPE) {
+            return BINDING_PRIMITIVE_DOUBLE;
+        } else if(fieldType == Double.class) {
+            return BINDING_DOUBLE;
+        } else if(fieldType == Float.TYPE) {
+            return BINDING_PRIMITIVE_FLOAT;
+        } else if(fieldType == Float.class) {
+            return BINDING_FLOAT;
+        } else if(fieldType == String.class) {
+            return BINDING_STRING;
+        } else if(fieldType == Calendar.class) {
+            return BINDING_CALENDAR;
+        } else if(fieldType == Date.class) {
+            return BINDING_DATE;
+        } else if(fieldType == Byte[].class) {
+            return BINDING_BLOB;
+        } else if(fieldType == Bitmap.class) {
+            return BINDING_BITMAP;
+        }
+
+        return BINDING_NONE;
+    }
+}
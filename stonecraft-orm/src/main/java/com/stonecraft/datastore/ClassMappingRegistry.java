@@ -0,0 +1,57 @@
+package com.stonecraft.datastore;
+
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the ClassMapping of every class that has been injected or inserted. The
+ * mappings are shared by every connection and thread, so the reflection a class needs is only
+ * done the first time it is used in the process rather than by every query. Entity classes
+ * registered with {@link ConnectionConfig#registerEntityClasses(Class[])} are mapped when their
+ * connection is created so that the first query doesn't have to.
+ */
+final class ClassMappingRegistry {
+    private static final ConcurrentMap<Class, ClassMapping> myMappings =
+            new ConcurrentHashMap<Class, ClassMapping>();
+
+    private ClassMappingRegistry() {
+    }
+
+    /**
+     * @return the mapping of the passed in class, creating it if the class hasn't been mapped.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ClassMapping<T> getMapping(Class<T> klass) {
+        ClassMapping<T> mapping = myMappings.get(klass);
+        if (mapping == null) {
+            // two threads may both create the mapping but only the first one is kept
+            mapping = new ClassMapping<T>(klass);
+            ClassMapping<T> existing = myMappings.putIfAbsent(klass, mapping);
+            if (existing != null) {
+                mapping = existing;
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * This method creates the mapping of each of the passed in classes that hasn't been mapped.
+     * A class that can't be mapped is logged and skipped as the error will be reported when it
+     * is used.
+     *
+     * @param classes
+     */
+    static void warm(Collection<Class> classes) {
+        for (Class klass : classes) {
+            try {
+                getMapping(klass);
+            } catch (RuntimeException e) {
+                Log.w(ClassMappingRegistry.class.getSimpleName(), "Failed to map "
+                        + klass.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.stonecraft.datastore;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds the settings a connection's database is opened with. The settings can be
+ * declared in a Connection element of the schema xml or passed to
+ * {@link Datastore#createConnection(android.content.Context, java.io.InputStream,
+ * OnConnectionListener,
+ * com.stonecraft.datastore.interfaces.TaskScheduler, ConnectionConfig)}, in which case they
+ * override the settings in the xml.
+ * <p/>
+ * Write ahead logging, foreign keys and the statement cache size are set when the database is
+ * configured. PRAGMAs are run each time the database is opened, after write ahead logging has
+ * been set up, as enabling it resets the synchronous setting. Any setting that isn't set is left
+ * as the SQLite default.
+ * <p/>
+ * PRAGMAs only apply to the connection they are run on. When write ahead logging is enabled
+ * Android may run reads that are outside of a transaction on other connections from it's pool,
+ * which are opened with the default settings.
+ */
+public class ConnectionConfig {
+    public static final int SYNCHRONOUS_OFF = 0;
+    public static final int SYNCHRONOUS_NORMAL = 1;
+    public static final int SYNCHRONOUS_FULL = 2;
+    public static final int SYNCHRONOUS_EXTRA = 3;
+
+    public static final int TEMP_STORE_DEFAULT = 0;
+    public static final int TEMP_STORE_FILE = 1;
+    public static final int TEMP_STORE_MEMORY = 2;
+
+    public static final String PRAGMA_JOURNAL_MODE = "journal_mode";
+    public static final String PRAGMA_SYNCHRONOUS = "synchronous";
+    public static final String PRAGMA_CACHE_SIZE = "cache_size";
+    public static final String PRAGMA_TEMP_STORE = "temp_store";
+    public static final String PRAGMA_MMAP_SIZE = "mmap_size";
+    public static final String PRAGMA_JOURNAL_SIZE_LIMIT = "journal_size_limit";
+    public static final String PRAGMA_FOREIGN_KEYS = "foreign_keys";
+
+    private static final Pattern PRAGMA_NAME = Pattern.compile("[A-Za-z_]+");
+
+    private Boolean myIsWriteAheadLoggingEnabled;
+    private Boolean myIsForeignKeysEnabled;
+    private int myMaxSqlCacheSize;
+    private Map<String, String> myPragmas;
+    private Set<Class> myEntityClasses;
+
+    public ConnectionConfig() {
+        myPragmas = new LinkedHashMap<String, String>();
+        myEntityClasses = new LinkedHashSet<Class>();
+    }
+
+    /**
+     * @return whether write ahead logging should be enabled or null if the default journal mode
+     * is used.
+     */
+    public Boolean isWriteAheadLoggingEnabled() {
+        return myIsWriteAheadLoggingEnabled;
+    }
+
+    /**
+     * This method sets whether the database uses write ahead logging. With write ahead logging
+     * reads don't block while a write is in progress and a write doesn't wait for reads to
+     * finish.
+     *
+     * @param isEnabled
+     * @return
+     */
+    public ConnectionConfig setWriteAheadLoggingEnabled(boolean isEnabled) {
+        myIsWriteAheadLoggingEnabled = isEnabled;
+        return this;
+    }
+
+    /**
+     * @return whether foreign key constraints should be enforced or null if the default is used.
+     */
+    public Boolean isForeignKeysEnabled() {
+        return myIsForeignKeysEnabled;
+    }
+
+    public ConnectionConfig setForeignKeysEnabled(boolean isEnabled) {
+        myIsForeignKeysEnabled = isEnabled;
+        return this;
+    }
+
+    /**
+     * @return the number of compiled statements Android caches for each connection or 0 if the
+     * default is used.
+     */
+    public int getMaxSqlCacheSize() {
+        return myMaxSqlCacheSize;
+    }
+
+    /**
+     * This method sets the number of compiled statements Android caches for each connection.
+     *
+     * @param size a value from 1 to SQLiteDatabase.MAX_SQL_CACHE_SIZE
+     * @return
+     */
+    public ConnectionConfig setMaxSqlCacheSize(int size) {
+        if (size < 1 || size > SQLiteDatabase.MAX_SQL_CACHE_SIZE) {
+            throw new IllegalArgumentException("The sql cache size must be between 1 and "
+                    + SQLiteDatabase.MAX_SQL_CACHE_SIZE);
+        }
+        myMaxSqlCacheSize = size;
+        return this;
+    }
+
+    /**
+     * @param synchronous one of the SYNCHRONOUS constants
+     * @return
+     */
+    public ConnectionConfig setSynchronous(int synchronous) {
+        if (synchronous < SYNCHRONOUS_OFF || synchronous > SYNCHRONOUS_EXTRA) {
+            throw new IllegalArgumentException("Unknown synchronous setting " + synchronous);
+        }
+        return setPragma(PRAGMA_SYNCHRONOUS, String.valueOf(synchronous));
+    }
+
+    /**
+     * @param cacheSize the number of pages to cache or, if negative, the size of the cache in
+     *                  KiB.
+     * @return
+     */
+    public ConnectionConfig setCacheSize(long cacheSize) {
+        return setPragma(PRAGMA_CACHE_SIZE, String.valueOf(cacheSize));
+    }
+
+    /**
+     * @param tempStore one of the TEMP_STORE constants
+     * @return
+     */
+    public ConnectionConfig setTempStore(int tempStore) {
+        if (tempStore < TEMP_STORE_DEFAULT || tempStore > TEMP_STORE_MEMORY) {
+            throw new IllegalArgumentException("Unknown temp store setting " + tempStore);
+        }
+        return setPragma(PRAGMA_TEMP_STORE, String.valueOf(tempStore));
+    }
+
+    /**
+     * @param mmapSize the number of bytes of the database file to memory map or 0 to not use
+     *                 memory mapped I/O.
+     * @return
+     */
+    public ConnectionConfig setMmapSize(long mmapSize) {
+        return setPragma(PRAGMA_MMAP_SIZE, String.valueOf(mmapSize));
+    }
+
+    /**
+     * @param limit the number of bytes the journal or write ahead log is truncated to after a
+     *              transaction or checkpoint, or -1 for no limit.
+     * @return
+     */
+    public ConnectionConfig setJournalSizeLimit(long limit) {
+        return setPragma(PRAGMA_JOURNAL_SIZE_LIMIT, String.valueOf(limit));
+    }
+
+    /**
+     * This method sets a PRAGMA that is run each time the database is opened. Foreign keys and
+     * write ahead logging should be set with their own setters as Android manages them.
+     *
+     * @param name
+     * @param value
+     * @return
+     */
+    public ConnectionConfig setPragma(String name, String value) {
+        if (name == null || !PRAGMA_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid PRAGMA name " + name);
+        }
+        if (value == null || value.contains(";")) {
+            throw new IllegalArgumentException("Invalid value for PRAGMA " + name);
+        }
+        if (PRAGMA_FOREIGN_KEYS.equalsIgnoreCase(name)
+                || PRAGMA_JOURNAL_MODE.equalsIgnoreCase(name)) {
+            throw new IllegalArgumentException("PRAGMA " + name + " is managed by Android. Use "
+                    + "setForeignKeysEnabled() or setWriteAheadLoggingEnabled()");
+        }
+        myPragmas.put(name.toLowerCase(), value.trim());
+        return this;
+    }
+
+    /**
+     * @return the PRAGMAs in the order they were set.
+     */
+    public Map<String, String> getPragmas() {
+        return Collections.unmodifiableMap(myPragmas);
+    }
+
+    /**
+     * This method registers the classes that are injected with or inserted from this
+     * connection's data. Their fields and annotations are read on one of the connection's
+     * threads when the connection is created, rather than by the first query that uses them.
+     * Classes that aren't registered are still mapped the first time they are used.
+     *
+     * @param classes
+     * @return
+     */
+    public ConnectionConfig registerEntityClasses(Class... classes) {
+        Collections.addAll(myEntityClasses, classes);
+        return this;
+    }
+
+    /**
+     * @return the entity classes in the order they were registered.
+     */
+    public Set<Class> getEntityClasses() {
+        return Collections.unmodifiableSet(myEntityClasses);
+    }
+
+    /**
+     * This method copies each setting that has been set in the passed in config into this
+     * config.
+     *
+     * @param config
+     */
+    void override(ConnectionConfig config) {
+        if (config.myIsWriteAheadLoggingEnabled != null) {
+            myIsWriteAheadLoggingEnabled = config.myIsWriteAheadLoggingEnabled;
+        }
+        if (config.myIsForeignKeysEnabled != null) {
+            myIsForeignKeysEnabled = config.myIsForeignKeysEnabled;
+        }
+        if (config.myMaxSqlCacheSize > 0) {
+            myMaxSqlCacheSize = config.myMaxSqlCacheSize;
+        }
+        myPragmas.putAll(config.myPragmas);
+        myEntityClasses.addAll(config.myEntityClasses);
+    }
+}
@@ -0,0 +1,105 @@
+package com.stonecraft.datastore;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * This class holds the settings a connection's database is actually running with, read back
+ * from the database. It can be used to check that the settings in the {@link ConnectionConfig}
+ * have been applied.
+ */
+public class ConnectionSettings {
+    private final boolean myIsWriteAheadLoggingEnabled;
+    private final int myMaxSqlCacheSize;
+    private final Map<String, String> myPragmas;
+
+    ConnectionSettings(boolean isWriteAheadLoggingEnabled, int maxSqlCacheSize,
+                       Map<String, String> pragmas) {
+        myIsWriteAheadLoggingEnabled = isWriteAheadLoggingEnabled;
+        myMaxSqlCacheSize = maxSqlCacheSize;
+        myPragmas = Collections.unmodifiableMap(pragmas);
+    }
+
+    public boolean isWriteAheadLoggingEnabled() {
+        return myIsWriteAheadLoggingEnabled;
+    }
+
+    /**
+     * @return the statement cache size that was set in the config or 0 if the default is used.
+     * Android doesn't report the size it is using.
+     */
+    public int getMaxSqlCacheSize() {
+        return myMaxSqlCacheSize;
+    }
+
+    public String getJournalMode() {
+        return getPragma(ConnectionConfig.PRAGMA_JOURNAL_MODE);
+    }
+
+    /**
+     * @return one of the ConnectionConfig SYNCHRONOUS constants
+     */
+    public int getSynchronous() {
+        return (int)getLongPragma(ConnectionConfig.PRAGMA_SYNCHRONOUS);
+    }
+
+    public long getCacheSize() {
+        return getLongPragma(ConnectionConfig.PRAGMA_CACHE_SIZE);
+    }
+
+    /**
+     * @return one of the ConnectionConfig TEMP_STORE constants
+     */
+    public int getTempStore() {
+        return (int)getLongPragma(ConnectionConfig.PRAGMA_TEMP_STORE);
+    }
+
+    public long getMmapSize() {
+        return getLongPragma(ConnectionConfig.PRAGMA_MMAP_SIZE);
+    }
+
+    public long getJournalSizeLimit() {
+        return getLongPragma(ConnectionConfig.PRAGMA_JOURNAL_SIZE_LIMIT);
+    }
+
+    public boolean isForeignKeysEnabled() {
+        return getLongPragma(ConnectionConfig.PRAGMA_FOREIGN_KEYS) == DBConstants.SQLITE_TRUE;
+    }
+
+    /**
+     * This method returns the value of a PRAGMA that was read from the database. The reported
+     * PRAGMAs are the ones with getters in this class and any PRAGMAs set in the config.
+     *
+     * @param name
+     * @return the value or null if the PRAGMA wasn't read
+     */
+    public String getPragma(String name) {
+        return myPragmas.get(name.toLowerCase());
+    }
+
+    /**
+     * @return all the PRAGMAs that were read from the database.
+     */
+    public Map<String, String> getPragmas() {
+        return myPragmas;
+    }
+
+    private long getLongPragma(String name) {
+        String value = getPragma(name);
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionSettings[wal=" + myIsWriteAheadLoggingEnabled + ", sqlCacheSize="
+                + myMaxSqlCacheSize + ", pragmas=" + myPragmas + "]";
+    }
+}
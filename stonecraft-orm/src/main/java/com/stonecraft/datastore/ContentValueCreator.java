@@ -1,17 +1,17 @@
 package com.stonecraft.datastore;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteProgram;
 import android.graphics.Bitmap;
 import android.net.Uri;
 
 import com.stonecraft.datastore.exceptions.DatabaseException;
 
 import java.io.ByteArrayOutputStream;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -22,42 +22,49 @@ import java.util.Set;
  * Created: 1/02/16
  */
 public class ContentValueCreator {
-    private Field[] myClassFields;
-    private Map<Field, Annotation> myAnnotations;
-
-    public ContentValueCreator() {
-        myAnnotations = new HashMap<>();
-    }
 
     public ContentValues getContentValues(Object object) throws DatabaseException {
         ContentValues cv = new ContentValues();
-        try {
-            if(myClassFields == null) {
-                myClassFields = DatabaseUtils.getFieldsFromClass(object.getClass());
-            }
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        getColumnValues(object, columns, values);
+        for(int i = 0; i < columns.size(); i++) {
+            addToContentValues(cv, columns.get(i), values.get(i));
+        }
+
+        return cv;
+    }
 
-            for(Field field : myClassFields) {
-                DbColumnName annotation = (DbColumnName)myAnnotations.get(field);
-                if(annotation == null) {
-                    annotation = field.getAnnotation(DbColumnName.class);
-                    myAnnotations.put(field, annotation);
-                }
-                if(annotation!= null && !annotation.isQueryOnly()) {
-                    field.setAccessible(true);
-                    String column = annotation.value();
-                    Object value = field.get(object);
-                    if(value != null) {
-                        addToContentValues(cv, column, value);
-                    }
-                }
-            }
+    /**
+     * This method adds the name and value of each annotated field of the passed in object that
+     * isn't null to the passed in lists. This allows the values to be bound straight to a
+     * compiled statement without creating a ContentValues for every row.
+     * <p/>
+     * If a RowBinder has been generated for the object's class it is used instead of
+     * reflection. The fields are read using the class mapping shared by the whole process, so
+     * this object holds no state and can be used for any class from any thread.
+     *
+     * @param object
+     * @param columns
+     * @param values
+     * @throws DatabaseException
+     */
+    public void getColumnValues(Object object, List<String> columns, List<Object> values)
+            throws DatabaseException {
+        ClassMapping mapping = ClassMappingRegistry.getMapping(object.getClass());
+        RowBinder binder = mapping.getBinder();
+        if(binder != null) {
+            binder.getColumnValues(object, columns, values);
+            return;
+        }
+
+        try {
+            mapping.getColumnValues(object, columns, values);
         } catch (IllegalAccessException e) {
             throw new DatabaseException("The field that are to annotated to with the database " +
                     "column name so that their value can be inserted into the database must " +
                     "be accessible", e);
         }
-
-        return cv;
     }
 
     /**
@@ -80,6 +87,62 @@ public class ContentValueCreator {
         return cv;
     }
 
+    /**
+     * This method adds the column names and values of an EntrySet to the passed in lists.
+     *
+     * @param row
+     * @param columns
+     * @param values
+     */
+    public void getColumnValues(Set<Map.Entry<String, Object>> row, List<String> columns,
+            List<Object> values) {
+        for (Map.Entry<String, Object> entrySet : row) {
+            columns.add(entrySet.getKey());
+            values.add(entrySet.getValue());
+        }
+    }
+
+    /**
+     * This method binds a value to a compiled statement, converting it in the same way it
+     * would be converted when it is added to a ContentValues.
+     *
+     * @param stmt
+     * @param index the 1 based index of the parameter
+     * @param value
+     * @throws DatabaseException
+     */
+    public static void bindValue(SQLiteProgram stmt, int index, Object value)
+            throws DatabaseException {
+        if(value == null) {
+            stmt.bindNull(index);
+        } else if (value instanceof Integer || value instanceof Long) {
+            stmt.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            stmt.bindLong(index, ((Boolean) value) ? 1 : 0);
+        } else if (value instanceof Double || value instanceof Float) {
+            stmt.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            stmt.bindString(index, (String) value);
+        } else if (value instanceof Date) {
+            stmt.bindLong(index, ((Date) value).getTime());
+        } else if (value instanceof Calendar) {
+            stmt.bindLong(index, ((Calendar) value).getTimeInMillis());
+        } else if(value instanceof byte[]) {
+            stmt.bindBlob(index, (byte[]) value);
+        } else if(value instanceof Bitmap) {
+            Bitmap bmp = (Bitmap)value;
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            bmp.compress(Bitmap.CompressFormat.PNG, 100, stream);
+            stmt.bindBlob(index, stream.toByteArray());
+        }  else if(value instanceof Uri) {
+            stmt.bindString(index, value.toString());
+        } else {
+            throw new DatabaseException("Datatype "
+                    + value.getClass().getName() + " is not a valid "
+                    + "datatype");
+        }
+    }
+
     private void addToContentValues(ContentValues cv, String columnName, Object value) throws DatabaseException {
         if(value == null) {
             cv.putNull(columnName);
@@ -9,6 +9,7 @@ import com.stonecraft.datastore.view.DatabaseTable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class
@@ -45,13 +46,9 @@ public class CreateTableTask extends DatabaseTask {
 			String createStatement = myTable.getCreateTableStmt();
 			myDatastore.getActiveDatabase().executeRawStatement(createStatement);
 			myResult = TABLE_CREATED;
-			notifyStmtListeners(null);
 		} catch (DatabaseException e) {
 			myResult = TABLE_NOT_CREATED;
-			notifyStmtListeners(e);
 			throw e;
-		} finally {
-			notifyTaskListeners();
 		}
 	}
 	
@@ -79,6 +76,21 @@ public class CreateTableTask extends DatabaseTask {
 		return myResult;
 	}
 
+	@Override
+	Object getResult() {
+		return myResult;
+	}
+
+	@Override
+	boolean isWriteTask() {
+		return true;
+	}
+
+	@Override
+	Set<String> getTables() {
+		return createTableSet(myTable.getName());
+	}
+
 	/**
 	 * This method notifys any listeners that the task has completed.
 	 */
@@ -78,4 +78,7 @@ public class DBConstants {
 	
 	public static final String SCHEMA_SETTINGS_TYPE_DB_NAME = "DB_NAME";
 	public static final String SCHEMA_SETTINGS_TYPE_DB_VERSION = "DB_VERSION";
+	public static final String SCHEMA_SETTINGS_TYPE_INDEX = "INDEX";
+	public static final String SCHEMA_SETTINGS_TYPE_REBUILD_PREFIX = "REBUILD:";
+	public static final String SCHEMA_SETTINGS_TYPE_SCHEMA_HASH = "SCHEMA_HASH";
 }
@@ -3,6 +3,7 @@ package com.stonecraft.datastore;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
@@ -14,6 +15,7 @@ import com.stonecraft.datastore.view.SQLiteColumn;
 import com.stonecraft.datastore.view.SQLiteTable;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +30,17 @@ import java.util.Map;
  * @date Date: 16/03/2012 01:50:39
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
+    private static final String STATEMENT_SET_PRAGMA = "PRAGMA %s = %s";
+    private static final String QUERY_PRAGMA = "PRAGMA %s";
+    private static final String[] REPORTED_PRAGMAS = {
+            ConnectionConfig.PRAGMA_JOURNAL_MODE,
+            ConnectionConfig.PRAGMA_SYNCHRONOUS,
+            ConnectionConfig.PRAGMA_CACHE_SIZE,
+            ConnectionConfig.PRAGMA_TEMP_STORE,
+            ConnectionConfig.PRAGMA_MMAP_SIZE,
+            ConnectionConfig.PRAGMA_JOURNAL_SIZE_LIMIT,
+            ConnectionConfig.PRAGMA_FOREIGN_KEYS};
+
     private SQLiteDatabase myDBInUse;
     private final int myVersion;
     private DbSchemaModel myDBSchema;
@@ -42,6 +55,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         myDBSchema = schema;
         myConnection = connection;
         myConnectionCreatedListener = listener;
+
+        Boolean isWalEnabled = schema.getConnectionConfig().isWriteAheadLoggingEnabled();
+        if (isWalEnabled != null) {
+            setWriteAheadLoggingEnabled(isWalEnabled);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see android.database.sqlite.SQLiteOpenHelper#onConfigure(android.database.sqlite.SQLiteDatabase)
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        configure(db);
     }
 
     @Override
@@ -62,13 +89,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         try {
             myDBInUse = db;
-            int value = myConnection.doesTableExist(DBConstants.TABLE_MAP);
             if (myConnection.doesTableExist(DBConstants.TABLE_MAP) == 0) {
                 DatabaseUpdater.createDataMapTables(myConnection, myDBSchema);
                 if (myConnection.doesTableExist(AndroidDBConnection.TABLE_SQLITE_MASTER) == 0) {
                     populateInitialDatamapTable(myDBInUse, oldVersion);
                 }
             }
+            // tables that need to be rebuilt are only scheduled here. The rows are copied in
+            // onOpen() so that each chunk is committed rather than nested in this transaction.
             DatabaseUpdater updater = new DatabaseUpdater(myConnection);
             myDBSchema = updater.update(myDBSchema);
 
@@ -88,15 +116,21 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
+        applyPragmas(db);
         try {
             myDBInUse = db;
-            int value = myConnection.doesTableExist(DBConstants.TABLE_MAP);
-            if (myConnection.doesTableExist(DBConstants.TABLE_MAP) == 0) {
-                DatabaseUpdater.createDataMapTables(myConnection, myDBSchema);
-                if (myConnection.doesTableExist(AndroidDBConnection.TABLE_SQLITE_MASTER) == 0) {
-                    //version is not important at this point so can be one less than the new schema
-                    populateInitialDatamapTable(myDBInUse, myDBSchema.getVersion() - 1);
+            // the hash is only stored once the datamap exists and every rebuild has finished
+            if (!myDBSchema.getSchemaHash().equals(getStoredSchemaHash())) {
+                if (myConnection.doesTableExist(DBConstants.TABLE_MAP) == 0) {
+                    DatabaseUpdater.createDataMapTables(myConnection, myDBSchema);
+                    if (myConnection.doesTableExist(AndroidDBConnection.TABLE_SQLITE_MASTER) == 0) {
+                        //version is not important at this point so can be one less than the new
+                        //schema
+                        populateInitialDatamapTable(myDBInUse, myDBSchema.getVersion() - 1);
+                    }
                 }
+                new TableRebuildMigrator(db, myDBSchema, myConnectionCreatedListener)
+                        .rebuildPendingTables();
             }
             myDBInUse = null;
 
@@ -109,6 +143,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * @return the schema hash stored in the schema settings table or null if it hasn't been
+     * stored or the table doesn't exist yet
+     */
+    private String getStoredSchemaHash() {
+        try {
+            return DatabaseUpdater.getStoredSchemaHash(myConnection);
+        } catch (DatabaseException e) {
+            return null;
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -164,6 +210,82 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         if (!myDBInUse.isOpen()) {
             myDBInUse = SQLiteDatabase.openDatabase(
                     myDBInUse.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            // the open helper's callbacks aren't called when the database is opened directly
+            configure(myDBInUse);
+            Boolean isWalEnabled = myDBSchema.getConnectionConfig().isWriteAheadLoggingEnabled();
+            if (isWalEnabled != null && isWalEnabled) {
+                myDBInUse.enableWriteAheadLogging();
+            }
+            applyPragmas(myDBInUse);
+        }
+    }
+
+    /**
+     * This method reads the settings the database is running with back from the database.
+     *
+     * @return
+     */
+    ConnectionSettings getConnectionSettings() {
+        SQLiteDatabase db = getReadableDatabase();
+        ConnectionConfig config = myDBSchema.getConnectionConfig();
+        Map<String, String> pragmas = new LinkedHashMap<String, String>();
+        for (String name : REPORTED_PRAGMAS) {
+            pragmas.put(name, queryPragma(db, name));
+        }
+        for (String name : config.getPragmas().keySet()) {
+            if (!pragmas.containsKey(name)) {
+                pragmas.put(name, queryPragma(db, name));
+            }
+        }
+
+        return new ConnectionSettings(db.isWriteAheadLoggingEnabled(),
+                config.getMaxSqlCacheSize(), pragmas);
+    }
+
+    /**
+     * This method applies the connection settings that must be set before the database is
+     * used.
+     *
+     * @param db
+     */
+    private void configure(SQLiteDatabase db) {
+        ConnectionConfig config = myDBSchema.getConnectionConfig();
+        if (config.isForeignKeysEnabled() != null) {
+            db.setForeignKeyConstraintsEnabled(config.isForeignKeysEnabled());
+        }
+        if (config.getMaxSqlCacheSize() > 0) {
+            db.setMaxSqlCacheSize(config.getMaxSqlCacheSize());
+        }
+    }
+
+    /**
+     * This method runs each of the PRAGMAs in the connection config. A PRAGMA that fails is
+     * logged rather than stopping the database from opening as they only tune the database.
+     *
+     * @param db
+     */
+    private void applyPragmas(SQLiteDatabase db) {
+        for (Map.Entry<String, String> pragma :
+                myDBSchema.getConnectionConfig().getPragmas().entrySet()) {
+            try {
+                // some PRAGMAs return their new value so they must be run as a query
+                Cursor cursor = db.rawQuery(String.format(STATEMENT_SET_PRAGMA,
+                        pragma.getKey(), pragma.getValue()), null);
+                cursor.moveToFirst();
+                cursor.close();
+            } catch (SQLiteException e) {
+                Log.e("Databasestore Helper", "Failed to set PRAGMA " + pragma.getKey()
+                        + " [" + e + "]");
+            }
+        }
+    }
+
+    private String queryPragma(SQLiteDatabase db, String name) {
+        Cursor cursor = db.rawQuery(String.format(QUERY_PRAGMA, name), null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
         }
     }
 
@@ -180,6 +302,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             for (String statement : createStatements) {
                 db.execSQL(statement);
             }
+            for (String statement : myDBSchema.getIndexCreateStmts()) {
+                db.execSQL(statement);
+            }
             new DatabaseUpdater(myConnection).update(myDBSchema);
             db.setTransactionSuccessful();
             Log.i("Databasestore Helper",
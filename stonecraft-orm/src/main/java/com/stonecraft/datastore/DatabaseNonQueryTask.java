@@ -5,6 +5,7 @@ import com.stonecraft.datastore.interfaces.OnNonQueryComplete;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class is used for tasks that are to be run on a database. It handles
@@ -52,6 +53,24 @@ class DatabaseNonQueryTask extends DatabaseTask {
         myResult = myTransaction.run();
 	}
 
+	/**
+	 * This method runs the statements of this task inside a transaction that has already been
+	 * started by a GroupCommitTask. The transaction is not committed and the table watchers
+	 * are not notified until the group has been committed.
+	 *
+	 * @throws DatabaseException
+	 */
+	void startGroupedTask() throws DatabaseException {
+		myResult = myTransaction.executeStatements();
+	}
+
+	/**
+	 * This method notifies the table watchers of the tables changed by this task.
+	 */
+	void sendTableUpdateNotifications() {
+		myTransaction.sendTableUpdateNotifications();
+	}
+
 	/**
 	 * This method adds a listener that will be notified when this statement has
 	 * completed.
@@ -76,6 +95,21 @@ class DatabaseNonQueryTask extends DatabaseTask {
 		return myResult;
 	}
 
+	@Override
+	Object getResult() {
+		return myResult;
+	}
+
+	@Override
+	boolean isWriteTask() {
+		return true;
+	}
+
+	@Override
+	Set<String> getTables() {
+		return myTransaction.getTables();
+	}
+
 	/**
 	 * This method notifys any listeners that the task has completed.
 	 */
@@ -1,10 +1,13 @@
 package com.stonecraft.datastore;
 
 import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interaction.Join;
 import com.stonecraft.datastore.interaction.Query;
 import com.stonecraft.datastore.interaction.RawSQLQuery;
 import com.stonecraft.datastore.interfaces.IDBConnector;
 
+import java.util.Set;
+
 /**
  * This class is used for tasks that are to be run on a database. It handles
  * whether the task is to be run on a separate thread and notifies any listeners
@@ -72,10 +75,11 @@ class DatabaseQueryTask extends DatabaseTask {
         try {
 			IDBConnector connector = myDatastore.getActiveDatabase();
 			if (myQuery instanceof RawSQLQuery) {
-				data = connector.executeRawQuery((((RawSQLQuery) myQuery)).getQuery());
+				data = connector.executeRawQuery((((RawSQLQuery) myQuery)).getQuery(),
+						getCancellationSignal());
 				return (T[]) parseQuery((RawSQLQuery) myQuery, data, classOfT);
 			}else if (myQuery instanceof Query) {
-                data = connector.query((Query)myQuery);
+                data = connector.query((Query)myQuery, getCancellationSignal());
                 return (T[])parseQuery((Query)myQuery, data, classOfT);
             } else {
                 throw new DatabaseException("Unknown statement type "
@@ -87,16 +91,50 @@ class DatabaseQueryTask extends DatabaseTask {
 			if(data != null) {
 				data.close();
 			}
-
-			if(myQueryListener != null) {
-				myQueryListener.onQueryFailed(myToken, e);
-			}
             throw e;
-        } finally {
-            notifyTaskListeners();
-        }
+        } catch (RuntimeException e) {
+			// an OperationCanceledException can be thrown while the cursor is being filled
+			if(data != null) {
+				data.close();
+			}
+			throw e;
+		}
     }
 
+	@Override
+	Object getResult() {
+		return myResult;
+	}
+
+	@Override
+	boolean isWriteTask() {
+		return false;
+	}
+
+	@Override
+	Set<String> getTables() {
+		return getQueryTables(myQuery);
+	}
+
+	/**
+	 * This method returns the names of the tables the passed in query reads from. Null is
+	 * returned for a raw sql query as it's tables can't be determined.
+	 *
+	 * @param query
+	 * @return
+	 */
+	static Set<String> getQueryTables(Query query) {
+		if (query instanceof RawSQLQuery) {
+			return null;
+		}
+
+		Set<String> tables = createTableSet(query.getTable());
+		for (Join join : query.getJoins()) {
+			addTable(tables, join.getTable());
+		}
+		return tables;
+	}
+
 	/**
 	 * This method notifys any listeners that the task has completed.
 	 */
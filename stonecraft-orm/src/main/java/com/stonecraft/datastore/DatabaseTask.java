@@ -1,21 +1,49 @@
 package com.stonecraft.datastore;
 
-import android.os.AsyncTask;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 
 import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interfaces.OnTaskCompleteListener;
+import com.stonecraft.datastore.interfaces.TaskScheduler;
 import com.stonecraft.datastore.interfaces.Tasker;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
-abstract class DatabaseTask extends AsyncTask<Void, Void, DatabaseException> implements Tasker {
+/**
+ * This class is the base for all tasks that are run on a database. When a task is executed it is
+ * passed to the TaskScheduler of the connection it was created for. Write tasks are run on the
+ * scheduler's writer thread and all other tasks are run on it's reader threads. Once the task
+ * has completed the listeners are notified on the scheduler's result thread.
+ * <p/>
+ * When a task is queued it's priority decides the order it is started in relative to the other
+ * tasks waiting in the connection's queue.
+ */
+abstract class DatabaseTask implements Runnable, Tasker {
+
+	enum Status {
+		PENDING,
+		RUNNING,
+		FINISHED
+	}
 
 	protected int myToken;
 	protected Datastore myDatastore;
 	private int myTaskId;
 	private List<OnTaskCompleteListener> myTaskListeners;
 	private RuntimeException myPendingRuntimeException;
+	private TaskScheduler myScheduler;
+	private TaskQueue myTaskQueue;
+	private volatile Status myStatus;
+	private int myPriority;
+	private long myQueuedTime;
+	private volatile boolean myIsCancelled;
+	private CancellationSignal myCancellationSignal;
+	private DatastoreFuture myFuture;
 
 	public DatabaseTask(int taskId, int token, Datastore datastore) {
 		myTaskId = taskId;
@@ -23,6 +51,9 @@ abstract class DatabaseTask extends AsyncTask<Void, Void, DatabaseException> imp
 		myDatastore = datastore;
 
 		myTaskListeners = new ArrayList<OnTaskCompleteListener>();
+		myStatus = Status.PENDING;
+		myPriority = Datastore.PRIORITY_NORMAL;
+		myCancellationSignal = new CancellationSignal();
 	}
 
 	/**
@@ -36,6 +67,33 @@ abstract class DatabaseTask extends AsyncTask<Void, Void, DatabaseException> imp
 		return myToken;
 	}
 
+	/**
+	 * @return the priority this task is run with in the connection's queue.
+	 */
+	public int getPriority() {
+		return myPriority;
+	}
+
+	/**
+	 * This method sets the priority of this task in the connection's queue. Tasks with a higher
+	 * priority are started before queued tasks with a lower priority. This must be set before
+	 * the task is queued.
+	 *
+	 * @param priority one of Datastore.PRIORITY_BACKGROUND, Datastore.PRIORITY_NORMAL or
+	 *                 Datastore.PRIORITY_USER_VISIBLE
+	 */
+	public void setPriority(int priority) {
+		myPriority = priority;
+	}
+
+	long getQueuedTime() {
+		return myQueuedTime;
+	}
+
+	TaskQueue getTaskQueue() {
+		return myTaskQueue;
+	}
+
 	/**
 	 * This method adds a listener that will be notified when this task has
 	 * completed.
@@ -69,25 +127,171 @@ abstract class DatabaseTask extends AsyncTask<Void, Void, DatabaseException> imp
 		}
 	}
 
-	@Override
-	protected void onPreExecute() {
+	/**
+	 * This method passes this task to the TaskScheduler of the datastore it was created with.
+	 * A task can only be executed once.
+	 */
+	public void execute() {
+		if (myStatus != Status.PENDING) {
+			throw new IllegalStateException("Cannot execute task: the task has already been " +
+					"executed");
+		}
+		// keeps the stack of the calling thread so that a runtime exception thrown on the
+		// scheduler's thread can be traced back to where the task was executed from.
 		myPendingRuntimeException = new RuntimeException();
-		super.onPreExecute();
+		myScheduler = myDatastore.getTaskScheduler();
+		if (isWriteTask()) {
+			myScheduler.executeWrite(this);
+		} else {
+			myScheduler.executeRead(this);
+		}
+	}
+
+	/**
+	 * This method sets the queue this task has been added to. The queue will be told when this
+	 * task has finished running so that the next task can be started.
+	 *
+	 * @param queue
+	 */
+	void setTaskQueue(TaskQueue queue, long queuedTime) {
+		myTaskQueue = queue;
+		myQueuedTime = queuedTime;
+	}
+
+	/**
+	 * This method sets the signal that is passed down to the database when this task is run.
+	 * This is used when a task is run on the calling thread with a signal that is owned by the
+	 * caller.
+	 *
+	 * @param cancellationSignal
+	 */
+	void setCancellationSignal(CancellationSignal cancellationSignal) {
+		myCancellationSignal = cancellationSignal;
+	}
+
+	CancellationSignal getCancellationSignal() {
+		return myCancellationSignal;
+	}
+
+	/**
+	 * This method cancels this task. If the task is still waiting in a queue it is removed from
+	 * the queue, otherwise the database operation is interrupted. The statement listeners of a
+	 * cancelled task are not notified.
+	 * <p/>
+	 * A write task can only be cancelled while it is waiting in the queue. Once it has left the
+	 * queue it may already have been committed, so it is left to finish and it's result is
+	 * still delivered.
+	 *
+	 * @return false if the task had already finished or is a write that has left the queue,
+	 * true otherwise.
+	 */
+	boolean cancel() {
+		if (myStatus == Status.FINISHED) {
+			return false;
+		}
+
+		if (isWriteTask()) {
+			if (myTaskQueue == null || !myTaskQueue.remove(this)) {
+				return false;
+			}
+			myIsCancelled = true;
+			myStatus = Status.FINISHED;
+			return true;
+		}
+
+		myIsCancelled = true;
+		myCancellationSignal.cancel();
+		if (myTaskQueue != null && myTaskQueue.remove(this)) {
+			myStatus = Status.FINISHED;
+		}
+		return true;
+	}
+
+	boolean isCancelled() {
+		return myIsCancelled;
+	}
+
+	/**
+	 * This method sets the future that is completed with the result of this task. A task with a
+	 * future completes it on the thread the task was run on instead of passing the result to the
+	 * scheduler's result thread.
+	 *
+	 * @param future
+	 */
+	void setFuture(DatastoreFuture future) {
+		myFuture = future;
+		future.setTaskHandle(new TaskHandle(this));
 	}
 
 	@Override
+	public void run() {
+		myStatus = Status.RUNNING;
+		final DatabaseException e;
+		try {
+			e = myIsCancelled ? null : doInBackground();
+		} finally {
+			if (myTaskQueue != null) {
+				myTaskQueue.onTaskFinished(this);
+			}
+		}
+
+		deliverResult(e);
+	}
+
+	/**
+	 * This method marks this task as running. It is used when this task is run as part of
+	 * another task rather than being executed itself.
+	 */
+	void markRunning() {
+		myStatus = Status.RUNNING;
+	}
+
+	/**
+	 * This method passes the result of this task to it's future on the current thread, or to
+	 * it's listeners on the scheduler's result thread.
+	 *
+	 * @param e the exception the task failed with or null if it succeeded
+	 */
+	void deliverResult(final DatabaseException e) {
+		if (myFuture != null) {
+			onPostExecute(e);
+			myStatus = Status.FINISHED;
+			return;
+		}
+		myDatastore.getTaskScheduler().deliverResult(new Runnable() {
+			@Override
+			public void run() {
+				onPostExecute(e);
+				myStatus = Status.FINISHED;
+			}
+		});
+	}
+
 	protected void onPostExecute(DatabaseException e) {
-		notifyStmtListeners(e);
+		if (!myIsCancelled) {
+			notifyStmtListeners(e);
+		}
+		if (myFuture != null) {
+			if (myIsCancelled) {
+				myFuture.cancel(false);
+			} else if (e != null) {
+				myFuture.fail(e);
+			} else {
+				myFuture.complete(getResult());
+			}
+		}
 		notifyTaskListeners();
 	}
 
-	@Override
-	protected DatabaseException doInBackground(Void... params) {
+	protected DatabaseException doInBackground() {
 		try {
 			startTask();
 			return null;
 		} catch (DatabaseException e) {
 			return e;
+		} catch (OperationCanceledException e) {
+			// the listeners of a cancelled task are not notified so there is nothing to return
+			return null;
 		} catch (RuntimeException e) {
 			myPendingRuntimeException.initCause(e);
 			throw myPendingRuntimeException;
@@ -104,8 +308,80 @@ abstract class DatabaseTask extends AsyncTask<Void, Void, DatabaseException> imp
 
 	@Override
 	public boolean isTaskRunning() {
-		return getStatus() == Status.RUNNING;
+		return myStatus == Status.RUNNING;
+	}
+
+	/**
+	 * This method returns whether this task modifies the database. Write tasks are run one at a
+	 * time by the TaskScheduler.
+	 *
+	 * @return
+	 */
+	abstract boolean isWriteTask();
+
+	/**
+	 * This method returns the names of the tables this task reads from or writes to. If the
+	 * tables can't be determined (eg. for a raw sql statement) null is returned and the task is
+	 * treated as touching every table in the database.
+	 *
+	 * @return
+	 */
+	abstract Set<String> getTables();
+
+	/**
+	 * This method returns whether this task and the passed in task can't be run at the same
+	 * time. Two tasks conflict when at least one of them is a write task and they share a table.
+	 *
+	 * @param task
+	 * @return
+	 */
+	boolean conflictsWith(DatabaseTask task) {
+		if (!isWriteTask() && !task.isWriteTask()) {
+			return false;
+		}
+
+		Set<String> tables = getTables();
+		Set<String> otherTables = task.getTables();
+		if (tables == null || otherTables == null) {
+			return true;
+		}
+
+		for (String table : tables) {
+			if (otherTables.contains(table)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
+	/**
+	 * This method creates a set of table names that can be returned from getTables(). Table
+	 * names are case insensitive in SQLite so all names are stored in lower case.
+	 *
+	 * @param tables
+	 * @return
+	 */
+	static Set<String> createTableSet(String... tables) {
+		Set<String> tableSet = new HashSet<String>();
+		for (String table : tables) {
+			addTable(tableSet, table);
+		}
+		return tableSet;
+	}
+
+	static void addTable(Set<String> tableSet, String table) {
+		if (table != null) {
+			tableSet.add(table.toLowerCase(Locale.US));
+		}
+	}
+
+	/**
+	 * This method returns the result of this task once it has been run. This is the result that
+	 * is passed to the task's future.
+	 *
+	 * @return
+	 */
+	abstract Object getResult();
+
 	abstract void notifyStmtListeners(DatabaseException e);
 }
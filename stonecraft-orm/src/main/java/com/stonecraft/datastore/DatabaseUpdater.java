@@ -7,13 +7,14 @@ import android.net.Uri;
 import android.util.Log;
 
 import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interaction.AddColumnStatement;
 import com.stonecraft.datastore.interaction.Delete;
 import com.stonecraft.datastore.interaction.Insert;
 import com.stonecraft.datastore.interaction.Query;
 import com.stonecraft.datastore.interaction.RawStatement;
-import com.stonecraft.datastore.interaction.UpdateTableStatement;
 import com.stonecraft.datastore.interfaces.IDBConnector;
 import com.stonecraft.datastore.view.DatabaseColumn;
+import com.stonecraft.datastore.view.DatabaseIndex;
 import com.stonecraft.datastore.view.DatabaseTable;
 import com.stonecraft.datastore.view.DatabaseViewFactory;
 import com.stonecraft.datastore.view.SQLiteColumn;
@@ -39,15 +40,25 @@ public class DatabaseUpdater {
 	
 	private static final int COLUMN_LENGTH_TEXT = 64;
 	private static final int COLUMN_LENGTH_INTEGER = 9;
+	private static final String QUERY_EXISTING_INDEXES = "SELECT name, tbl_name, sql FROM "
+		+ AndroidDBConnection.TABLE_SQLITE_MASTER + " WHERE type = 'index' AND sql IS NOT NULL";
+	private static final String COL_NAME = "name";
+	private static final String COL_TABLE_NAME = "tbl_name";
 
 	private IDBConnector myDBConnector;
 	Map<String, DatabaseTable> myUpdatedTables;
 	Map<String, DatabaseTable> myNewTables;
+	Map<String, List<DatabaseColumn>> myAddedColumns;
+	Map<String, String> myDroppedIndexes;
+	List<DatabaseIndex> myNewIndexes;
 	
 	public DatabaseUpdater(IDBConnector connector){
 		myDBConnector = connector;
 		myUpdatedTables = new HashMap<String, DatabaseTable>();
 		myNewTables = new HashMap<String, DatabaseTable>();
+		myAddedColumns = new HashMap<String, List<DatabaseColumn>>();
+		myDroppedIndexes = new HashMap<String, String>();
+		myNewIndexes = new ArrayList<DatabaseIndex>();
 	}
 	
 	/**
@@ -126,7 +137,11 @@ public class DatabaseUpdater {
 		whereClause.append(DBConstants.COLUMN_TYPE).append(
 				" = '" + DBConstants.SCHEMA_SETTINGS_TYPE_DB_NAME);
 		whereClause.append("' OR " + DBConstants.COLUMN_TYPE).append(
-				" = '" + DBConstants.SCHEMA_SETTINGS_TYPE_DB_VERSION + "'");
+				" = '" + DBConstants.SCHEMA_SETTINGS_TYPE_DB_VERSION);
+		whereClause.append("' OR " + DBConstants.COLUMN_TYPE).append(
+				" = '" + DBConstants.SCHEMA_SETTINGS_TYPE_INDEX);
+		whereClause.append("' OR " + DBConstants.COLUMN_TYPE).append(
+				" = '" + DBConstants.SCHEMA_SETTINGS_TYPE_SCHEMA_HASH + "'");
 		txn.addStatement(new Delete(DBConstants.TABLE_SCHEMA_SETTINGS, whereClause.toString(), null));
 
 		SettingsTable settingsTable = new SettingsTable();
@@ -140,6 +155,23 @@ public class DatabaseUpdater {
 		settingsTable.setValue(schema.getVersion());
 		insert = new Insert<SettingsTable>(DBConstants.TABLE_SCHEMA_SETTINGS, settingsTable);
 		txn.addStatement(insert);
+
+		settingsTable = new SettingsTable();
+		settingsTable.setType(DBConstants.SCHEMA_SETTINGS_TYPE_SCHEMA_HASH);
+		settingsTable.setValue(schema.getSchemaHash());
+		insert = new Insert<SettingsTable>(DBConstants.TABLE_SCHEMA_SETTINGS, settingsTable);
+		txn.addStatement(insert);
+
+		//the names of the declared indexes are kept so only these indexes are ever dropped
+		for(DatabaseTable table : tables){
+			for(DatabaseIndex index : table.getIndexes().values()){
+				settingsTable = new SettingsTable();
+				settingsTable.setType(DBConstants.SCHEMA_SETTINGS_TYPE_INDEX);
+				settingsTable.setValue(index.getName());
+				insert = new Insert<SettingsTable>(DBConstants.TABLE_SCHEMA_SETTINGS, settingsTable);
+				txn.addStatement(insert);
+			}
+		}
 	}
 	
 	public DbSchemaModel update(DbSchemaModel newSchema) throws DatabaseException {
@@ -147,14 +179,35 @@ public class DatabaseUpdater {
 		if(tableCount == 0) {
 			DatabaseUpdater.createDataMapTables(myDBConnector, newSchema);
 		}
+		else if(newSchema.getSchemaHash().equals(getStoredSchemaHash(myDBConnector))) {
+			//the tables haven't changed since the datamap was written so only the version is
+			//updated
+			updateSchemaVersion(newSchema);
+			Log.i(DatabaseUpdater.class.getSimpleName(), "The schema hasn't changed");
+			return newSchema;
+		}
 		
 		DbSchemaModel currentSchema = getCurrentSchema(myDBConnector);
 		
 		compareSchemas(currentSchema, newSchema);
-
+		//the datamap already describes the tables being rebuilt by an earlier upgrade that
+		//hasn't finished, so their rebuild is started again with the new definition
+		for(String tableName : TableRebuildMigrator.getPendingRebuildTables(myDBConnector)){
+			DatabaseTable table = newSchema.getTable(tableName);
+			if(table != null){
+				myUpdatedTables.put(tableName, table);
+				myAddedColumns.remove(tableName);
+			}
+		}
+		compareIndexes(newSchema);
 
 		DatastoreTransaction txn = new DatastoreTransaction();
 		txn.setConnection(myDBConnector);
+		for(Map.Entry<String, String> index : myDroppedIndexes.entrySet()){
+			txn.addStatement(new RawStatement(index.getValue(),
+				DatabaseIndex.getDropIndexStmt(index.getKey())));
+			Log.i(DatabaseUpdater.class.getSimpleName(), "Dropped index " + index.getKey());
+		}
 		if(!myNewTables.isEmpty()){
 			for(DatabaseTable table : myNewTables.values()){
 				txn.addStatement(new RawStatement(table.getName(), table.getCreateTableStmt()));
@@ -162,15 +215,37 @@ public class DatabaseUpdater {
 			}
 		}
 		if(!myUpdatedTables.isEmpty()){
+			//the rows are copied in chunks when the database is opened, outside of the upgrade's
+			//transaction
 			for(DatabaseTable table : myUpdatedTables.values()){
-				UpdateTableStatement updateTableStatement = new UpdateTableStatement(table.getName(),
-						currentSchema.getTable(table.getName()), table);
-				txn.addStatement(updateTableStatement);
-				Log.i(DatabaseUpdater.class.getSimpleName(), "updated table " + table.getName());
+				TableRebuildMigrator.scheduleRebuild(txn, table);
+				Log.i(DatabaseUpdater.class.getSimpleName(), "Scheduled rebuild of table "
+					+ table.getName());
+			}
+		}
+		for(Map.Entry<String, List<DatabaseColumn>> addedColumns : myAddedColumns.entrySet()){
+			for(DatabaseColumn column : addedColumns.getValue()){
+				txn.addStatement(new AddColumnStatement(addedColumns.getKey(), column));
+				Log.i(DatabaseUpdater.class.getSimpleName(), "Added column " + column.getName()
+					+ " to table " + addedColumns.getKey());
 			}
 		}
+		//indexes on rebuilt tables are created when the rebuild finishes
+		for(DatabaseIndex index : myNewIndexes){
+			if(myUpdatedTables.containsKey(index.getTable())){
+				continue;
+			}
+			txn.addStatement(new RawStatement(index.getTable(), index.getCreateIndexStmt()));
+			Log.i(DatabaseUpdater.class.getSimpleName(), "Created index " + index.getName());
+		}
 		
 		populateDatamapTables(txn, newSchema);
+		if(!myUpdatedTables.isEmpty()){
+			//the hash is stored once the rebuilds have finished, so a matching hash means there
+			//is nothing left to do when the database is opened
+			txn.addStatement(new Delete(DBConstants.TABLE_SCHEMA_SETTINGS, DBConstants.COLUMN_TYPE
+				+ " = '" + DBConstants.SCHEMA_SETTINGS_TYPE_SCHEMA_HASH + "'", null));
+		}
 		try {
 			txn.run();
 		}
@@ -180,6 +255,47 @@ public class DatabaseUpdater {
 		return newSchema;
 	}
 	
+	/**
+	 * This method returns the hash of the schema that was stored when the datamap tables were
+	 * last populated.
+	 *
+	 * @param connector
+	 * @return the hash or null if no hash has been stored
+	 */
+	public static String getStoredSchemaHash(IDBConnector connector) throws DatabaseException {
+		Query query = new Query(DBConstants.TABLE_SCHEMA_SETTINGS)
+			.whereClause(DBConstants.COLUMN_TYPE + " = ?")
+			.addArgument(DBConstants.SCHEMA_SETTINGS_TYPE_SCHEMA_HASH);
+		RSData data = connector.query(query);
+		String hash = null;
+		data.moveToFirst();
+		if(!data.isAfterLast()){
+			hash = data.getStringValue(DBConstants.COLUMN_VALUE);
+		}
+		data.close();
+
+		return hash;
+	}
+
+	/**
+	 * This method replaces the schema version stored in the schema settings table.
+	 *
+	 * @param schema
+	 */
+	private void updateSchemaVersion(DbSchemaModel schema) throws DatabaseException {
+		DatastoreTransaction txn = new DatastoreTransaction();
+		txn.setConnection(myDBConnector);
+		txn.addStatement(new Delete(DBConstants.TABLE_SCHEMA_SETTINGS,
+			DBConstants.COLUMN_TYPE + " = '" + DBConstants.SCHEMA_SETTINGS_TYPE_DB_VERSION + "'",
+			null));
+		SettingsTable settingsTable = new SettingsTable();
+		settingsTable.setType(DBConstants.SCHEMA_SETTINGS_TYPE_DB_VERSION);
+		settingsTable.setValue(schema.getVersion());
+		txn.addStatement(new Insert<SettingsTable>(DBConstants.TABLE_SCHEMA_SETTINGS,
+			settingsTable));
+		txn.run();
+	}
+
 	/**
 	 * This method builds a DbSchemaModel based on the current db schema
 	 *
@@ -278,7 +394,93 @@ public class DatabaseUpdater {
 	}
 
 	/**
-	 * This method compares two tables to check if any columns have been altered
+	 * This method compares the indexes declared in the new schema with the indexes in the
+	 * database. Indexes that are no longer declared are dropped, new indexes are created and
+	 * indexes whose definition has changed are dropped and created again. Indexes that were not
+	 * declared in the schema, such as those created programmatically, are left alone.
+	 *
+	 * @param newSchema
+	 */
+	private void compareIndexes(DbSchemaModel newSchema) throws DatabaseException {
+		Map<String, ExistingIndex> existingIndexes = getExistingIndexes(myDBConnector);
+		Map<String, DatabaseIndex> newSchemaIndexes = new HashMap<String, DatabaseIndex>();
+		for(DatabaseTable table : newSchema.getTables().values()){
+			newSchemaIndexes.putAll(table.getIndexes());
+		}
+
+		for(String indexName : getDeclaredIndexNames(myDBConnector)){
+			if(!newSchemaIndexes.containsKey(indexName) &&
+				existingIndexes.containsKey(indexName)){
+				myDroppedIndexes.put(indexName, existingIndexes.get(indexName).myTable);
+			}
+		}
+
+		for(DatabaseIndex index : newSchemaIndexes.values()){
+			ExistingIndex existingIndex = existingIndexes.get(index.getName());
+			if(existingIndex == null){
+				myNewIndexes.add(index);
+			}
+			else if(!existingIndex.myDefinition.equals(index.getDefinition())){
+				myDroppedIndexes.put(index.getName(), existingIndex.myTable);
+				myNewIndexes.add(index);
+			}
+		}
+	}
+
+	/**
+	 * This method returns the table and definition of each index in the database keyed by the
+	 * index name.
+	 * Indexes SQLite creates for unique and primary key constraints have no definition and are
+	 * not returned.
+	 *
+	 * @param connector
+	 * @return
+	 */
+	private static Map<String, ExistingIndex> getExistingIndexes(IDBConnector connector)
+		throws DatabaseException {
+		Map<String, ExistingIndex> indexes = new HashMap<String, ExistingIndex>();
+		RSData data = connector.executeRawQuery(QUERY_EXISTING_INDEXES);
+		data.moveToFirst();
+		while(!data.isAfterLast()){
+			ExistingIndex index = new ExistingIndex();
+			index.myTable = data.getStringValue(COL_TABLE_NAME);
+			index.myDefinition = data.getStringValue(AndroidDBConnection.COL_SQL);
+			indexes.put(data.getStringValue(COL_NAME), index);
+			data.next();
+		}
+		data.close();
+
+		return indexes;
+	}
+
+	/**
+	 * This method returns the names of the indexes that were declared in the schema when the
+	 * database was last updated.
+	 *
+	 * @param connector
+	 * @return
+	 */
+	private static List<String> getDeclaredIndexNames(IDBConnector connector)
+		throws DatabaseException {
+		List<String> names = new ArrayList<String>();
+		Query query = new Query(DBConstants.TABLE_SCHEMA_SETTINGS)
+			.whereClause(DBConstants.COLUMN_TYPE + " = ?")
+			.addArgument(DBConstants.SCHEMA_SETTINGS_TYPE_INDEX);
+		RSData data = connector.query(query);
+		data.moveToFirst();
+		while(!data.isAfterLast()){
+			names.add(data.getStringValue(DBConstants.COLUMN_VALUE));
+			data.next();
+		}
+		data.close();
+
+		return names;
+	}
+
+	/**
+	 * This method compares two tables to check if any columns have been altered. If the only
+	 * changes are new columns that can be added to the existing table the columns are added,
+	 * otherwise the table is rebuilt.
 	 *
 	 * @param table
 	 * @param newSchemaTable
@@ -313,11 +515,25 @@ public class DatabaseUpdater {
 		}
 		
 		//check for any new columns		
+		List<DatabaseColumn> addedColumns = new ArrayList<DatabaseColumn>();
 		for(DatabaseColumn newSchemaColumn : newSchemaColumns.values()){			
 			if(!table.getColumns().containsKey(newSchemaColumn.getName())){
-				myUpdatedTables.put(newSchemaTable.getName(), newSchemaTable);
-				return;
+				if(!myDBConnector.canAddColumn(newSchemaColumn)){
+					myUpdatedTables.put(newSchemaTable.getName(), newSchemaTable);
+					return;
+				}
+				addedColumns.add(newSchemaColumn);
 			}
 		}
+
+		//the rebuilt table will already contain the new columns
+		if(!addedColumns.isEmpty() && !myUpdatedTables.containsKey(newSchemaTable.getName())){
+			myAddedColumns.put(newSchemaTable.getName(), addedColumns);
+		}
+	}
+
+	private static class ExistingIndex {
+		String myTable;
+		String myDefinition;
 	}
 }
@@ -3,20 +3,22 @@ package com.stonecraft.datastore;
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.util.Log;
 
 import com.stonecraft.datastore.exceptions.DatabaseCreationFailedException;
 import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.exceptions.SchemaParseException;
 import com.stonecraft.datastore.interaction.IRawStatement;
 import com.stonecraft.datastore.interaction.Insert;
 import com.stonecraft.datastore.interaction.Query;
 import com.stonecraft.datastore.interaction.Statement;
-import com.stonecraft.datastore.interaction.Update;
+import com.stonecraft.datastore.interaction.Upsert;
 import com.stonecraft.datastore.interfaces.IDBConnector;
 import com.stonecraft.datastore.interfaces.ISchemaCreator;
 import com.stonecraft.datastore.interfaces.OnNonQueryComplete;
-import com.stonecraft.datastore.interfaces.OnTaskCompleteListener;
-import com.stonecraft.datastore.interfaces.Tasker;
+import com.stonecraft.datastore.interfaces.TaskScheduler;
 import com.stonecraft.datastore.logs.ConnectionLog;
 import com.stonecraft.datastore.logs.ConnectionStatus;
 import com.stonecraft.datastore.parser.DatabaseParser;
@@ -26,10 +28,16 @@ import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -39,7 +47,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * the database. It can support multiple db connections across mutiple database
  * types and connection types. This class is a multi-threaded class allowing db
  * interaction to be done without interfering with the main thread. Tasks that
- * need to be run in succession can be queued.
+ * need to be run in succession can be queued. Each connection has it's own
+ * queue so tasks queued on one database don't wait for tasks on another.
  * <p>
  * It has the ability to block the main thread as well if required returning the
  * data back to a listener or directly to the calling function.
@@ -50,24 +59,44 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @created March 16, 2012
  * @date Date: 16/03/2012 01:50:39
  */
-public class Datastore implements OnTaskCompleteListener {
+public class Datastore {
     public static final int DEFAULT_TOKEN = -1;
     public static final String DB_EXTENSION = ".sqlite";
     public static final int FAIL_TYPE_QUERY_FAILED = -1;
+    /**
+     * The priority for tasks the user is not waiting on such as syncing or prefetching data.
+     */
+    public static final int PRIORITY_BACKGROUND = 0;
+    /**
+     * The priority used for tasks when no priority is given.
+     */
+    public static final int PRIORITY_NORMAL = 1;
+    /**
+     * The priority for tasks whose result is needed for what is currently on screen.
+     */
+    public static final int PRIORITY_USER_VISIBLE = 2;
 
     private volatile static Map<String, IDBConnector> myDBConnections;
-    private volatile static List<DatabaseTask> myQueuedTasks;
+    private volatile static Map<String, TaskScheduler> myTaskSchedulers;
+    private volatile static Map<String, TaskQueue> myTaskQueues;
     private volatile static Map<String, Map<Class, QueryDeserializer>> myDeserializers =
             new HashMap<String, Map<Class, QueryDeserializer>>();
     private volatile static List<ConnectionLog> myLogs = new ArrayList();
     private IDBConnector myActiveDatabase;
+    private TaskScheduler myTaskScheduler;
+    private TaskQueue myTaskQueue;
     private boolean myTasksQueued = true;
     private boolean myBlockingCall = false;
     private boolean myIsAttemptReconnect = true;
-    //This latch ensures that an instance of the datastore can't be returned while the parsing
-    //of a db schema is in progress.
-    private static volatile CountDownLatch myParsingLatch;
-    private final static AtomicInteger myParsingCount = new AtomicInteger(0);
+    //The connections whose schema is being parsed keyed by connection name. These ensure an
+    //instance of the datastore can't be returned for a connection while it is being created.
+    private final static ConcurrentMap<String, DatastoreFuture<IDBConnector>>
+            myPendingConnections = new ConcurrentHashMap<String, DatastoreFuture<IDBConnector>>();
+    //The connections being created from a schema xml that wasn't given a connection name. Their
+    //name isn't known until the xml has been parsed.
+    private final static Set<DatastoreFuture<IDBConnector>> myUnnamedConnections =
+            Collections.newSetFromMap(
+                    new ConcurrentHashMap<DatastoreFuture<IDBConnector>, Boolean>());
 
     /**
      * This constructor is only used internally by createDatabase to ensure
@@ -78,41 +107,145 @@ public class Datastore implements OnTaskCompleteListener {
         if (myDBConnections == null) {
             myDBConnections = new HashMap<String, IDBConnector>();
         }
-        if (myQueuedTasks == null) {
-            myQueuedTasks = new ArrayList<DatabaseTask>();
+        if (myTaskSchedulers == null) {
+            myTaskSchedulers = new HashMap<String, TaskScheduler>();
+        }
+        if (myTaskQueues == null) {
+            myTaskQueues = new HashMap<String, TaskQueue>();
         }
     }
 
-    private Datastore(IDBConnector connection) {
+    private Datastore(IDBConnector connection, TaskScheduler scheduler, TaskQueue queue) {
         this();
         myActiveDatabase = connection;
+        myTaskScheduler = scheduler;
+        myTaskQueue = queue;
     }
 
     /**
      * This method returns an instance of Datastore to be used for any database
      * interaction.
+     * <p>
+     * If the connection is still being created this method blocks until it is ready. It only
+     * waits for the passed in connection, unless the connection doesn't exist yet and a schema
+     * xml that wasn't given a connection name is being parsed, in which case it waits until
+     * that xml has been parsed as it may be the xml of this connection.
      *
      * @param connection
      * @return
      */
     public static Datastore getDataStore(String connection) {
         try {
-            myParsingLatch.await();
-
-            if (myDBConnections != null && myDBConnections.containsKey(connection)) {
-                return new Datastore(myDBConnections.get(connection));
+            DatastoreFuture<IDBConnector> pending = myPendingConnections.get(connection);
+            if (pending != null) {
+                awaitConnection(pending);
+            } else {
+                for (DatastoreFuture<IDBConnector> unnamed :
+                        new ArrayList<DatastoreFuture<IDBConnector>>(myUnnamedConnections)) {
+                    if (hasConnection(connection)) {
+                        break;
+                    }
+                    awaitConnection(unnamed);
+                }
             }
 
+            return getConnectedDatastore(connection);
         } catch (InterruptedException e) {
             throw new DatabaseCreationFailedException("The current thread has been interrupted. " +
                     "A datastore object will not be returned", e);
         }
+    }
+
+    /**
+     * This method returns a future that completes with an instance of Datastore once the
+     * connection is ready, so tasks can be chained on to a connection that is still being
+     * created without blocking the calling thread. The future completes on the thread that
+     * created the connection, or straight away if the connection is already ready. It fails if
+     * no connection with the passed in name is created.
+     *
+     * @param connection
+     * @return
+     */
+    public static DatastoreFuture<Datastore> getDataStoreAsync(final String connection) {
+        final DatastoreFuture<Datastore> future = new DatastoreFuture<Datastore>();
+        List<DatastoreFuture<IDBConnector>> waitFor =
+                new ArrayList<DatastoreFuture<IDBConnector>>();
+        DatastoreFuture<IDBConnector> pending = myPendingConnections.get(connection);
+        if (pending != null) {
+            waitFor.add(pending);
+        } else if (!hasConnection(connection)) {
+            waitFor.addAll(myUnnamedConnections);
+        }
+
+        if (waitFor.isEmpty()) {
+            completeDataStoreFuture(future, connection, true);
+            return future;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(waitFor.size());
+        for (DatastoreFuture<IDBConnector> creation : waitFor) {
+            creation.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    completeDataStoreFuture(future, connection,
+                            remaining.decrementAndGet() == 0);
+                }
+            });
+        }
 
-        return null;
+        return future;
+    }
+
+    /**
+     * This method completes the passed in future with a datastore for the connection if the
+     * connection exists. If it doesn't and there is nothing left to wait for the future fails.
+     */
+    private static void completeDataStoreFuture(DatastoreFuture<Datastore> future,
+                                                String connection, boolean isLastCreation) {
+        Datastore datastore = getConnectedDatastore(connection);
+        if (datastore != null) {
+            future.complete(datastore);
+        } else if (isLastCreation) {
+            future.fail(new DatabaseException("There is no connection named " + connection));
+        }
+    }
+
+    private static void awaitConnection(DatastoreFuture<IDBConnector> creation)
+            throws InterruptedException {
+        try {
+            creation.get();
+        } catch (ExecutionException e) {
+            // the connection doesn't exist which is handled by the caller
+        }
+    }
+
+    /**
+     * This method returns a datastore for the connection or null if there is no connection with
+     * the passed in name. The connection, scheduler and queue are read while holding the lock
+     * they are written under, so a connection that is being replaced by another thread is never
+     * returned with the scheduler or queue of the other connection.
+     *
+     * @param connection
+     * @return
+     */
+    private static Datastore getConnectedDatastore(String connection) {
+        synchronized (Datastore.class) {
+            if (!hasConnection(connection)) {
+                return null;
+            }
+            return new Datastore(myDBConnections.get(connection),
+                    myTaskSchedulers.get(connection), myTaskQueues.get(connection));
+        }
+    }
+
+    private static boolean hasConnection(String connection) {
+        synchronized (Datastore.class) {
+            return myDBConnections != null && myDBConnections.containsKey(connection);
+        }
     }
 
     public static boolean hasDatastore(String connection) {
-        return myDBConnections.containsKey(connection);
+        return hasConnection(connection);
     }
 
     /**
@@ -153,7 +286,11 @@ public class Datastore implements OnTaskCompleteListener {
     /**
      * This method set whether the db tasks should be queued or run straight
      * away. If more then one task is being done from within the same method it
-     * should be queued so that the tasks don't run out of order
+     * should be queued so that the tasks don't run out of order.
+     * <p>
+     * Queued tasks only wait for earlier tasks that use the same tables where at
+     * least one of the tasks modifies the database. Reads of tables that have no
+     * pending writes are started straight away.
      *
      * @param queuedTasks the queuedTasks to set
      */
@@ -162,6 +299,29 @@ public class Datastore implements OnTaskCompleteListener {
         return this;
     }
 
+    /**
+     * This method turns on group commit for the queued non query tasks of this datastore's
+     * connection. Non query tasks that are waiting in the queue are run inside a single SQLite
+     * transaction instead of one transaction each, which greatly reduces the time taken by many
+     * small writes. Each task is run in it's own savepoint so a failed task doesn't undo the
+     * other tasks in the group, and each listener is still given the result of it's own task.
+     * <p>
+     * Group commit is off by default. It only applies to tasks that are queued
+     * (see {@link #setTasksQueued(boolean)}) and transactions executed with
+     * DatastoreTransaction.execute().
+     *
+     * @param maxTasks the most tasks that are run in one transaction. 1 or less turns group
+     *                 commit off.
+     * @param windowMillis how long a transaction keeps taking tasks that are queued after it
+     *                     has started. While a group is waiting for tasks the database is held
+     *                     by the group so this should be kept short. With 0 only the tasks that
+     *                     are already waiting in the queue are grouped.
+     */
+    public Datastore setGroupCommit(int maxTasks, long windowMillis) {
+        myTaskQueue.setGroupCommit(maxTasks, windowMillis);
+        return this;
+    }
+
     /**
      * @return the isAttemptReconnect
      */
@@ -198,31 +358,209 @@ public class Datastore implements OnTaskCompleteListener {
      * @param listener
      * @throws DatabaseException
      */
+    public static void createConnection(Context context, InputStream databaseXml,
+                                        OnConnectionListener listener)
+            throws DatabaseException {
+        createConnection(context, databaseXml, listener, null);
+    }
+
+    /**
+     * This method creates a database connection in the same way as
+     * {@link #createConnection(Context, InputStream, OnConnectionListener)} using the passed in
+     * TaskScheduler to run all non blocking tasks on this connection.
+     * <p>
+     * If the scheduler is null an {@link ExecutorTaskScheduler} will be created for the
+     * connection with a single writer thread and
+     * {@link ExecutorTaskScheduler#DEFAULT_READER_THREADS} reader threads.
+     *
+     * @param context
+     * @param databaseXml
+     * @param listener
+     * @param scheduler
+     * @throws DatabaseException
+     */
+    public static void createConnection(Context context, InputStream databaseXml,
+                                        OnConnectionListener listener, TaskScheduler scheduler)
+            throws DatabaseException {
+        createConnection(context, databaseXml, listener, scheduler, null);
+    }
+
+    /**
+     * This method creates a database connection in the same way as
+     * {@link #createConnection(Context, InputStream, OnConnectionListener, TaskScheduler)}
+     * opening the database with the passed in ConnectionConfig. Each setting that is set in the
+     * config overrides the setting in the Connection element of the database xml.
+     *
+     * @param context
+     * @param databaseXml
+     * @param listener
+     * @param scheduler
+     * @param config
+     * @throws DatabaseException
+     */
     public synchronized static void createConnection(final Context context, final InputStream databaseXml,
-                                                     final OnConnectionListener listener)
+                                                     final OnConnectionListener listener,
+                                                     final TaskScheduler scheduler,
+                                                     final ConnectionConfig config)
             throws DatabaseException {
-        myParsingCount.incrementAndGet();
-        if (myParsingLatch == null || myParsingLatch.getCount() == 0) {
-            myParsingLatch = new CountDownLatch(1);
-        }
+        final DatastoreFuture<IDBConnector> creation = new DatastoreFuture<IDBConnector>();
+        myUnnamedConnections.add(creation);
 
         DatabaseParser parser = new DatabaseParser(new DatabaseParser.OnSchemaModelCreated() {
             @Override
             public void OnSchemaModelCreated(DbSchemaModel schema) {
-                OnConnectionListener connectionListener = getConnectionInterceptor(schema.getName(),
-                        listener);
-                IDBConnector connector = new AndroidDBConnection(context, schema, connectionListener);
-                setConnection(connector, listener);
-
-                if (myParsingCount.decrementAndGet() == 0) {
-                    myParsingLatch.countDown();
+                try {
+                    creation.complete(openConnection(context, schema, listener, scheduler,
+                            config));
+                } finally {
+                    myUnnamedConnections.remove(creation);
+                    //this does nothing if the connection was created
+                    creation.fail(new DatabaseException("Failed to create the connection "
+                            + schema.getName()));
                 }
             }
-        });
+
+            @Override
+            public void OnSchemaParseFailed(SchemaParseException e) {
+                myUnnamedConnections.remove(creation);
+                creation.fail(new DatabaseException("Failed to parse the database xml", e));
+            }
+        }, context.getFilesDir());
         parser.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, databaseXml);
         Log.d("createConnection", "Creating connection");
     }
 
+    /**
+     * This method creates a database connection in the same way as
+     * {@link #createConnection(Context, InputStream, OnConnectionListener, TaskScheduler,
+     * ConnectionConfig)} declaring the name of the connection up front. This is the name in the
+     * Name element of the xml. As the name is known before the xml is parsed, getDataStore only
+     * waits for this connection when it is asked for it, and doesn't wait for it when it is
+     * asked for any other connection.
+     *
+     * @param context
+     * @param connectionName
+     * @param databaseXml
+     * @param listener
+     * @param scheduler
+     * @param config
+     * @throws DatabaseException
+     */
+    public synchronized static void createConnection(final Context context,
+                                                     final String connectionName,
+                                                     final InputStream databaseXml,
+                                                     final OnConnectionListener listener,
+                                                     final TaskScheduler scheduler,
+                                                     final ConnectionConfig config)
+            throws DatabaseException {
+        final DatastoreFuture<IDBConnector> creation = new DatastoreFuture<IDBConnector>();
+        myPendingConnections.put(connectionName, creation);
+
+        DatabaseParser parser = new DatabaseParser(new DatabaseParser.OnSchemaModelCreated() {
+            @Override
+            public void OnSchemaModelCreated(DbSchemaModel schema) {
+                try {
+                    if (!connectionName.equals(schema.getName())) {
+                        Log.e(Datastore.class.getSimpleName(), "The connection " + connectionName
+                                + " was created from an xml with the name " + schema.getName());
+                    }
+                    creation.complete(openConnection(context, schema, listener, scheduler,
+                            config));
+                } finally {
+                    myPendingConnections.remove(connectionName, creation);
+                    //this does nothing if the connection was created
+                    creation.fail(new DatabaseException("Failed to create the connection "
+                            + connectionName));
+                }
+            }
+
+            @Override
+            public void OnSchemaParseFailed(SchemaParseException e) {
+                myPendingConnections.remove(connectionName, creation);
+                creation.fail(new DatabaseException("Failed to parse the database xml of "
+                        + "the connection " + connectionName, e));
+            }
+        }, context.getFilesDir());
+        parser.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, databaseXml);
+        Log.d("createConnection", "Creating connection " + connectionName);
+    }
+
+    /**
+     * This method creates a database connection from a schema that was built at compile time.
+     * Unlike the methods that take a database xml nothing is parsed, so the connection has
+     * been added by the time this method returns and getDataStore doesn't have to wait for it.
+     * The database itself isn't opened until it is first used.
+     *
+     * @param context
+     * @param schemaFactory the factory generated for a class annotated with {@link DbSchema}
+     * @param listener
+     * @throws DatabaseException
+     */
+    public static void createConnection(Context context, SchemaFactory schemaFactory,
+                                        OnConnectionListener listener)
+            throws DatabaseException {
+        createConnection(context, schemaFactory, listener, null, null);
+    }
+
+    /**
+     * This method creates a database connection in the same way as
+     * {@link #createConnection(Context, SchemaFactory, OnConnectionListener)} using the passed in
+     * TaskScheduler and ConnectionConfig. Each setting that is set in the config overrides the
+     * setting in the Connection element of the schema.
+     *
+     * @param context
+     * @param schemaFactory
+     * @param listener
+     * @param scheduler
+     * @param config
+     * @throws DatabaseException
+     */
+    public synchronized static void createConnection(Context context,
+                                                     SchemaFactory schemaFactory,
+                                                     OnConnectionListener listener,
+                                                     TaskScheduler scheduler,
+                                                     ConnectionConfig config)
+            throws DatabaseException {
+        openConnection(context, schemaFactory.createSchema(), listener, scheduler, config);
+    }
+
+    private static IDBConnector openConnection(Context context, DbSchemaModel schema,
+                                               OnConnectionListener listener,
+                                               TaskScheduler scheduler, ConnectionConfig config) {
+        if (config != null) {
+            schema.getConnectionConfig().override(config);
+        }
+        OnConnectionListener connectionListener = getConnectionInterceptor(schema.getName(),
+                listener);
+        IDBConnector connector = new AndroidDBConnection(context, schema, connectionListener);
+        TaskScheduler connectionScheduler = scheduler;
+        if (connectionScheduler == null) {
+            connectionScheduler = new ExecutorTaskScheduler(schema.getName());
+        }
+        setConnection(connector, connectionScheduler, listener);
+        warmClassMappings(connectionScheduler, new ArrayList<Class>(
+                schema.getConnectionConfig().getEntityClasses()));
+
+        return connector;
+    }
+
+    /**
+     * This method maps the entity classes registered in the connection's config on one of the
+     * connection's read threads so that the reflection isn't done by the first query.
+     */
+    private static void warmClassMappings(TaskScheduler scheduler,
+                                          final Collection<Class> entityClasses) {
+        if (entityClasses.isEmpty()) {
+            return;
+        }
+        scheduler.executeRead(new Runnable() {
+            @Override
+            public void run() {
+                ClassMappingRegistry.warm(entityClasses);
+            }
+        });
+    }
+
     private static OnConnectionListener getConnectionInterceptor(final String dbName,
                                                                  final OnConnectionListener listener) {
         OnConnectionListener newListener = new OnConnectionListener() {
@@ -268,12 +606,20 @@ public class Datastore implements OnTaskCompleteListener {
                     listener.closingAndCreatingNewConnection(dbName);
                 }
             }
+
+            @Override
+            public void onMigrationProgress(String tableName, long copiedRows, long totalRows) {
+                if (listener != null) {
+                    listener.onMigrationProgress(tableName, copiedRows, totalRows);
+                }
+            }
         };
 
         return newListener;
     }
 
-    private static void setConnection(IDBConnector connection, OnConnectionListener listener) {
+    private static void setConnection(IDBConnector connection, TaskScheduler scheduler,
+                                      OnConnectionListener listener) {
 
         // ensure static fields are initialised;
         new Datastore();
@@ -301,7 +647,7 @@ public class Datastore implements OnTaskCompleteListener {
                 // be created twice across threads
                 synchronized (Datastore.class) {
                     if (!myDBConnections.containsKey(connection.getName())) {
-                        addConnection(connection);
+                        addConnection(connection, scheduler);
                     }
                 }
             }
@@ -329,12 +675,17 @@ public class Datastore implements OnTaskCompleteListener {
      * clean up and open connections
      */
     public static void closeAll() throws DatabaseException {
-        if (myDBConnections != null) {
-            for (Map.Entry<String, IDBConnector> entry : myDBConnections.entrySet()) {
-                IDBConnector conn = entry.getValue();
-                if (conn.isOpen()) {
-                    conn.close();
-                }
+        List<IDBConnector> connections;
+        synchronized (Datastore.class) {
+            if (myDBConnections == null) {
+                return;
+            }
+            connections = new ArrayList<IDBConnector>(myDBConnections.values());
+        }
+
+        for (IDBConnector conn : connections) {
+            if (conn.isOpen()) {
+                conn.close();
             }
         }
     }
@@ -353,7 +704,9 @@ public class Datastore implements OnTaskCompleteListener {
         if (myActiveDatabase != null && myActiveDatabase.isOpen()) {
             close();
 
-            removeConnection(myActiveDatabase.getName());
+            synchronized (Datastore.class) {
+                removeConnection(myActiveDatabase.getName());
+            }
         }
     }
 
@@ -406,6 +759,50 @@ public class Datastore implements OnTaskCompleteListener {
      * @param listener
      */
     public void executeQuery(int token, Query stmt, OnQueryComplete listener) {
+        executeQueryCancellable(token, stmt, listener, PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes a query in the same way as
+     * {@link #executeQuery(int, Query, OnQueryComplete)}. If the query is queued it will be
+     * started ahead of any queued tasks with a lower priority.
+     *
+     * @param token
+     * @param stmt
+     * @param listener
+     * @param priority one of PRIORITY_BACKGROUND, PRIORITY_NORMAL or PRIORITY_USER_VISIBLE
+     */
+    public void executeQuery(int token, Query stmt, OnQueryComplete listener, int priority) {
+        executeQueryCancellable(token, stmt, listener, priority);
+    }
+
+    /**
+     * This method executes a query in the same way as
+     * {@link #executeQuery(int, Query, OnQueryComplete)} and returns a handle that can be used
+     * to cancel the query.
+     *
+     * @param token
+     * @param stmt
+     * @param listener
+     * @return a handle that can be used to cancel the query
+     */
+    public TaskHandle executeQueryCancellable(int token, Query stmt, OnQueryComplete listener) {
+        return executeQueryCancellable(token, stmt, listener, PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes a query in the same way as
+     * {@link #executeQuery(int, Query, OnQueryComplete, int)} and returns a handle that can be
+     * used to cancel the query.
+     *
+     * @param token
+     * @param stmt
+     * @param listener
+     * @param priority one of PRIORITY_BACKGROUND, PRIORITY_NORMAL or PRIORITY_USER_VISIBLE
+     * @return a handle that can be used to cancel the query
+     */
+    public TaskHandle executeQueryCancellable(int token, Query stmt, OnQueryComplete listener,
+                                              int priority) {
 
         Method[] methods = listener.getClass().getMethods();
         Class injectorClass = Object.class;
@@ -422,6 +819,10 @@ public class Datastore implements OnTaskCompleteListener {
                 }
             }
         }
+        int taskId = new AtomicInteger().incrementAndGet();
+        DatabaseQueryTask task = new DatabaseQueryTask(taskId, token,
+                this, stmt);
+        TaskHandle handle = new TaskHandle(task);
         try {
             if (!validateDBConnection()) {
                 throw new DatabaseException(
@@ -430,23 +831,18 @@ public class Datastore implements OnTaskCompleteListener {
             }
         } catch (DatabaseException e) {
             listener.onQueryFailed(token, e);
+            return handle;
         }
 
-
-        int taskId = new AtomicInteger().incrementAndGet();
-        DatabaseQueryTask task = new DatabaseQueryTask(taskId, token,
-                this, stmt);
         task.setOnQueryCompleteListener(listener);
         task.setInjectorClass(injectorClass);
+        task.setPriority(priority);
 
         QueryDeserializer queryDeserializer = getQueryDeserializer(stmt, injectorClass);
         task.setQueryDeserializer(queryDeserializer);
 
-        try {
-            executeStmt(task);
-        } catch (DatabaseException e) {
-            listener.onQueryFailed(token, e);
-        }
+        executeStmt(task);
+        return handle;
     }
 
     /**
@@ -459,6 +855,22 @@ public class Datastore implements OnTaskCompleteListener {
      * @throws DatabaseException
      */
     public <T> T[] executeQuery(Query stmt, Class<T> classToInject) throws DatabaseException {
+        return executeQuery(stmt, classToInject, null);
+    }
+
+    /**
+     * This method executes a query on the calling thread in the same way as
+     * {@link #executeQuery(Query, Class)}. If the passed in signal is cancelled while the query
+     * is running an android.os.OperationCanceledException is thrown.
+     *
+     * @param stmt
+     * @param classToInject
+     * @param cancellationSignal the signal used to cancel the query. This can be null
+     * @return
+     * @throws DatabaseException
+     */
+    public <T> T[] executeQuery(Query stmt, Class<T> classToInject,
+                                CancellationSignal cancellationSignal) throws DatabaseException {
         if (!validateDBConnection()) {
             throw new DatabaseException(
                     "Attempt to reopen an already closed database object. "
@@ -472,6 +884,9 @@ public class Datastore implements OnTaskCompleteListener {
 
         QueryDeserializer queryDeserializer = getQueryDeserializer(stmt, classToInject);
         task.setQueryDeserializer(queryDeserializer);
+        if (cancellationSignal != null) {
+            task.setCancellationSignal(cancellationSignal);
+        }
 
         return task.startTask(classToInject);
     }
@@ -486,7 +901,27 @@ public class Datastore implements OnTaskCompleteListener {
      * @param stmt
      * @param listener
      */
-    public void executeAggregateQuery(int token, AggregateQuery stmt, OnAggregateQueryComplete listener) {
+    public void executeAggregateQuery(int token, AggregateQuery stmt,
+                                      OnAggregateQueryComplete listener) {
+        executeAggregateQueryCancellable(token, stmt, listener);
+    }
+
+    /**
+     * This method executes an aggregate query in the same way as
+     * {@link #executeAggregateQuery(int, AggregateQuery, OnAggregateQueryComplete)} and returns
+     * a handle that can be used to cancel the query.
+     *
+     * @param token
+     * @param stmt
+     * @param listener
+     * @return a handle that can be used to cancel the query
+     */
+    public TaskHandle executeAggregateQueryCancellable(int token, AggregateQuery stmt,
+                                                       OnAggregateQueryComplete listener) {
+        int taskId = new AtomicInteger().incrementAndGet();
+        AggregateQueryTask task = new AggregateQueryTask(taskId, token,
+                this, stmt);
+        TaskHandle handle = new TaskHandle(task);
         try {
             if (!validateDBConnection()) {
                 throw new DatabaseException(
@@ -495,17 +930,12 @@ public class Datastore implements OnTaskCompleteListener {
             }
         } catch (DatabaseException e) {
             listener.onQueryFailed(token, e);
+            return handle;
         }
-        int taskId = new AtomicInteger().incrementAndGet();
-        AggregateQueryTask task = new AggregateQueryTask(taskId, DEFAULT_TOKEN,
-                this, stmt);
         task.setOnQueryCompleteListener(listener);
 
-        try {
-            executeStmt(task);
-        } catch (DatabaseException e) {
-            listener.onQueryFailed(token, e);
-        }
+        executeStmt(task);
+        return handle;
     }
 
     /**
@@ -527,7 +957,7 @@ public class Datastore implements OnTaskCompleteListener {
         int taskId = new AtomicInteger().incrementAndGet();
         AggregateQueryTask task = new AggregateQueryTask(taskId, DEFAULT_TOKEN,
                 this, stmt);
-        return task.run();
+        return task.runQuery();
     }
 
     /**
@@ -542,6 +972,21 @@ public class Datastore implements OnTaskCompleteListener {
      */
     public void executeNonQuery(int token, Statement stmt,
                                 final OnNonQueryComplete listener) {
+        executeNonQuery(token, stmt, listener, PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes a non query in the same way as
+     * {@link #executeNonQuery(int, Statement, OnNonQueryComplete)}. If the statement is queued
+     * it will be started ahead of any queued tasks with a lower priority.
+     *
+     * @param token
+     * @param stmt
+     * @param listener
+     * @param priority one of PRIORITY_BACKGROUND, PRIORITY_NORMAL or PRIORITY_USER_VISIBLE
+     */
+    public void executeNonQuery(int token, Statement stmt,
+                                final OnNonQueryComplete listener, int priority) {
 
         int taskId = new AtomicInteger().incrementAndGet();
         DatastoreTransaction dt = new DatastoreTransaction();
@@ -550,12 +995,9 @@ public class Datastore implements OnTaskCompleteListener {
         DatabaseNonQueryTask task = new DatabaseNonQueryTask(taskId, token,
                 this, dt);
         task.addOnStmtCompleteListener(listener);
+        task.setPriority(priority);
 
-        try {
-            executeStmt(task);
-        } catch (DatabaseException e) {
-            listener.onNonQueryComplete(token, DBConstants.NO_RECORDS_UPDATED);
-        }
+        executeStmt(task);
     }
 
     /**
@@ -580,11 +1022,206 @@ public class Datastore implements OnTaskCompleteListener {
         return task.getTaskResult();
     }
 
+    /**
+     * This method executes a query on the database and returns a future that is completed with
+     * the parsed result. The future is completed on the database thread so further steps can be
+     * chained on to it without going back to the main thread. See {@link DatastoreFuture}.
+     * <p>
+     * Cancelling the future cancels the query.
+     *
+     * @param stmt
+     * @param classToInject
+     * @return
+     */
+    public <T> DatastoreFuture<T[]> executeQueryAsync(Query stmt, Class<T> classToInject) {
+        return executeQueryAsync(stmt, classToInject, PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes a query in the same way as {@link #executeQueryAsync(Query, Class)}.
+     * If the query is queued it will be started ahead of any queued tasks with a lower priority.
+     *
+     * @param stmt
+     * @param classToInject
+     * @param priority one of PRIORITY_BACKGROUND, PRIORITY_NORMAL or PRIORITY_USER_VISIBLE
+     * @return
+     */
+    public <T> DatastoreFuture<T[]> executeQueryAsync(Query stmt, Class<T> classToInject,
+                                                      int priority) {
+        int taskId = new AtomicInteger().incrementAndGet();
+        DatabaseQueryTask task = new DatabaseQueryTask(taskId, DEFAULT_TOKEN,
+                this, stmt);
+        task.setInjectorClass(classToInject);
+        task.setQueryDeserializer(getQueryDeserializer(stmt, classToInject));
+        task.setPriority(priority);
+
+        return executeAsync(task, new DatastoreFuture<T[]>());
+    }
+
+    /**
+     * This method executes an aggregate query on the database and returns a future that is
+     * completed with the result on the database thread. See {@link DatastoreFuture}.
+     *
+     * @param stmt
+     * @return
+     */
+    public DatastoreFuture<Object> executeAggregateQueryAsync(AggregateQuery stmt) {
+        return executeAggregateQueryAsync(stmt, PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes an aggregate query in the same way as
+     * {@link #executeAggregateQueryAsync(AggregateQuery)} with the passed in priority.
+     *
+     * @param stmt
+     * @param priority one of PRIORITY_BACKGROUND, PRIORITY_NORMAL or PRIORITY_USER_VISIBLE
+     * @return
+     */
+    public DatastoreFuture<Object> executeAggregateQueryAsync(AggregateQuery stmt,
+                                                              int priority) {
+        int taskId = new AtomicInteger().incrementAndGet();
+        AggregateQueryTask task = new AggregateQueryTask(taskId, DEFAULT_TOKEN,
+                this, stmt);
+        task.setPriority(priority);
+
+        return executeAsync(task, new DatastoreFuture<Object>());
+    }
+
+    /**
+     * This method executes a non query (eg delete, update, insert) on the database and returns a
+     * future that is completed with the number of rows changed on the database thread. See
+     * {@link DatastoreFuture}.
+     *
+     * @param stmt
+     * @return
+     */
+    public DatastoreFuture<Integer> executeNonQueryAsync(Statement stmt) {
+        return executeNonQueryAsync(stmt, PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes a non query in the same way as
+     * {@link #executeNonQueryAsync(Statement)} with the passed in priority.
+     *
+     * @param stmt
+     * @param priority one of PRIORITY_BACKGROUND, PRIORITY_NORMAL or PRIORITY_USER_VISIBLE
+     * @return
+     */
+    public DatastoreFuture<Integer> executeNonQueryAsync(Statement stmt, int priority) {
+        int taskId = new AtomicInteger().incrementAndGet();
+        DatastoreTransaction dt = new DatastoreTransaction();
+        dt.setConnection(myActiveDatabase);
+        dt.addStatement(stmt);
+        DatabaseNonQueryTask task = new DatabaseNonQueryTask(taskId, DEFAULT_TOKEN,
+                this, dt);
+        task.setPriority(priority);
+
+        return executeAsync(task, new DatastoreFuture<Integer>());
+    }
+
+    /**
+     * This method inserts each of the passed in rows into the table on the calling thread. The
+     * rows are read from the iterable as they are inserted and are all inserted with the same
+     * compiled statement, so no Insert object is needed for each row and memory use doesn't
+     * grow with the number of rows. The rows are committed in chunks
+     * (see {@link BulkInsertOptions#setChunkSize(int)}).
+     *
+     * @param table
+     * @param rows either maps of column names to values or objects with fields annotated with
+     *             DbColumnName
+     * @param options the options to use or null to use the default options
+     * @return
+     * @throws DatabaseException if a row fails to insert. The chunks committed before the row
+     *                           that failed are not rolled back.
+     */
+    public <T> BulkInsertResult bulkInsert(String table, Iterable<T> rows,
+                                           BulkInsertOptions options) throws DatabaseException {
+        return bulkInsert(table, rows.iterator(), options);
+    }
+
+    /**
+     * This method inserts the rows of the passed in iterator in the same way as
+     * {@link #bulkInsert(String, Iterable, BulkInsertOptions)}.
+     *
+     * @param table
+     * @param rows
+     * @param options the options to use or null to use the default options
+     * @return
+     * @throws DatabaseException
+     */
+    public <T> BulkInsertResult bulkInsert(String table, Iterator<T> rows,
+                                           BulkInsertOptions options) throws DatabaseException {
+        int taskId = new AtomicInteger().incrementAndGet();
+        BulkInsertTask task = new BulkInsertTask(taskId, this, table, rows,
+                options != null ? options : new BulkInsertOptions());
+        task.startTask();
+
+        return task.getTaskResult();
+    }
+
+    /**
+     * This method inserts the passed in rows in the same way as
+     * {@link #bulkInsert(String, Iterable, BulkInsertOptions)} on the connection's writer thread
+     * and returns a future that is completed with the result. The iterable must not be changed
+     * until the future has completed.
+     *
+     * @param table
+     * @param rows
+     * @param options the options to use or null to use the default options
+     * @return
+     */
+    public <T> DatastoreFuture<BulkInsertResult> bulkInsertAsync(String table, Iterable<T> rows,
+                                                                 BulkInsertOptions options) {
+        return bulkInsertAsync(table, rows.iterator(), options);
+    }
+
+    /**
+     * This method inserts the rows of the passed in iterator on the connection's writer thread.
+     * The iterator is read on the writer thread.
+     *
+     * @param table
+     * @param rows
+     * @param options the options to use or null to use the default options
+     * @return
+     */
+    public <T> DatastoreFuture<BulkInsertResult> bulkInsertAsync(String table, Iterator<T> rows,
+                                                                 BulkInsertOptions options) {
+        int taskId = new AtomicInteger().incrementAndGet();
+        BulkInsertTask task = new BulkInsertTask(taskId, this, table, rows,
+                options != null ? options : new BulkInsertOptions());
+
+        return executeAsync(task, new DatastoreFuture<BulkInsertResult>());
+    }
+
+    /**
+     * This method runs the passed in query and passes the result to the observer. The query is
+     * run again each time a table it reads from is changed through this connection, until
+     * unsubscribe() is called on the returned subscription. Changes that arrive while the query
+     * is waiting or running are conflated into a single re-run.
+     * <p>
+     * The observer is notified on the main thread.
+     *
+     * @param stmt
+     * @param classToInject
+     * @param observer
+     * @return
+     */
+    public <T> QuerySubscription observeQuery(Query stmt, Class<T> classToInject,
+                                              QueryObserver<T> observer) {
+        QueryObservation<T> observation = new QueryObservation<T>(this, stmt, classToInject,
+                observer);
+        observation.subscribe();
+        return observation;
+    }
+
     /**
      * This method will check if records exist with the given whereclause. If they
      * exist an update of this records will be executed based on the values in the
      * given insert. If no records exist the insert will be executed.
      * <p>
+     * The update and insert are run as a single task in one transaction (see {@link Upsert}) so
+     * no other write can change the table between the two.
+     * <p>
      * NOTE: If multiple rows are given in the passed in insert only the first row
      * will be used when executing an update
      *
@@ -593,54 +1230,22 @@ public class Datastore implements OnTaskCompleteListener {
      * @param insert
      * @param listener
      */
-    public void executeAddOrUpdate(int token, final String whereClause, final Insert insert,
-                                   final OnNonQueryComplete listener) {
-        RowCountQuery query = new RowCountQuery(insert.getTable());
-        query.whereClause(whereClause);
-        executeAggregateQuery(token, query, new OnAggregateQueryComplete() {
-
-            @Override
-            public void onQueryComplete(int token, Object result) {
-                long rowCount = (long) result;
-
-                //do an insert if no records are found or an update otherwise.
-                Statement updateOrAddStmt = null;
-                if (rowCount <= 0) {
-                    updateOrAddStmt = insert;
-                } else {
-                    if (insert.getInsertRowClasses() != null) {
-                        Update update = new Update(insert.getTable(),
-                                insert.getInsertRowClasses());
-                        updateOrAddStmt = update;
-                    } else {
-                        Map<String, Object> values = insert.getValues();
-
-                        if (!values.isEmpty()) {
-                            Update update = new Update(insert.getTable(),
-                                    values).whereClause(whereClause);
-                            updateOrAddStmt = update;
-
-                        }
-                    }
-                    ((Update) updateOrAddStmt).whereClause(whereClause);
-                }
-
-                if (updateOrAddStmt != null) {
-                    executeNonQuery(token, updateOrAddStmt, listener);
-                } else {
-                    listener.onNonQueryFailed(token, new DatabaseException(
-                            "No values were in the insert object when a "
-                                    + "executeAddOrUpdate() was attempted"));
-                }
-            }
+    public void executeAddOrUpdate(int token, String whereClause, Insert insert,
+                                   OnNonQueryComplete listener) {
+        executeNonQuery(token, Upsert.fromInsert(insert).whereClause(whereClause), listener);
+    }
 
-            @Override
-            public void onQueryFailed(int token, DatabaseException e) {
-                if (listener != null) {
-                    listener.onNonQueryFailed(token, e);
-                }
-            }
-        });
+    /**
+     * This method does the same as
+     * {@link #executeAddOrUpdate(int, String, Insert, OnNonQueryComplete)} but returns a future
+     * that is completed with the number of rows changed.
+     *
+     * @param whereClause
+     * @param insert
+     * @return
+     */
+    public DatastoreFuture<Integer> executeAddOrUpdateAsync(String whereClause, Insert insert) {
+        return executeNonQueryAsync(Upsert.fromInsert(insert).whereClause(whereClause));
     }
 
     /**
@@ -678,11 +1283,7 @@ public class Datastore implements OnTaskCompleteListener {
                 this, dt);
         task.addOnStmtCompleteListener(listener);
 
-        try {
-            executeStmt(task);
-        } catch (DatabaseException e) {
-            listener.onNonQueryFailed(token, e);
-        }
+        executeStmt(task);
     }
 
     /**
@@ -701,11 +1302,7 @@ public class Datastore implements OnTaskCompleteListener {
                 this, table);
         task.addOnStmtCompleteListener(listener);
 
-        try {
-            executeStmt(task);
-        } catch (DatabaseException e) {
-            listener.onNonQueryFailed(token, e);
-        }
+        executeStmt(task);
     }
 
     public void executeRawStatement(int token, IRawStatement stmt) throws DatabaseException {
@@ -734,10 +1331,34 @@ public class Datastore implements OnTaskCompleteListener {
         return myActiveDatabase.getTableUri(tableName);
     }
 
+    /**
+     * This method returns how many inserts, updates and deletes on this datastore's connection
+     * reused a cached compiled statement and how many had to compile a new one.
+     *
+     * @return
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        return myActiveDatabase.getStatementCacheStats();
+    }
+
+    /**
+     * This method returns the settings this connection's database is running with, read back
+     * from the database. It can be used to check that the ConnectionConfig has been applied.
+     *
+     * @return
+     */
+    public ConnectionSettings getConnectionSettings() {
+        return myActiveDatabase.getConnectionSettings();
+    }
+
     IDBConnector getActiveDatabase() {
         return myActiveDatabase;
     }
 
+    TaskScheduler getTaskScheduler() {
+        return myTaskScheduler;
+    }
+
     boolean validateDBConnection() throws DatabaseException {
         if (isConnectionAvail()) {
             return true;
@@ -765,15 +1386,19 @@ public class Datastore implements OnTaskCompleteListener {
         return false;
     }
 
-    private static void addConnection(IDBConnector connection) {
+    private static void addConnection(IDBConnector connection, TaskScheduler scheduler) {
 
         myDBConnections.put(connection.getName(), connection);
+        myTaskSchedulers.put(connection.getName(), scheduler);
+        myTaskQueues.put(connection.getName(), new TaskQueue());
         myLogs.add(new ConnectionLog(connection.getName(),
                 ConnectionStatus.ADDED, System.currentTimeMillis()));
     }
 
     private static IDBConnector removeConnection(String dbName) {
         IDBConnector connector = myDBConnections.remove(dbName);
+        myTaskSchedulers.remove(dbName);
+        myTaskQueues.remove(dbName);
         if (connector != null) {
             myLogs.add(new ConnectionLog(dbName,
                     ConnectionStatus.REMOVED, System.currentTimeMillis()));
@@ -782,12 +1407,26 @@ public class Datastore implements OnTaskCompleteListener {
         return connector;
     }
 
-    private void executeStmt(DatabaseTask task) throws DatabaseException {
+    /**
+     * This method runs the passed in task. If this object is set to block the task is run on the
+     * calling thread and it's listeners are notified before this method returns.
+     *
+     * @param task
+     */
+    private void executeStmt(DatabaseTask task) {
 
         if (isBlockingCall()) {
-            task.startTask();
+            DatabaseException error = null;
+            try {
+                task.startTask();
+            } catch (DatabaseException e) {
+                error = e;
+            } catch (OperationCanceledException e) {
+                // the task has been cancelled from another thread so it's listeners won't be
+                // notified.
+            }
+            task.onPostExecute(error);
         } else if (isTasksQueued()) {
-            task.addOnTaskCompleteListener(this);
             addTaskToQueue(task);
         } else {
             task.execute();
@@ -795,43 +1434,37 @@ public class Datastore implements OnTaskCompleteListener {
     }
 
     /**
-     * This method adds a task to the queue. If this task is the first task to
-     * be added it will be start immediately
+     * This method adds a task to the queue of this datastore's connection. If no other task
+     * is running on the connection it will be started immediately
      *
      * @param dt
-     * @throws DatabaseException
      */
-    private synchronized void addTaskToQueue(DatabaseTask dt)
-            throws DatabaseException {
-        synchronized (myQueuedTasks) {
-            myQueuedTasks.add(dt);
-
-            if (myQueuedTasks.size() == 1) {
-                dt.execute();
-            }
-        }
+    void addTaskToQueue(DatabaseTask dt) {
+        myTaskQueue.add(dt);
     }
 
-    /*
-     * (non-Javadoc)
+    /**
+     * This method sets the future of the passed in task and runs the task.
      *
-     * @see
-     * au.com.delaney.listeners.OnTaskCompleteListener#onTaskComplete(au.com
-     * .delaney.listeners.Tasker)
+     * @param task
+     * @param future
+     * @return the passed in future
      */
-    @Override
-    public void onTaskComplete(Tasker task) {
-        synchronized (myQueuedTasks) {
-            myQueuedTasks.remove(task);
-
-            if (myQueuedTasks.size() > 0) {
-                if (myQueuedTasks.get(0).isTaskRunning()) {
-                    onTaskComplete(myQueuedTasks.get(0));
-                } else {
-                    myQueuedTasks.get(0).execute();
-                }
+    <T> DatastoreFuture<T> executeAsync(DatabaseTask task, DatastoreFuture<T> future) {
+        try {
+            if (!validateDBConnection()) {
+                throw new DatabaseException(
+                        "Attempt to reopen an already closed database object. "
+                                + "Ensure a connection to the database is currently valid and open");
             }
+        } catch (DatabaseException e) {
+            future.fail(e);
+            return future;
         }
+
+        task.setFuture(future);
+        executeStmt(task);
+        return future;
     }
 
     private QueryDeserializer getQueryDeserializer(Query stmt, Class injectorClass) {
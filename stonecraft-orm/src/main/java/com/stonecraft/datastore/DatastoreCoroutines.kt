@@ -0,0 +1,154 @@
+package com.stonecraft.datastore
+
+import com.stonecraft.datastore.exceptions.DatabaseException
+import com.stonecraft.datastore.interaction.Query
+import com.stonecraft.datastore.interaction.RawSQLQuery
+import com.stonecraft.datastore.interaction.Statement
+import com.stonecraft.datastore.interfaces.TaskScheduler
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.suspendCancellableCoroutine
+import java.util.concurrent.ExecutionException
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * A CoroutineDispatcher that runs coroutines on the reader threads of a connection's
+ * TaskScheduler. Use this to keep work that goes with a database call (eg. mapping a large
+ * result) on the database threads instead of the main thread.
+ */
+class TaskSchedulerDispatcher(private val scheduler: TaskScheduler) : CoroutineDispatcher() {
+
+    override fun dispatch(context: CoroutineContext, block: Runnable) {
+        scheduler.executeRead(block)
+    }
+
+    override fun equals(other: Any?): Boolean =
+            other is TaskSchedulerDispatcher && other.scheduler == scheduler
+
+    override fun hashCode(): Int = scheduler.hashCode()
+
+    override fun toString(): String = "TaskSchedulerDispatcher[$scheduler]"
+}
+
+/**
+ * The dispatcher that runs coroutines on the threads of this datastore's connection.
+ */
+val Datastore.dispatcher: CoroutineDispatcher
+    get() = TaskSchedulerDispatcher(taskScheduler)
+
+/**
+ * Suspends until this future has completed and returns it's result. If the coroutine is
+ * cancelled the future is cancelled, which removes the task from the connection's queue or
+ * interrupts the running query.
+ */
+suspend fun <T> DatastoreFuture<T>.await(): T {
+    if (isDone) {
+        return getCompletedResult()
+    }
+
+    return suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { cancel(false) }
+        addListener {
+            if (isCancelled) {
+                continuation.cancel()
+            } else {
+                continuation.resumeWith(runCatching { getCompletedResult() })
+            }
+        }
+    }
+}
+
+/**
+ * Runs the query and returns the result parsed into instances of the passed in type.
+ */
+suspend fun <T> Datastore.query(stmt: Query, type: Class<T>,
+                                priority: Int = Datastore.PRIORITY_NORMAL): Array<T> =
+        executeQueryAsync(stmt, type, priority).await()
+
+suspend inline fun <reified T> Datastore.query(stmt: Query,
+                                               priority: Int = Datastore.PRIORITY_NORMAL): Array<T> =
+        query(stmt, T::class.java, priority)
+
+/**
+ * Runs the query and returns the first row, or null if no rows match. A limit of 1 is added to
+ * the query if it doesn't already have a limit.
+ */
+suspend fun <T> Datastore.queryOne(stmt: Query, type: Class<T>,
+                                   priority: Int = Datastore.PRIORITY_NORMAL): T? {
+    val limitedStmt = if (stmt is RawSQLQuery || stmt.limit > 0) stmt else Query(stmt).limit(1)
+    return query(limitedStmt, type, priority).firstOrNull()
+}
+
+suspend inline fun <reified T> Datastore.queryOne(stmt: Query,
+                                                  priority: Int = Datastore.PRIORITY_NORMAL): T? =
+        queryOne(stmt, T::class.java, priority)
+
+/**
+ * Returns the number of rows that match the query.
+ */
+suspend fun Datastore.count(stmt: RowCountQuery,
+                            priority: Int = Datastore.PRIORITY_NORMAL): Long =
+        executeAggregateQueryAsync(stmt, priority).await() as Long
+
+/**
+ * Runs the statement (eg. insert, update, delete) and returns the number of rows changed.
+ */
+suspend fun Datastore.execute(stmt: Statement,
+                              priority: Int = Datastore.PRIORITY_NORMAL): Int =
+        executeNonQueryAsync(stmt, priority).await()
+
+/**
+ * Runs all statements added to the transaction in the block as a single transaction and returns
+ * the number of rows changed.
+ *
+ * eg.
+ * datastore.transaction {
+ *     addStatement(Insert(TABLE_NAME, row))
+ *     addStatement(Delete(OTHER_TABLE_NAME))
+ * }
+ */
+suspend fun Datastore.transaction(priority: Int = Datastore.PRIORITY_NORMAL,
+                                  block: DatastoreTransaction.() -> Unit): Int {
+    val transaction = DatastoreTransaction()
+    transaction.block()
+    return transaction.executeAsync(this, priority).await()
+}
+
+/**
+ * Returns a Flow that emits the result of the query and emits again each time a table the query
+ * reads from changes. The query is only run while the flow is being collected. Results that
+ * arrive faster than the collector can handle them are conflated so only the latest is kept.
+ */
+fun <T> Datastore.observeQuery(stmt: Query, type: Class<T>): Flow<Array<T>> = flow {
+    val results = Channel<Array<T>>(Channel.CONFLATED)
+    val subscription = observeQuery(stmt, type, object : QueryObserver<T> {
+        override fun onQueryResult(resultSet: Array<T>) {
+            results.offer(resultSet)
+        }
+
+        override fun onQueryFailed(e: DatabaseException) {
+            results.close(e)
+        }
+    })
+
+    try {
+        for (resultSet in results) {
+            emit(resultSet)
+        }
+    } finally {
+        subscription.unsubscribe()
+    }
+}
+
+inline fun <reified T> Datastore.observeQuery(stmt: Query): Flow<Array<T>> =
+        observeQuery(stmt, T::class.java)
+
+private fun <T> DatastoreFuture<T>.getCompletedResult(): T {
+    try {
+        return get()
+    } catch (e: ExecutionException) {
+        throw e.cause ?: e
+    }
+}
@@ -0,0 +1,357 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class holds the result of a task that has been executed using one of the async methods
+ * in Datastore (eg. executeQueryAsync()).
+ * <p/>
+ * The result can be waited on using get() or steps can be chained on to it using then() and
+ * thenCompose(). Chained steps and callbacks are run on the thread that completes this future,
+ * which is the database thread the task was run on, so several steps can be run one after the
+ * other without going back to the main thread in between. If this future has already completed
+ * when a step or callback is added it is run straight away on the calling thread.
+ * <p/>
+ * Because callbacks are run on a database thread they should not do any long running work or
+ * touch any views. Use {@link #addCallback(Callback)} with a Handler or post the result to the
+ * main thread when the result is needed there.
+ */
+public class DatastoreFuture<T> implements Future<T> {
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCEEDED = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private int myState;
+    private T myResult;
+    private DatabaseException myError;
+    private List<Runnable> myListeners;
+    private TaskHandle myTaskHandle;
+    private Future<?> myUpstream;
+
+    /**
+     * This interface is used to convert the result of a future into the result of the next step.
+     */
+    public interface Function<T, R> {
+        R apply(T result) throws DatabaseException;
+    }
+
+    /**
+     * This interface is used to start the next asynchronous step once a future has completed.
+     */
+    public interface AsyncFunction<T, R> {
+        DatastoreFuture<R> apply(T result) throws DatabaseException;
+    }
+
+    /**
+     * This interface is notified once a future has completed. Neither method is called if the
+     * future is cancelled.
+     */
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(DatabaseException e);
+    }
+
+    DatastoreFuture() {
+        myState = STATE_PENDING;
+        myListeners = new ArrayList<Runnable>();
+    }
+
+    /**
+     * This method returns a future that has already completed with the passed in result.
+     *
+     * @param result
+     * @return
+     */
+    public static <T> DatastoreFuture<T> completed(T result) {
+        DatastoreFuture<T> future = new DatastoreFuture<T>();
+        future.complete(result);
+        return future;
+    }
+
+    /**
+     * This method returns a future that has already failed with the passed in exception.
+     *
+     * @param e
+     * @return
+     */
+    public static <T> DatastoreFuture<T> failed(DatabaseException e) {
+        DatastoreFuture<T> future = new DatastoreFuture<T>();
+        future.fail(e);
+        return future;
+    }
+
+    void setTaskHandle(TaskHandle handle) {
+        myTaskHandle = handle;
+    }
+
+    boolean complete(T result) {
+        synchronized (this) {
+            if (myState != STATE_PENDING) {
+                return false;
+            }
+            myResult = result;
+            myState = STATE_SUCCEEDED;
+        }
+        onCompleted();
+        return true;
+    }
+
+    boolean fail(DatabaseException e) {
+        synchronized (this) {
+            if (myState != STATE_PENDING) {
+                return false;
+            }
+            myError = e;
+            myState = STATE_FAILED;
+        }
+        onCompleted();
+        return true;
+    }
+
+    /**
+     * This method cancels this future and the task or step it is waiting on. If the task has not
+     * been started it is removed from the connection's queue, otherwise the running query is
+     * interrupted. A write that has left the queue can't be cancelled, so this future is left to
+     * complete with the write's result.
+     *
+     * @param mayInterruptIfRunning this is ignored. A running query is always interrupted.
+     * @return false if this future had already completed or it's task could not be cancelled.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        TaskHandle handle;
+        Future<?> upstream;
+        synchronized (this) {
+            if (myState != STATE_PENDING) {
+                return false;
+            }
+            handle = myTaskHandle;
+            upstream = myUpstream;
+        }
+
+        if (handle != null && !handle.cancel()) {
+            return false;
+        }
+        synchronized (this) {
+            if (myState != STATE_PENDING) {
+                return false;
+            }
+            myState = STATE_CANCELLED;
+        }
+        if (upstream != null) {
+            upstream.cancel(mayInterruptIfRunning);
+        }
+        onCompleted();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return myState == STATE_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return myState != STATE_PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (myState == STATE_PENDING) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long remainingNanos = unit.toNanos(timeout);
+        long end = System.nanoTime() + remainingNanos;
+        while (myState == STATE_PENDING) {
+            if (remainingNanos <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            remainingNanos = end - System.nanoTime();
+        }
+        return getResult();
+    }
+
+    /**
+     * This method returns a future that completes with the result of the passed in function once
+     * this future has completed successfully. If this future fails or is cancelled the returned
+     * future fails or is cancelled in the same way.
+     *
+     * @param function
+     * @return
+     */
+    public <R> DatastoreFuture<R> then(final Function<? super T, ? extends R> function) {
+        final DatastoreFuture<R> next = new DatastoreFuture<R>();
+        next.myUpstream = this;
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (passOnIncompleteResult(next)) {
+                    return;
+                }
+                try {
+                    next.complete(function.apply(myResult));
+                } catch (DatabaseException e) {
+                    next.fail(e);
+                } catch (RuntimeException e) {
+                    next.fail(new DatabaseException("A step chained to a datastore task failed", e));
+                }
+            }
+        });
+        return next;
+    }
+
+    /**
+     * This method returns a future that completes with the result of the future returned by the
+     * passed in function. The function is called once this future has completed successfully,
+     * which allows database tasks to be run one after the other from the database thread.
+     *
+     * @param function
+     * @return
+     */
+    public <R> DatastoreFuture<R> thenCompose(
+            final AsyncFunction<? super T, R> function) {
+        final DatastoreFuture<R> next = new DatastoreFuture<R>();
+        next.myUpstream = this;
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (passOnIncompleteResult(next)) {
+                    return;
+                }
+                final DatastoreFuture<R> inner;
+                try {
+                    inner = function.apply(myResult);
+                } catch (DatabaseException e) {
+                    next.fail(e);
+                    return;
+                } catch (RuntimeException e) {
+                    next.fail(new DatabaseException("A step chained to a datastore task failed", e));
+                    return;
+                }
+
+                if (inner == null) {
+                    next.complete(null);
+                    return;
+                }
+
+                synchronized (next) {
+                    next.myUpstream = inner;
+                }
+                if (next.isCancelled()) {
+                    inner.cancel(false);
+                }
+                inner.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!inner.passOnIncompleteResult(next)) {
+                            next.complete(inner.myResult);
+                        }
+                    }
+                });
+            }
+        });
+        return next;
+    }
+
+    /**
+     * This method adds a callback that is notified once this future has completed. The callback
+     * is called on the thread that completed this future.
+     *
+     * @param callback
+     * @return this future
+     */
+    public DatastoreFuture<T> addCallback(final Callback<? super T> callback) {
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                int state;
+                synchronized (DatastoreFuture.this) {
+                    state = myState;
+                }
+                if (state == STATE_SUCCEEDED) {
+                    callback.onSuccess(myResult);
+                } else if (state == STATE_FAILED) {
+                    callback.onFailure(myError);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * This method adds a runnable that is run once this future has completed, including when it
+     * is cancelled.
+     *
+     * @param listener
+     */
+    void addListener(Runnable listener) {
+        synchronized (this) {
+            if (myState == STATE_PENDING) {
+                myListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    private void onCompleted() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            notifyAll();
+            listeners = myListeners;
+            myListeners = new ArrayList<Runnable>();
+            myUpstream = null;
+            myTaskHandle = null;
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * This method passes a failure or cancellation of this future on to the passed in future.
+     *
+     * @param next
+     * @return true if this future did not complete successfully.
+     */
+    private boolean passOnIncompleteResult(DatastoreFuture<?> next) {
+        int state;
+        synchronized (this) {
+            state = myState;
+        }
+        if (state == STATE_CANCELLED) {
+            next.cancel(false);
+            return true;
+        } else if (state == STATE_FAILED) {
+            next.fail(myError);
+            return true;
+        }
+        return false;
+    }
+
+    private T getResult() throws ExecutionException {
+        if (myState == STATE_CANCELLED) {
+            throw new CancellationException();
+        } else if (myState == STATE_FAILED) {
+            throw new ExecutionException(myError);
+        }
+        return myResult;
+    }
+}
@@ -1,14 +1,14 @@
 package com.stonecraft.datastore;
 
-import android.database.SQLException;
-
 import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interaction.AddColumnStatement;
 import com.stonecraft.datastore.interaction.Delete;
 import com.stonecraft.datastore.interaction.IRawStatement;
 import com.stonecraft.datastore.interaction.Insert;
 import com.stonecraft.datastore.interaction.Statement;
 import com.stonecraft.datastore.interaction.Update;
 import com.stonecraft.datastore.interaction.UpdateTableStatement;
+import com.stonecraft.datastore.interaction.Upsert;
 import com.stonecraft.datastore.interfaces.IDBConnector;
 import com.stonecraft.datastore.interfaces.OnNonQueryComplete;
 
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -52,12 +53,26 @@ public class DatastoreTransaction {
     }
 
     /**
-     * This method executes this transaction on a new thread and returns the result to the
-     * passed in listener.
+     * This method adds this transaction to the task queue of the passed in datastore's connection
+     * and returns the result to the passed in listener.
      *
      * @param ds
      */
     public void execute(Datastore ds, OnNonQueryComplete listener) {
+        execute(ds, listener, Datastore.PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes this transaction in the same way as
+     * {@link #execute(Datastore, OnNonQueryComplete)}. It will be started ahead of any queued
+     * tasks with a lower priority.
+     *
+     * @param ds
+     * @param listener
+     * @param priority one of Datastore.PRIORITY_BACKGROUND, Datastore.PRIORITY_NORMAL or
+     *                 Datastore.PRIORITY_USER_VISIBLE
+     */
+    public void execute(Datastore ds, OnNonQueryComplete listener, int priority) {
         try {
             ds.validateDBConnection();
             myConnection = ds.getActiveDatabase();
@@ -65,13 +80,44 @@ public class DatastoreTransaction {
             DatabaseNonQueryTask task = new DatabaseNonQueryTask(taskId,
                     DEFAULT_TOKEN, ds, this);
             task.addOnStmtCompleteListener(listener);
-            task.execute();
+            task.setPriority(priority);
+            ds.addTaskToQueue(task);
         } catch (DatabaseException e) {
             listener.onNonQueryFailed(DEFAULT_TOKEN, e);
         }
 
     }
 
+    /**
+     * This method executes this transaction on the passed in datastore and returns a future that
+     * is completed with the number of rows changed on the database thread. See
+     * {@link DatastoreFuture}.
+     *
+     * @param ds
+     * @return
+     */
+    public DatastoreFuture<Integer> executeAsync(Datastore ds) {
+        return executeAsync(ds, Datastore.PRIORITY_NORMAL);
+    }
+
+    /**
+     * This method executes this transaction in the same way as
+     * {@link #executeAsync(Datastore)} with the passed in priority.
+     *
+     * @param ds
+     * @param priority one of Datastore.PRIORITY_BACKGROUND, Datastore.PRIORITY_NORMAL or
+     *                 Datastore.PRIORITY_USER_VISIBLE
+     * @return
+     */
+    public DatastoreFuture<Integer> executeAsync(Datastore ds, int priority) {
+        myConnection = ds.getActiveDatabase();
+        int taskId = new AtomicInteger().incrementAndGet();
+        DatabaseNonQueryTask task = new DatabaseNonQueryTask(taskId,
+                DEFAULT_TOKEN, ds, this);
+        task.setPriority(priority);
+        return ds.executeAsync(task, new DatastoreFuture<Integer>());
+    }
+
     /**
      * This method executes this transaction on the current thread.
      *
@@ -85,24 +131,70 @@ public class DatastoreTransaction {
         return run();
     }
 
+    /**
+     * This method returns the names of the tables that are modified by the statements in this
+     * transaction. If this transaction contains a raw statement null is returned as the tables
+     * it modifies can't be determined.
+     *
+     * @return
+     */
+    Set<String> getTables() {
+        Set<String> tables = DatabaseTask.createTableSet();
+        for (Statement stmt : myStatementList) {
+            if (stmt instanceof IRawStatement) {
+                return null;
+            }
+
+            DatabaseTask.addTable(tables, stmt.getTable());
+            if (stmt instanceof UpdateTableStatement) {
+                UpdateTableStatement updateTableStatement = (UpdateTableStatement) stmt;
+                DatabaseTask.addTable(tables, updateTableStatement.getOldTable().getName());
+                DatabaseTask.addTable(tables, updateTableStatement.getNewTable().getName());
+            }
+        }
+        return tables;
+    }
+
     void setConnection(IDBConnector connection) {
         myConnection = connection;
     }
 
     int run() throws DatabaseException {
+        myConnection.startTransaction();
+        int result;
+        try {
+            result = executeStatements();
+        } catch (DatabaseException | RuntimeException e) {
+            // the transaction must always be ended, otherwise every later write on the writer
+            // thread would run inside it
+            myConnection.rollBack();
+            throw e;
+        }
 
-        Map<String, String> updatedTableUris = new HashMap<>();
+        myConnection.commit();
+        sendTableUpdateNotifications();
+        return result;
+    }
+
+    /**
+     * This method runs the statements of this transaction inside a transaction that has already
+     * been started on the connection. The transaction is not committed or rolled back by this
+     * method so that the statements can be run as part of a larger transaction.
+     *
+     * @return the number of rows changed by the statements
+     * @throws DatabaseException
+     */
+    int executeStatements() throws DatabaseException {
         int result = 0;
-        myConnection.startTransaction();
         for(Statement stmt : myStatementList) {
             try {
-                updatedTableUris.put(stmt.getTable(), stmt.getTable());
-
                 if (stmt instanceof Insert) {
                     myConnection.insert((Insert) stmt);
                     result += 1;
                 } else if (stmt instanceof Update) {
                     result += myConnection.update((Update) stmt);
+                } else if (stmt instanceof Upsert) {
+                    result += myConnection.upsert((Upsert) stmt);
                 } else if (stmt instanceof Delete) {
                     result += myConnection.delete((Delete) stmt);
                 } else if (stmt instanceof IRawStatement) {
@@ -112,19 +204,32 @@ public class DatastoreTransaction {
                     myConnection.updateTable(
                             updateTableStatement.getOldTable(),
                             updateTableStatement.getNewTable());
+                } else if (stmt instanceof AddColumnStatement) {
+                    myConnection.addColumn(stmt.getTable(),
+                            ((AddColumnStatement) stmt).getColumn());
                 } else {
                     result += myConnection.doesTableExist(stmt.getTable());
                 }
-            } catch (DatabaseException | SQLException e) {
-                    myConnection.rollBack();
-                    throw new DatabaseException("Failed to execute the transaction " + stmt.toString(), e);
+            } catch (DatabaseException | RuntimeException e) {
+                throw new DatabaseException("Failed to execute the transaction " + stmt.toString(), e);
             }
         }
+        return result;
+    }
+
+    /**
+     * This method notifies anything watching the tables of this transaction that they have
+     * changed. This must only be called once the transaction has been committed so anything
+     * re-reading the tables sees the changes.
+     */
+    void sendTableUpdateNotifications() {
+        Map<String, String> updatedTableUris = new HashMap<>();
+        for(Statement stmt : myStatementList) {
+            updatedTableUris.put(stmt.getTable(), stmt.getTable());
+        }
 
         for(String tableName : updatedTableUris.keySet()) {
             myConnection.sendTableUpdateNotification(tableName);
         }
-            myConnection.commit();
-        return result;
     }
 }
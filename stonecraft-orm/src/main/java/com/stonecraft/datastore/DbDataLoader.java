@@ -4,6 +4,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.CancellationSignal;
 
 import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interaction.Query;
@@ -13,7 +14,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import androidx.annotation.Nullable;
-import androidx.core.os.CancellationSignal;
 import androidx.core.os.OperationCanceledException;
 import androidx.loader.content.AsyncTaskLoader;
 
@@ -59,17 +59,22 @@ public class DbDataLoader<T> extends AsyncTaskLoader<T> {
 
         T result = null;
         try {
-            result = (T)ds.executeQuery(myQuery, myLoaderResultType);
+            result = (T)ds.executeQuery(myQuery, myLoaderResultType, myCancellationSignal);
+        } catch (android.os.OperationCanceledException e) {
+            // AsyncTaskLoader only treats the androidx exception as a cancelled load
+            throw new OperationCanceledException(e.getMessage());
         } catch (DatabaseException e) {
             throw new RuntimeException("An error occured in the loader while trying to get data " +
                     "from the database", e);
         } catch (ClassCastException e) {
             throw new ClassCastException("The class type passed into the loader does not " +
                     "match the generic type of the loader. [" + e + "]");
+        } finally {
+            synchronized (this) {
+                myCancellationSignal = null;
+            }
         }
 
-        myCancellationSignal = null;
-
         return result;
     }
 
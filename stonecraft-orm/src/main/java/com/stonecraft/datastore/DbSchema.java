@@ -0,0 +1,26 @@
+package com.stonecraft.datastore;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This annotation declares a database schema that is built at compile time. The
+ * stonecraft-orm-compiler annotation processor reads the schema xml named in this annotation and
+ * generates a {@link SchemaFactory} called &lt;AnnotatedClass&gt;_SchemaFactory in the same
+ * package as the annotated class. The generated factory is passed to
+ * {@link Datastore#createConnection(android.content.Context, SchemaFactory,
+ * OnConnectionListener)} so the xml doesn't have to be parsed when the app starts.
+ * <p>
+ * The xml is found in the directory set with the stonecraft.schemaDir annotation processor
+ * argument.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface DbSchema {
+    /**
+     * @return the file name of the schema xml
+     */
+    String value();
+}
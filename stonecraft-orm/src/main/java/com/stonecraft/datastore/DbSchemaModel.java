@@ -1,10 +1,16 @@
 package com.stonecraft.datastore;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.stonecraft.datastore.view.DatabaseColumn;
+import com.stonecraft.datastore.view.DatabaseIndex;
 import com.stonecraft.datastore.view.DatabaseTable;
 import com.stonecraft.datastore.exceptions.DatabaseException;
 
@@ -16,15 +22,20 @@ import com.stonecraft.datastore.exceptions.DatabaseException;
  * 
  */
 public class DbSchemaModel {
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final String HASH_CHARSET = "UTF-8";
+
 	private Map<String, DatabaseTable> myTables;
 	private String myName;
 	private int myVersion;
+	private ConnectionConfig myConnectionConfig;
 
 	/**
 	 * This constructor creates an instance of DbSchemaModel
 	 */
 	public DbSchemaModel() {
 		myTables = new HashMap<String, DatabaseTable>();
+		myConnectionConfig = new ConnectionConfig();
 	}
 
 	/**
@@ -65,6 +76,71 @@ public class DbSchemaModel {
 		return statements;
 	}
 
+	/**
+	 * This method returns a list of create statements for all indexes declared on the tables
+	 * in this schema. The indexes must be created after the tables.
+	 *
+	 * @return
+	 */
+	public List<String> getIndexCreateStmts() {
+		List<String> statements = new ArrayList<String>();
+		for (DatabaseTable table : myTables.values()) {
+			for (DatabaseIndex index : table.getIndexes().values()) {
+				statements.add(index.getCreateIndexStmt());
+			}
+		}
+
+		return statements;
+	}
+
+	/**
+	 * This method returns a SHA-1 hash of the tables, columns and indexes in this schema. The
+	 * hash only changes when the definition of the schema changes, so it doesn't depend on the
+	 * order the tables and columns were declared in or on the version of the schema.
+	 *
+	 * @return the hash as a hex string
+	 */
+	public String getSchemaHash() {
+		StringBuilder builder = new StringBuilder();
+		List<String> tableNames = new ArrayList<String>(myTables.keySet());
+		Collections.sort(tableNames);
+		for (String tableName : tableNames) {
+			DatabaseTable table = myTables.get(tableName);
+			builder.append(tableName).append('|').append(table.getUri()).append('\n');
+
+			List<String> columnNames = new ArrayList<String>(table.getColumns().keySet());
+			Collections.sort(columnNames);
+			for (String columnName : columnNames) {
+				DatabaseColumn column = table.getColumn(columnName);
+				builder.append(columnName).append('|').append(column.getType())
+					.append('|').append(column.getLength())
+					.append('|').append(column.isPrimarykey())
+					.append('|').append(column.isNullable())
+					.append('|').append(column.isAutoIncrement())
+					.append('|').append(column.getDefaultValue()).append('\n');
+			}
+
+			List<String> indexNames = new ArrayList<String>(table.getIndexes().keySet());
+			Collections.sort(indexNames);
+			for (String indexName : indexNames) {
+				builder.append(table.getIndexes().get(indexName).getDefinition()).append('\n');
+			}
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			byte[] hash = digest.digest(builder.toString().getBytes(HASH_CHARSET));
+			StringBuilder hexBuilder = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				hexBuilder.append(Character.forDigit((b >> 4) & 0xF, 16))
+					.append(Character.forDigit(b & 0xF, 16));
+			}
+			return hexBuilder.toString();
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			throw new IllegalStateException("Failed to hash the schema", e);
+		}
+	}
+
 	public String getName() {
 		return myName;
 	}
@@ -80,4 +156,11 @@ public class DbSchemaModel {
 	public void setVersion(int version) {
 		myVersion = version;
 	}
+
+	/**
+	 * @return the settings the database of this schema is opened with
+	 */
+	public ConnectionConfig getConnectionConfig() {
+		return myConnectionConfig;
+	}
 }
@@ -0,0 +1,94 @@
+package com.stonecraft.datastore;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.stonecraft.datastore.interfaces.TaskScheduler;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is the default TaskScheduler used by a connection. It runs all write tasks on a
+ * single dedicated writer thread and read tasks on a bounded pool of reader threads. Results are
+ * delivered on the main thread.
+ * <p/>
+ * The threads are owned by this scheduler so database tasks no longer compete with other
+ * AsyncTasks in the app. Idle threads are released after KEEP_ALIVE_SECONDS so a scheduler that
+ * is no longer used does not hold on to any threads.
+ */
+public class ExecutorTaskScheduler implements TaskScheduler {
+    public static final int DEFAULT_READER_THREADS = 2;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor myWriteExecutor;
+    private final ThreadPoolExecutor myReadExecutor;
+    private final Handler myResultHandler;
+
+    public ExecutorTaskScheduler(String name) {
+        this(name, DEFAULT_READER_THREADS);
+    }
+
+    /**
+     * @param name the name used for the threads created by this scheduler
+     * @param readerThreads the maximum number of read tasks that can run at the same time
+     */
+    public ExecutorTaskScheduler(String name, int readerThreads) {
+        if (readerThreads < 1) {
+            throw new IllegalArgumentException("A scheduler requires at least one reader thread");
+        }
+        myWriteExecutor = createExecutor(1, name + "-writer");
+        myReadExecutor = createExecutor(readerThreads, name + "-reader");
+        myResultHandler = new Handler(Looper.getMainLooper());
+    }
+
+    @Override
+    public void executeRead(Runnable task) {
+        myReadExecutor.execute(task);
+    }
+
+    @Override
+    public void executeWrite(Runnable task) {
+        myWriteExecutor.execute(task);
+    }
+
+    @Override
+    public void deliverResult(Runnable result) {
+        myResultHandler.post(result);
+    }
+
+    /**
+     * This method stops this scheduler from accepting any new tasks. Tasks that have already
+     * been passed to this scheduler will still be run.
+     */
+    public void shutdown() {
+        myWriteExecutor.shutdown();
+        myReadExecutor.shutdown();
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threadCount, final String threadName) {
+        ThreadFactory factory = new ThreadFactory() {
+            private final AtomicInteger myCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, threadName + "-" + myCount.incrementAndGet());
+            }
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,197 @@
+package com.stonecraft.datastore;
+
+import android.os.SystemClock;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interfaces.IDBConnector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class runs several queued non query tasks inside a single SQLite transaction so that
+ * the cost of committing is paid once for the whole group rather than once per task.
+ * <p/>
+ * Each task is run inside it's own savepoint. If a task fails only the changes made by that task
+ * are rolled back and the other tasks in the group are still committed. Each task's listeners
+ * and future are given the result of that task once the group has been committed.
+ * <p/>
+ * While the group has fewer than the maximum number of tasks and the window has not passed,
+ * write tasks that are added to the queue after the group has started are also run in the
+ * group's transaction. Tasks are only taken from the queue if doing so keeps them in the order
+ * they would otherwise have been run in.
+ */
+class GroupCommitTask extends DatabaseTask {
+    private static final String SAVEPOINT_NAME = "group_task_%d";
+
+    private final List<DatabaseNonQueryTask> myMembers;
+    private final int myMaxTasks;
+    private final long myWindowMillis;
+
+    GroupCommitTask(DatabaseNonQueryTask firstTask, int maxTasks, long windowMillis) {
+        super(firstTask.getTaskId(), firstTask.getToken(), firstTask.myDatastore);
+        myMembers = new ArrayList<DatabaseNonQueryTask>();
+        myMembers.add(firstTask);
+        myMaxTasks = maxTasks;
+        myWindowMillis = windowMillis;
+        setPriority(firstTask.getPriority());
+    }
+
+    /**
+     * This method adds a task to this group. It is only called by the TaskQueue while it holds
+     * it's lock so that the tables of the group don't change while they are being checked.
+     *
+     * @param task
+     */
+    synchronized void addMember(DatabaseNonQueryTask task) {
+        myMembers.add(task);
+    }
+
+    @Override
+    public void startTask() throws DatabaseException {
+        long deadline = SystemClock.uptimeMillis() + myWindowMillis;
+        IDBConnector connection = myDatastore.getActiveDatabase();
+        try {
+            if (!myDatastore.validateDBConnection()) {
+                throw new DatabaseException(
+                        "Attempt to reopen an already closed database object. "
+                                + "Ensure a connection to the database is currently valid and open");
+            }
+            connection.startTransaction();
+        } catch (DatabaseException e) {
+            deliverResults(new DatabaseException[myMaxTasks], e);
+            return;
+        } catch (RuntimeException e) {
+            deliverResults(new DatabaseException[myMaxTasks],
+                    new DatabaseException("Failed to start the grouped transaction", e));
+            return;
+        }
+
+        DatabaseException[] errors = new DatabaseException[myMaxTasks];
+        int runCount = 0;
+        while (true) {
+            for (; runCount < getMemberCount(); runCount++) {
+                errors[runCount] = runMember(connection, runCount);
+            }
+
+            if (runCount >= myMaxTasks
+                    || !getTaskQueue().takeMergeableTasks(this, myMaxTasks - runCount, deadline)) {
+                break;
+            }
+        }
+
+        DatabaseException commitError = null;
+        try {
+            connection.commit();
+        } catch (DatabaseException e) {
+            commitError = e;
+        } catch (RuntimeException e) {
+            commitError = new DatabaseException("Failed to commit the grouped transaction", e);
+        }
+        deliverResults(errors, commitError);
+    }
+
+    /**
+     * This method runs the task at the passed in index inside a savepoint.
+     *
+     * @param connection
+     * @param index
+     * @return the exception the task failed with or null if it succeeded.
+     */
+    private DatabaseException runMember(IDBConnector connection, int index) {
+        // members are taken from the queue when they join the group, so they can no longer be
+        // cancelled and are always run
+        DatabaseNonQueryTask member = getMember(index);
+        String savepoint = String.format(SAVEPOINT_NAME, index);
+        try {
+            connection.setSavepoint(savepoint);
+        } catch (DatabaseException e) {
+            return e;
+        } catch (RuntimeException e) {
+            return new DatabaseException("Failed to start the task's savepoint", e);
+        }
+
+        DatabaseException error = null;
+        try {
+            member.startGroupedTask();
+        } catch (DatabaseException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new DatabaseException("Failed to execute the grouped task", e);
+        }
+
+        try {
+            if (error != null) {
+                connection.rollBackToSavepoint(savepoint);
+            }
+            connection.releaseSavepoint(savepoint);
+        } catch (DatabaseException e) {
+            return error != null ? error : e;
+        } catch (RuntimeException e) {
+            return error != null ? error
+                    : new DatabaseException("Failed to release the task's savepoint", e);
+        }
+        return error;
+    }
+
+    /**
+     * This method notifies the table watchers of each task whose changes were committed and
+     * passes each task it's own result.
+     *
+     * @param errors the exception each task failed with
+     * @param groupError an exception that every task that has not already failed is given, or
+     *                   null if the group was committed.
+     */
+    private void deliverResults(DatabaseException[] errors, DatabaseException groupError) {
+        int memberCount = getMemberCount();
+        if (groupError == null) {
+            for (int i = 0; i < memberCount; i++) {
+                if (errors[i] == null) {
+                    getMember(i).sendTableUpdateNotifications();
+                }
+            }
+        }
+
+        for (int i = 0; i < memberCount; i++) {
+            getMember(i).deliverResult(errors[i] != null ? errors[i] : groupError);
+        }
+    }
+
+    private synchronized int getMemberCount() {
+        return myMembers.size();
+    }
+
+    private synchronized DatabaseNonQueryTask getMember(int index) {
+        return myMembers.get(index);
+    }
+
+    @Override
+    Object getResult() {
+        return null;
+    }
+
+    @Override
+    boolean isWriteTask() {
+        return true;
+    }
+
+    @Override
+    synchronized Set<String> getTables() {
+        Set<String> tables = new HashSet<String>();
+        for (DatabaseNonQueryTask member : myMembers) {
+            Set<String> memberTables = member.getTables();
+            if (memberTables == null) {
+                return null;
+            }
+            tables.addAll(memberTables);
+        }
+        return tables;
+    }
+
+    @Override
+    void notifyStmtListeners(DatabaseException e) {
+        // each member is notified with it's own result once the group has been committed
+    }
+}
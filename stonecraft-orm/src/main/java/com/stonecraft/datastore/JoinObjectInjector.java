@@ -103,18 +103,25 @@ public class JoinObjectInjector extends ObjectInjector{
      */
     private <T> InjectedValue<T> injectObject(RSData data, Class<T> classOfT,
             @Nullable String tableName, @Nullable String foreignKey) throws DatabaseException {
+        RowMapper<T> mapper = getMapper(classOfT);
+        if(mapper != null) {
+            return injectMappedObject(data, classOfT, mapper, tableName, foreignKey);
+        }
+
         try {
             Field[] fields = getFields(classOfT);
+            ColumnBinding[] plan = getBindingPlan(data, tableName, classOfT);
             InjectedValue<T> injectObject = injectSubset(data, classOfT);
             boolean subsetsInjected = true;
             if(injectObject == null) {
                 subsetsInjected = false;
                 injectObject = new InjectedValue();
-                injectObject.rowData = classOfT.getConstructor().newInstance();
+                injectObject.rowData = getConstructor(classOfT).newInstance();
             }
 
             List<String> foreignKeyValues = new ArrayList<>();
-            for(Field field : fields) {
+            for(int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
                 if(!myFieldMonitor.wasFieldInjectedPreviously(injectObject, field)) {
                     Annotation annotation = getAnnotation(field);
                     T rowData = injectObject.rowData;
@@ -148,11 +155,9 @@ public class JoinObjectInjector extends ObjectInjector{
                         field.set(injectObject.rowData, subsetObject.rowData);
 
                     } else if (annotation instanceof DbColumnName) {
-                        DbColumnName injectAnnotation = (DbColumnName) annotation;
-                        String column = getColumnKey(tableName, injectAnnotation.value());
-                        injectValue(data, rowData, field, column);
-                        if (!TextUtils.isEmpty(foreignKey) && injectAnnotation.value().equals(
-                                foreignKey)) {
+                        ColumnBinding binding = plan[i];
+                        injectValue(data, rowData, binding);
+                        if (!TextUtils.isEmpty(foreignKey) && binding.column.equals(foreignKey)) {
                             Object fieldValue = field.get(injectObject.rowData);
                             if(fieldValue != null){
                                 injectObject.groupKeyValue = fieldValue.toString();
@@ -185,6 +190,36 @@ public class JoinObjectInjector extends ObjectInjector{
 
     }
 
+    /**
+     * This method creates an object from the current row with a generated mapper. Mappers are
+     * only generated for classes that don't contain any joined data, so there are no subsets to
+     * inject or track.
+     *
+     * @param data
+     * @param classOfT
+     * @param mapper
+     * @param tableName
+     * @param foreignKey
+     * @param <T>
+     * @return
+     * @throws DatabaseException
+     */
+    private <T> InjectedValue<T> injectMappedObject(RSData data, Class<T> classOfT,
+            RowMapper<T> mapper, @Nullable String tableName, @Nullable String foreignKey)
+            throws DatabaseException {
+        InjectedValue<T> injectObject = new InjectedValue<>();
+        injectObject.rowData = mapRow(mapper, data,
+                getColumnIndexes(data, tableName, classOfT, mapper));
+        if(!TextUtils.isEmpty(foreignKey)) {
+            int column = getColumnIndex(data, tableName, foreignKey);
+            if(column >= 0 && !data.containsNull(column)) {
+                injectObject.groupKeyValue = data.getStringValue(column);
+            }
+        }
+
+        return injectObject;
+    }
+
     private <T> void trackObjectByClass(Class<T> classOfT,
             InjectedValue<T> injectObject, List<String> foreignKeyValues) {
         String mapForeignKey = getForeignKey(foreignKeyValues);
@@ -244,7 +279,7 @@ public class JoinObjectInjector extends ObjectInjector{
         //a new object is now required as it will be used for the next group of foreign keys
         if(rootClassObject == null) {
             rootClassObject = new InjectedValue();
-            rootClassObject.rowData = rootClass.getConstructor().newInstance();
+            rootClassObject.rowData = getConstructor(rootClass).newInstance();
             trackObjectByClass(rootClass, rootClassObject, foreignKeyValues);
         }
 
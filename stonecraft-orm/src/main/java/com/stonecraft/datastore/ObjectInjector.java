@@ -11,10 +11,8 @@ import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interaction.Query;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,75 +26,64 @@ import java.util.Map;
  * @version Revision: 1.0
  */
 public abstract class ObjectInjector {
-
     private Query myQuery;
-    private Map<Class, Field[]> myClassFields;
-    protected Map<Field, Annotation> myAnnotations;
-    private Map<Field, Class> myListTypeClass;
+    private RSData myPlannedData;
+    private Map<Class, Map<String, ColumnBinding[]>> myBindingPlans;
+    private Map<Class, Map<String, int[]>> myMapperIndexes;
+    private Map<String, Map<String, Integer>> myColumnIndexes;
 
     public ObjectInjector(Query query) {
         myQuery = query;
-        myClassFields = new HashMap<>();
-        myAnnotations = new HashMap<>();
-        myListTypeClass = new HashMap<>();
+        myBindingPlans = new HashMap<>();
+        myMapperIndexes = new HashMap<>();
+        myColumnIndexes = new HashMap<>();
     }
 
     protected Class getTypeOfList(Field field) {
-        if(myListTypeClass.containsKey(field)) {
-            return myListTypeClass.get(field);
-        }
-
-        ParameterizedType stringListType = (ParameterizedType) field.getGenericType();
-        Class klass = (Class)stringListType.getActualTypeArguments()[0];
-        myListTypeClass.put(field, klass);
-
-        return klass;
+        return ClassMappingRegistry.getMapping(field.getDeclaringClass()).getListType(field);
     }
 
     /**
-     * This method attempts to get the annotation from a field in memory so that the annotation
-     * doesn't have to continually be read from the field using reflection.
+     * This method gets the annotation of a field from the class mapping of the class that
+     * declares it so that the annotation doesn't have to be read from the field using
+     * reflection.
      *
-     * This is for performance improvements.
      * @param field
      * @return
      */
     protected Annotation getAnnotation(Field field) {
-        if(myAnnotations.containsKey(field)) {
-            return myAnnotations.get(field);
-        }
-
-        Annotation[] annotations = field.getAnnotations();
-        for(Annotation annotation : annotations){
-            if(annotation instanceof DbTableGroup ||
-                    annotation instanceof DbTableName ||
-                    annotation instanceof DbColumnName) {
-                myAnnotations.put(field, annotation);
-                return annotation;
-            }
-        }
-
-        return null;
+        return ClassMappingRegistry.getMapping(field.getDeclaringClass()).getAnnotation(field);
     }
 
     /**
      * This method returns the fields found in the passed in class.
      *
-     * This method should be used to get the fields as it ensures the most efficient
-     * way to return the fields as it will cache the fields for later use.
+     * The fields come from the class mapping, which is shared by every injector, so they are
+     * only found once for each class. The returned array must not be modified.
      * @param klass
      * @return
      */
     protected Field[] getFields(Class klass) {
-        Field[] fields = null;
-        if(myClassFields.containsKey(klass)) {
-            fields = myClassFields.get(klass);
-        } else {
-            fields = DatabaseUtils.getFieldsFromClass(klass);
-            myClassFields.put(klass, fields);
-        }
+        return ClassMappingRegistry.getMapping(klass).getFields();
+    }
+
+    /**
+     * This method returns the no argument constructor of the passed in class from it's class
+     * mapping so that it isn't looked up for every row.
+     *
+     * @param klass
+     * @return
+     * @throws NoSuchMethodException
+     */
+    protected <T> Constructor<T> getConstructor(Class<T> klass) throws NoSuchMethodException {
+        return ClassMappingRegistry.getMapping(klass).getConstructor();
+    }
 
-        return fields;
+    /**
+     * @return the generated mapper of the passed in class or null if it doesn't have one
+     */
+    protected <T> RowMapper<T> getMapper(Class<T> klass) {
+        return ClassMappingRegistry.getMapping(klass).getMapper();
     }
 
     protected String getColumnKey(String table, String column) {
@@ -115,33 +102,213 @@ public abstract class ObjectInjector {
         return columnKey;
     }
 
-    protected <T> void injectValue(RSData data, T rowClass, Field field,
-            String column) throws IllegalAccessException, DatabaseException {
-        field.setAccessible(true);
-        Class fieldType = field.getType();
+    /**
+     * This method returns the binding plan of the passed in class for the passed in data. The
+     * plan holds the index in the data of each field's column, so it is only worked out once
+     * for each class and table rather than for every row. The plan is in the same order as
+     * {@link #getFields(Class)} with a null binding for each field that isn't a column.
+     *
+     * @param data
+     * @param table the table the class is injected from or null if it is the query's table
+     * @param klass
+     * @return
+     */
+    protected ColumnBinding[] getBindingPlan(RSData data, String table, Class klass) {
+        resetPlansIfDataChanged(data);
+        Map<String, ColumnBinding[]> plansByTable = myBindingPlans.get(klass);
+        if(plansByTable == null) {
+            plansByTable = new HashMap<>();
+            myBindingPlans.put(klass, plansByTable);
+        }
 
-        if(data.hasColumn(column) && !data.containsNull(column)) {
-            if(fieldType == Integer.TYPE || fieldType == Integer.class) {
+        ColumnBinding[] plan = plansByTable.get(table);
+        if(plan == null) {
+            ClassMapping mapping = ClassMappingRegistry.getMapping(klass);
+            Field[] fields = mapping.getFields();
+            plan = new ColumnBinding[fields.length];
+            for(int i = 0; i < fields.length; i++) {
+                Annotation annotation = mapping.getAnnotation(i);
+                if(annotation instanceof DbColumnName) {
+                    String column = ((DbColumnName)annotation).value();
+                    plan[i] = new ColumnBinding(fields[i], column, mapping.getBindingType(i),
+                            data.getColumnIndex(getColumnKey(table, column)));
+                }
+            }
+            plansByTable.put(table, plan);
+        }
+
+        return plan;
+    }
+
+    /**
+     * This method returns the index in the passed in data of each column of the passed in
+     * mapper. The indexes are only worked out once for each class and table rather than for
+     * every row.
+     *
+     * @param data
+     * @param table the table the class is injected from or null if it is the query's table
+     * @param klass
+     * @param mapper
+     * @return
+     */
+    protected int[] getColumnIndexes(RSData data, String table, Class klass, RowMapper mapper) {
+        resetPlansIfDataChanged(data);
+        Map<String, int[]> indexesByTable = myMapperIndexes.get(klass);
+        if(indexesByTable == null) {
+            indexesByTable = new HashMap<>();
+            myMapperIndexes.put(klass, indexesByTable);
+        }
+
+        int[] columnIndexes = indexesByTable.get(table);
+        if(columnIndexes == null) {
+            String[] columnNames = mapper.getColumnNames();
+            columnIndexes = new int[columnNames.length];
+            for(int i = 0; i < columnNames.length; i++) {
+                columnIndexes[i] = data.getColumnIndex(getColumnKey(table, columnNames[i]));
+            }
+            indexesByTable.put(table, columnIndexes);
+        }
+
+        return columnIndexes;
+    }
+
+    /**
+     * This method returns the index in the passed in data of a single column of the passed in
+     * table or -1 if the column isn't in the data.
+     *
+     * @param data
+     * @param table
+     * @param column
+     * @return
+     */
+    protected int getColumnIndex(RSData data, String table, String column) {
+        resetPlansIfDataChanged(data);
+        Map<String, Integer> indexesByColumn = myColumnIndexes.get(table);
+        if(indexesByColumn == null) {
+            indexesByColumn = new HashMap<>();
+            myColumnIndexes.put(table, indexesByColumn);
+        }
+
+        Integer columnIndex = indexesByColumn.get(column);
+        if(columnIndex == null) {
+            columnIndex = data.getColumnIndex(getColumnKey(table, column));
+            indexesByColumn.put(column, columnIndex);
+        }
+
+        return columnIndex;
+    }
+
+    /**
+     * The column indexes are only valid for the columns of the data they were resolved from,
+     * so they are discarded if this injector is passed different data.
+     */
+    private void resetPlansIfDataChanged(RSData data) {
+        if(myPlannedData != data) {
+            myPlannedData = data;
+            myBindingPlans.clear();
+            myMapperIndexes.clear();
+            myColumnIndexes.clear();
+        }
+    }
+
+    /**
+     * This method creates an object from the current row using a generated mapper.
+     *
+     * @param mapper
+     * @param data
+     * @param columnIndexes
+     * @return
+     * @throws DatabaseException
+     */
+    protected <T> T mapRow(RowMapper<T> mapper, RSData data, int[] columnIndexes)
+            throws DatabaseException {
+        try {
+            return mapper.map(data, columnIndexes);
+        } catch (RuntimeException e) {
+            throw new DatabaseException("Failed to create an instance of the class to be injected " +
+                    "with the data for this query", e);
+        }
+    }
+
+    /**
+     * This method sets the field of the passed in binding from the row the data is currently
+     * at. Primitive fields are set without boxing the value.
+     *
+     * @param data
+     * @param rowClass
+     * @param binding
+     * @throws IllegalAccessException
+     */
+    protected <T> void injectValue(RSData data, T rowClass, ColumnBinding binding)
+            throws IllegalAccessException {
+        int column = binding.columnIndex;
+        if(column < 0 || data.containsNull(column)) {
+            return;
+        }
+
+        Field field = binding.field;
+        switch (binding.type) {
+            case ClassMapping.BINDING_INT:
+                field.setInt(rowClass, data.getIntValue(column));
+                break;
+            case ClassMapping.BINDING_INTEGER:
                 field.set(rowClass, data.getIntValue(column));
-            } else if (fieldType == Boolean.TYPE || fieldType == Boolean.class) {
+                break;
+            case ClassMapping.BINDING_PRIMITIVE_BOOLEAN:
+                field.setBoolean(rowClass, data.getBooleanValue(column));
+                break;
+            case ClassMapping.BINDING_BOOLEAN:
                 field.set(rowClass, data.getBooleanValue(column));
-            } else if (fieldType == Double.TYPE || fieldType == Double.class) {
+                break;
+            case ClassMapping.BINDING_PRIMITIVE_DOUBLE:
+                field.setDouble(rowClass, data.getDoubleValue(column));
+                break;
+            case ClassMapping.BINDING_DOUBLE:
                 field.set(rowClass, data.getDoubleValue(column));
-            } else if (fieldType == Float.TYPE || fieldType == Float.class) {
-                    field.set(rowClass, data.getFloatValue(column));
-            } else if (fieldType == String.class) {
+                break;
+            case ClassMapping.BINDING_PRIMITIVE_FLOAT:
+                field.setFloat(rowClass, data.getFloatValue(column));
+                break;
+            case ClassMapping.BINDING_FLOAT:
+                field.set(rowClass, data.getFloatValue(column));
+                break;
+            case ClassMapping.BINDING_STRING:
                 field.set(rowClass, data.getStringValue(column));
-            } else if (fieldType == Calendar.class) {
+                break;
+            case ClassMapping.BINDING_CALENDAR:
                 field.set(rowClass, data.getCalendarValue(column));
-            } else if (fieldType == Date.class) {
+                break;
+            case ClassMapping.BINDING_DATE:
                 field.set(rowClass, data.getDateValue(column));
-            } else if (fieldType == Byte[].class) {
+                break;
+            case ClassMapping.BINDING_BLOB:
                 field.set(rowClass, data.getBlobData(column));
-            } else if (fieldType == Bitmap.class) {
+                break;
+            case ClassMapping.BINDING_BITMAP:
                 byte[] bmpData = data.getBlobData(column);
                 Bitmap bmp = BitmapFactory.decodeByteArray(bmpData, 0, bmpData.length);
                 field.set(rowClass, bmp);
-            }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * This class holds a field that is injected with a column and the index of the column in
+     * the data being injected.
+     */
+    protected static final class ColumnBinding {
+        final Field field;
+        final String column;
+        final int type;
+        final int columnIndex;
+
+        ColumnBinding(Field field, String column, int type, int columnIndex) {
+            this.field = field;
+            this.column = column;
+            this.type = type;
+            this.columnIndex = columnIndex;
         }
     }
 
@@ -17,4 +17,14 @@ public interface OnConnectionListener {
     void onClose();
 
     void closingAndCreatingNewConnection(String dbName);
+
+    /**
+     * This method is called after each chunk of rows is copied while a table is rebuilt for a
+     * schema change. It is called on the thread that opened the database.
+     *
+     * @param tableName
+     * @param copiedRows
+     * @param totalRows
+     */
+    void onMigrationProgress(String tableName, long copiedRows, long totalRows);
 }
@@ -7,7 +7,6 @@ import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interaction.Query;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 
 /**
@@ -27,7 +26,9 @@ public final class QueryObjectInjector extends ObjectInjector {
 
     /**
      * This method returns a list of injected classes that contains the data from the passed in
-     * data.
+     * data. If a RowMapper has been generated for the class it is used instead of reflection.
+     * The index of each column is resolved before the first row so that the rows are injected
+     * without looking up the columns by name.
      *
      * @param data
      * @param classOfT
@@ -36,12 +37,24 @@ public final class QueryObjectInjector extends ObjectInjector {
      */
     public <T> T[] inject(RSData data, Class<T> classOfT) throws DatabaseException{
         final T[] returnClasses = (T[]) Array.newInstance(classOfT, data.getCount());
+        RowMapper<T> mapper = getMapper(classOfT);
+        int[] columnIndexes = null;
+        ColumnBinding[] plan = null;
+        if(mapper != null) {
+            columnIndexes = getColumnIndexes(data, null, classOfT, mapper);
+        } else {
+            plan = getBindingPlan(data, null, classOfT);
+        }
 
         data.moveToFirst();
         int count = 0;
         while(!data.isAfterLast()) {
             T injectedRow = null;
-            injectedRow = getInjectedClass(data, classOfT);
+            if(mapper != null) {
+                injectedRow = mapRow(mapper, data, columnIndexes);
+            } else {
+                injectedRow = getInjectedClass(data, classOfT, plan);
+            }
 
             if(injectedRow != null) {
                 returnClasses[count] = injectedRow;
@@ -57,6 +70,7 @@ public final class QueryObjectInjector extends ObjectInjector {
      *  This method is used
      * @param data
      * @param classOfT
+     * @param plan the binding plan of the class for the data
      * @param <T>
      * @return
      * @throws DatabaseException
@@ -65,23 +79,14 @@ public final class QueryObjectInjector extends ObjectInjector {
      * @throws InvocationTargetException
      * @throws InstantiationException
      */
-    private <T> T getInjectedClass(RSData data, Class<T> classOfT)
+    private <T> T getInjectedClass(RSData data, Class<T> classOfT, ColumnBinding[] plan)
             throws DatabaseException {
         try {
-            Field[] fields = getFields(classOfT);
+            T rowClass = getConstructor(classOfT).newInstance();
 
-            T rowClass = classOfT.getConstructor().newInstance();
-
-            for(Field field : fields) {
-                DbColumnName annotation = (DbColumnName)myAnnotations.get(field);
-                if(annotation == null) {
-                    annotation = field.getAnnotation(DbColumnName.class);
-                    myAnnotations.put(field, annotation);
-                }
-                if(annotation != null){
-                    DbColumnName InjectAnnotation = (DbColumnName)annotation;
-                    String column = getColumnKey(null, InjectAnnotation.value());
-                    injectValue(data, rowClass, field, column);
+            for(ColumnBinding binding : plan) {
+                if(binding != null){
+                    injectValue(data, rowClass, binding);
                 }
             }
 
@@ -0,0 +1,143 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interaction.Query;
+import com.stonecraft.datastore.interfaces.IDBConnector;
+import com.stonecraft.datastore.interfaces.OnTableChangeListener;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * This class re-runs a query each time a table it reads from is changed and passes the result to
+ * a QueryObserver.
+ * <p/>
+ * Changes are conflated. If a change arrives while the query is queued or running, the query is
+ * run once more after it finishes no matter how many changes arrived in that time. A burst of
+ * writes therefore only causes one extra run of the query rather than one per write.
+ */
+class QueryObservation<T> implements QuerySubscription, OnTableChangeListener {
+    private final Datastore myDatastore;
+    private final IDBConnector myConnection;
+    private final Query myQuery;
+    private final Class<T> myResultClass;
+    private final QueryObserver<T> myObserver;
+    private final Set<String> myTables;
+    private DatastoreFuture<T[]> myRunningQuery;
+    private boolean myIsRequeryNeeded;
+    private boolean myIsSubscribed;
+
+    QueryObservation(Datastore datastore, Query query, Class<T> resultClass,
+                     QueryObserver<T> observer) {
+        myDatastore = datastore;
+        myConnection = datastore.getActiveDatabase();
+        myQuery = query;
+        myResultClass = resultClass;
+        myObserver = observer;
+        myTables = DatabaseQueryTask.getQueryTables(query);
+    }
+
+    /**
+     * This method starts listening for changes and runs the query for the first time.
+     */
+    void subscribe() {
+        synchronized (this) {
+            myIsSubscribed = true;
+        }
+        myConnection.addTableChangeListener(this);
+        runQuery();
+    }
+
+    @Override
+    public void unsubscribe() {
+        DatastoreFuture<T[]> runningQuery;
+        synchronized (this) {
+            if (!myIsSubscribed) {
+                return;
+            }
+            myIsSubscribed = false;
+            runningQuery = myRunningQuery;
+            myRunningQuery = null;
+        }
+
+        myConnection.removeTableChangeListener(this);
+        if (runningQuery != null) {
+            runningQuery.cancel(false);
+        }
+    }
+
+    @Override
+    public synchronized boolean isSubscribed() {
+        return myIsSubscribed;
+    }
+
+    @Override
+    public void onTableChanged(String tableName) {
+        synchronized (this) {
+            if (!myIsSubscribed || (myTables != null && tableName != null
+                    && !myTables.contains(tableName.toLowerCase(Locale.US)))) {
+                return;
+            }
+
+            if (myRunningQuery != null) {
+                myIsRequeryNeeded = true;
+                return;
+            }
+        }
+        runQuery();
+    }
+
+    private void runQuery() {
+        final DatastoreFuture<T[]> future = myDatastore.executeQueryAsync(myQuery, myResultClass);
+        synchronized (this) {
+            if (!myIsSubscribed) {
+                future.cancel(false);
+                return;
+            }
+            myIsRequeryNeeded = false;
+            myRunningQuery = future;
+        }
+
+        future.addCallback(new DatastoreFuture.Callback<T[]>() {
+            @Override
+            public void onSuccess(T[] result) {
+                onQueryFinished(future, result, null);
+            }
+
+            @Override
+            public void onFailure(DatabaseException e) {
+                onQueryFinished(future, null, e);
+            }
+        });
+    }
+
+    private void onQueryFinished(DatastoreFuture<T[]> future, final T[] result,
+                                 final DatabaseException error) {
+        boolean isRequeryNeeded;
+        synchronized (this) {
+            if (!myIsSubscribed || myRunningQuery != future) {
+                return;
+            }
+            myRunningQuery = null;
+            isRequeryNeeded = myIsRequeryNeeded;
+        }
+
+        myDatastore.getTaskScheduler().deliverResult(new Runnable() {
+            @Override
+            public void run() {
+                if (!isSubscribed()) {
+                    return;
+                }
+                if (error != null) {
+                    myObserver.onQueryFailed(error);
+                } else {
+                    myObserver.onQueryResult(result);
+                }
+            }
+        });
+
+        if (isRequeryNeeded) {
+            runQuery();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+/**
+ * This interface is used with Datastore.observeQuery() to receive the result of a query each
+ * time one of the tables it reads from changes. Both methods are called on the main thread.
+ */
+public interface QueryObserver<T> {
+
+    /**
+     * This method is called with the first result of the query and again each time the query is
+     * re-run after a change.
+     *
+     * @param resultSet
+     */
+    void onQueryResult(T[] resultSet);
+
+    /**
+     * This method is called when running the query fails. The query will still be re-run on the
+     * next change.
+     *
+     * @param e
+     */
+    void onQueryFailed(DatabaseException e);
+}
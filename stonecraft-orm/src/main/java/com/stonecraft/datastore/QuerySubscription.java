@@ -0,0 +1,16 @@
+package com.stonecraft.datastore;
+
+/**
+ * This interface is returned from Datastore.observeQuery(). The query is re-run whenever one of
+ * it's tables changes until unsubscribe() is called.
+ */
+public interface QuerySubscription {
+
+    /**
+     * This method stops the query from being re-run and cancels the query if it is running.
+     * The observer will not be notified after this method has been called.
+     */
+    void unsubscribe();
+
+    boolean isSubscribed();
+}
@@ -145,6 +145,89 @@ public interface RSData extends Iterator<RSData> {
 	 */
 	public byte[] getBlobData(String column) throws DatabaseException;
 
+	/**
+	 * Returns the value of the column at the passed in index as a string. The index based
+	 * methods should be used when the same columns are read from every row, as the index can be
+	 * resolved once with {@link #getColumnIndex(String)} rather than being looked up by name
+	 * for every value.
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public String getStringValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a boolean
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public boolean getBooleanValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as an integer
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public int getIntValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a long
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public long getLongValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a double
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public double getDoubleValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a float
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public float getFloatValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a Date object
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public Date getDateValue(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a Calendar object
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public Calendar getCalendarValue(int columnIndex);
+
+	/**
+	 * This method returns whether the column at the passed in index contains a null value.
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public boolean containsNull(int columnIndex);
+
+	/**
+	 * Returns the value of the column at the passed in index as a byte array
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public byte[] getBlobData(int columnIndex);
+
 	/**
 	 * This method moves the position of this cursor to the first record
 	 */
@@ -169,6 +252,15 @@ public interface RSData extends Iterator<RSData> {
 	 */
 	public boolean hasColumn(String columnName);
 
+	/**
+	 * This method returns the index of the passed in column in this object or -1 if this
+	 * object doesn't contain the column.
+	 *
+	 * @param columnName
+	 * @return
+	 */
+	public int getColumnIndex(String columnName);
+
 	/**
 	 * This method checks if the underlying Data source has been closed.
 	 *
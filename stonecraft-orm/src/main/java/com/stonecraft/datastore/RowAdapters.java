@@ -0,0 +1,73 @@
+package com.stonecraft.datastore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class finds the RowMapper and RowBinder generated for a class. The generated classes are
+ * in the same package as the class they were generated for and are named after it, with the
+ * names of any enclosing classes separated by an underscore (eg. Outer_Inner_RowMapper). Each
+ * lookup is cached, including when there is no generated class, so reflection is only used to
+ * find them once per class.
+ */
+final class RowAdapters {
+    private static final String MAPPER_SUFFIX = "_RowMapper";
+    private static final String BINDER_SUFFIX = "_RowBinder";
+    private static final Object NONE = new Object();
+
+    private static final Map<Class, Object> myMappers = new ConcurrentHashMap<Class, Object>();
+    private static final Map<Class, Object> myBinders = new ConcurrentHashMap<Class, Object>();
+
+    private RowAdapters() {
+    }
+
+    /**
+     * @return the generated mapper for the passed in class or null if there isn't one
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> getMapper(Class<T> klass) {
+        Object mapper = myMappers.get(klass);
+        if (mapper == null) {
+            mapper = find(klass, MAPPER_SUFFIX, RowMapper.class);
+            myMappers.put(klass, mapper);
+        }
+        return mapper == NONE ? null : (RowMapper<T>)mapper;
+    }
+
+    /**
+     * @return the generated binder for the passed in class or null if there isn't one
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RowBinder<T> getBinder(Class<T> klass) {
+        Object binder = myBinders.get(klass);
+        if (binder == null) {
+            binder = find(klass, BINDER_SUFFIX, RowBinder.class);
+            myBinders.put(klass, binder);
+        }
+        return binder == NONE ? null : (RowBinder<T>)binder;
+    }
+
+    private static Object find(Class klass, String suffix, Class adapterType) {
+        if (klass.isAnonymousClass() || klass.isLocalClass() || klass.isArray()
+                || klass.isPrimitive()) {
+            return NONE;
+        }
+
+        String name = klass.getName();
+        int packageEnd = name.lastIndexOf('.');
+        String adapterName = name.substring(0, packageEnd + 1)
+                + name.substring(packageEnd + 1).replace('$', '_') + suffix;
+        try {
+            Class<?> adapterClass = Class.forName(adapterName, true, klass.getClassLoader());
+            if (adapterType.isAssignableFrom(adapterClass)) {
+                return adapterClass.newInstance();
+            }
+        } catch (ClassNotFoundException e) {
+            // the class wasn't processed so reflection is used
+        } catch (InstantiationException | IllegalAccessException e) {
+            // the class can't be used so reflection is used
+        }
+
+        return NONE;
+    }
+}
@@ -0,0 +1,21 @@
+package com.stonecraft.datastore;
+
+import java.util.List;
+
+/**
+ * This interface reads the values of an object's annotated fields without using reflection so
+ * they can be inserted or updated. Binders are generated by the stonecraft-orm-compiler as
+ * &lt;Class&gt;_RowBinder for each class with fields annotated with {@link DbColumnName}, and
+ * are used by {@link ContentValueCreator} in place of reflection when they exist.
+ */
+public interface RowBinder<T> {
+    /**
+     * This method adds the column name and value of each annotated field of the passed in
+     * object that isn't null or query only to the passed in lists.
+     *
+     * @param object
+     * @param columns
+     * @param values
+     */
+    void getColumnValues(T object, List<String> columns, List<Object> values);
+}
@@ -0,0 +1,30 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+/**
+ * This interface creates an object from the current row of a query's result without using
+ * reflection. Mappers are generated by the stonecraft-orm-compiler as
+ * &lt;Class&gt;_RowMapper for each class with fields annotated with {@link DbColumnName}, and
+ * are used by the object injectors in place of reflection when they exist.
+ */
+public interface RowMapper<T> {
+    /**
+     * @return the column names of the annotated fields in the order their indexes are passed to
+     * {@link #map(RSData, int[])}
+     */
+    String[] getColumnNames();
+
+    /**
+     * This method creates an object from the row the passed in data is currently at. A field
+     * whose column isn't in the data or is null is left as it's default value.
+     *
+     * @param data
+     * @param columnIndexes the index of each column in the data, or -1 if the column isn't in
+     *                      the data, in the same order as {@link #getColumnNames()}. The indexes
+     *                      are resolved once for each result set rather than for every row.
+     * @return
+     * @throws DatabaseException
+     */
+    T map(RSData data, int[] columnIndexes) throws DatabaseException;
+}
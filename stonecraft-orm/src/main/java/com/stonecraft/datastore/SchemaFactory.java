@@ -0,0 +1,12 @@
+package com.stonecraft.datastore;
+
+/**
+ * This interface creates a DbSchemaModel without parsing a schema xml. It is implemented by the
+ * factories the stonecraft-orm-compiler generates for classes annotated with {@link DbSchema}.
+ */
+public interface SchemaFactory {
+    /**
+     * @return a new instance of the schema
+     */
+    DbSchemaModel createSchema();
+}
@@ -0,0 +1,96 @@
+package com.stonecraft.datastore;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the most recently used compiled statements of a connection so that the SQL
+ * of an insert, update or delete doesn't need to be generated and compiled again for every row.
+ * <p/>
+ * Statements are keyed by their SQL, which is made up of the table, the columns being set and
+ * the conflict algorithm. When the cache is full the least recently used statement is closed.
+ * <p/>
+ * A reference is acquired on each statement returned by get() so that it isn't closed by the
+ * cache while it is being used. Callers must call releaseReference() once they have finished
+ * with the statement. A compiled statement also holds it's bound values, so callers must
+ * synchronize on the statement while they bind and execute it.
+ */
+class StatementCache {
+    static final int DEFAULT_MAX_SIZE = 25;
+
+    private final int myMaxSize;
+    private final LinkedHashMap<String, SQLiteStatement> myStatements;
+    private SQLiteDatabase myDatabase;
+    private long myHitCount;
+    private long myMissCount;
+
+    StatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    StatementCache(int maxSize) {
+        myMaxSize = maxSize;
+        myStatements = new LinkedHashMap<String, SQLiteStatement>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > myMaxSize) {
+                    closeStatement(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * This method returns the compiled statement for the passed in SQL, compiling it if it isn't
+     * in the cache. If the passed in database isn't the one the cached statements were compiled
+     * with (eg. the database has been reopened) the cache is cleared first.
+     *
+     * @param db
+     * @param sql
+     * @return
+     */
+    synchronized SQLiteStatement get(SQLiteDatabase db, String sql) {
+        if (myDatabase != db) {
+            clear();
+            myDatabase = db;
+        }
+
+        SQLiteStatement stmt = myStatements.get(sql);
+        if (stmt != null) {
+            myHitCount++;
+        } else {
+            myMissCount++;
+            stmt = db.compileStatement(sql);
+            myStatements.put(sql, stmt);
+        }
+        stmt.acquireReference();
+        return stmt;
+    }
+
+    /**
+     * This method closes and removes all statements in the cache. This must be called when the
+     * schema of the database changes or the database is closed.
+     */
+    synchronized void clear() {
+        for (SQLiteStatement stmt : myStatements.values()) {
+            closeStatement(stmt);
+        }
+        myStatements.clear();
+        myDatabase = null;
+    }
+
+    synchronized StatementCacheStats getStats() {
+        return new StatementCacheStats(myHitCount, myMissCount, myStatements.size(), myMaxSize);
+    }
+
+    private static void closeStatement(SQLiteStatement stmt) {
+        // releases the cache's reference. The statement stays open until any thread that is
+        // using it has released it's reference
+        stmt.close();
+    }
+}
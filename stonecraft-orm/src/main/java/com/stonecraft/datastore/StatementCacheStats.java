@@ -0,0 +1,52 @@
+package com.stonecraft.datastore;
+
+/**
+ * This class holds a snapshot of how well a connection's compiled statement cache is working.
+ * A low hit count compared to the miss count means the statements being run don't repeat
+ * often enough to be reused, eg. when the where clause of each update contains it's values
+ * rather than using arguments.
+ */
+public class StatementCacheStats {
+    private final long myHitCount;
+    private final long myMissCount;
+    private final int mySize;
+    private final int myMaxSize;
+
+    StatementCacheStats(long hitCount, long missCount, int size, int maxSize) {
+        myHitCount = hitCount;
+        myMissCount = missCount;
+        mySize = size;
+        myMaxSize = maxSize;
+    }
+
+    /**
+     * @return the number of statements that were found in the cache.
+     */
+    public long getHitCount() {
+        return myHitCount;
+    }
+
+    /**
+     * @return the number of statements that had to be compiled.
+     */
+    public long getMissCount() {
+        return myMissCount;
+    }
+
+    /**
+     * @return the number of statements currently in the cache.
+     */
+    public int getSize() {
+        return mySize;
+    }
+
+    public int getMaxSize() {
+        return myMaxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCacheStats[hits=" + myHitCount + ", misses=" + myMissCount
+                + ", size=" + mySize + "/" + myMaxSize + "]";
+    }
+}
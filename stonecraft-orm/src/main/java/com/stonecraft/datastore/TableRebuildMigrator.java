@@ -0,0 +1,300 @@
+package com.stonecraft.datastore;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interaction.Delete;
+import com.stonecraft.datastore.interaction.Insert;
+import com.stonecraft.datastore.interaction.Query;
+import com.stonecraft.datastore.interaction.RawStatement;
+import com.stonecraft.datastore.interfaces.IDBConnector;
+import com.stonecraft.datastore.utils.StringUtils;
+import com.stonecraft.datastore.view.DatabaseIndex;
+import com.stonecraft.datastore.view.DatabaseTable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class rebuilds tables whose changes can't be made to the existing table.
+ * <p/>
+ * When the database is upgraded a shadow table is created with the new definition and the
+ * rebuild is recorded in the schema settings table. The rows are then copied into the shadow
+ * table in chunks, ordered by rowid, each chunk in it's own transaction along with the rowid it
+ * copied up to. This keeps each transaction and the journal small, and if the app is killed the
+ * copy carries on from the last chunk the next time the database is opened. Once every row has
+ * been copied the old table is dropped and the shadow table renamed in a single transaction.
+ * <p/>
+ * The copy runs when the database is opened, after the upgrade's transaction has been committed
+ * and before the connection is used, so rows can't be changed in the old table while it is
+ * being copied. If the database is upgraded again before a rebuild has finished the rebuild is
+ * started again with the newer definition.
+ * <p/>
+ * The schema hash isn't stored by an upgrade that schedules a rebuild. It is stored along with
+ * the swap of the last table, so the checks made when the database is opened can be skipped
+ * while the stored hash matches the schema.
+ */
+class TableRebuildMigrator {
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private static final String STATEMENT_DROP_TABLE_IF_EXISTS = "DROP TABLE IF EXISTS %s";
+    private static final String STATEMENT_DROP_TABLE = "DROP TABLE %s";
+    private static final String STATEMENT_RENAME_TABLE = "ALTER TABLE %s RENAME TO %s";
+    private static final String STATEMENT_COPY_CHUNK = "INSERT INTO %s (%s) SELECT %s FROM %s "
+            + "WHERE rowid > %d AND rowid <= %d";
+    private static final String QUERY_CHUNK = "SELECT COUNT(*), MAX(row_id) FROM "
+            + "(SELECT rowid AS row_id FROM %s WHERE rowid > %d ORDER BY rowid LIMIT %d)";
+    private static final String QUERY_ROW_COUNT = "SELECT COUNT(*) FROM %s";
+    private static final String QUERY_TABLE_INFO = "PRAGMA table_info(%s)";
+    private static final String COL_NAME = "name";
+    private static final String QUERY_PENDING_REBUILDS = "SELECT " + DBConstants.COLUMN_TYPE
+            + ", " + DBConstants.COLUMN_VALUE + " FROM " + DBConstants.TABLE_SCHEMA_SETTINGS
+            + " WHERE " + DBConstants.COLUMN_TYPE + " LIKE '"
+            + DBConstants.SCHEMA_SETTINGS_TYPE_REBUILD_PREFIX + "%'";
+    private static final String STATEMENT_UPDATE_PROGRESS = "UPDATE "
+            + DBConstants.TABLE_SCHEMA_SETTINGS + " SET " + DBConstants.COLUMN_VALUE + " = ? WHERE "
+            + DBConstants.COLUMN_TYPE + " = ?";
+    private static final String STATEMENT_DELETE_SETTING = "DELETE FROM "
+            + DBConstants.TABLE_SCHEMA_SETTINGS + " WHERE " + DBConstants.COLUMN_TYPE + " = ?";
+    private static final String STATEMENT_INSERT_SETTING = "INSERT INTO "
+            + DBConstants.TABLE_SCHEMA_SETTINGS + " (" + DBConstants.COLUMN_TYPE + ", "
+            + DBConstants.COLUMN_VALUE + ") VALUES (?, ?)";
+
+    private final SQLiteDatabase myDatabase;
+    private final DbSchemaModel mySchema;
+    private final OnConnectionListener myListener;
+    private final int myChunkSize;
+
+    /**
+     * @param database
+     * @param schema the schema the rebuilt tables' indexes are created from, or null if the
+     *               indexes are left for the schema update to create
+     * @param listener the listener progress is reported to or null
+     */
+    TableRebuildMigrator(SQLiteDatabase database, DbSchemaModel schema,
+                         OnConnectionListener listener) {
+        this(database, schema, listener, DEFAULT_CHUNK_SIZE);
+    }
+
+    TableRebuildMigrator(SQLiteDatabase database, DbSchemaModel schema,
+                         OnConnectionListener listener, int chunkSize) {
+        myDatabase = database;
+        mySchema = schema;
+        myListener = listener;
+        myChunkSize = chunkSize;
+    }
+
+    /**
+     * This method adds the statements that start the rebuild of the passed in table to the
+     * transaction. The shadow table is created with the new definition and the rebuild is
+     * recorded so that it is carried out the next time the database is opened.
+     *
+     * @param txn
+     * @param newTable
+     * @throws DatabaseException
+     */
+    static void scheduleRebuild(DatastoreTransaction txn, DatabaseTable newTable)
+            throws DatabaseException {
+        String shadowTable = DatabaseTable.getTempTableName(newTable.getName());
+        newTable.setTempTable(true);
+        String createStatement = newTable.getCreateTableStmt();
+        newTable.setTempTable(false);
+
+        // a shadow table may have been left by an earlier upgrade that failed
+        txn.addStatement(new RawStatement(newTable.getName(),
+                String.format(STATEMENT_DROP_TABLE_IF_EXISTS, shadowTable)));
+        txn.addStatement(new RawStatement(newTable.getName(), createStatement));
+
+        String progressType = getProgressType(newTable.getName());
+        txn.addStatement(new Delete(DBConstants.TABLE_SCHEMA_SETTINGS,
+                DBConstants.COLUMN_TYPE + " = '" + progressType + "'", null));
+        SettingsTable settingsTable = new SettingsTable();
+        settingsTable.setType(progressType);
+        settingsTable.setValue(String.valueOf(Long.MIN_VALUE));
+        txn.addStatement(new Insert<SettingsTable>(DBConstants.TABLE_SCHEMA_SETTINGS,
+                settingsTable));
+    }
+
+    /**
+     * @return the names of the tables whose rebuild hasn't finished.
+     * @throws DatabaseException
+     */
+    static List<String> getPendingRebuildTables(IDBConnector connector)
+            throws DatabaseException {
+        Query query = new Query(DBConstants.TABLE_SCHEMA_SETTINGS)
+                .whereClause(DBConstants.COLUMN_TYPE + " LIKE ?")
+                .addArgument(DBConstants.SCHEMA_SETTINGS_TYPE_REBUILD_PREFIX + "%");
+        List<String> tables = new ArrayList<String>();
+        RSData data = connector.query(query);
+        try {
+            data.moveToFirst();
+            while (!data.isAfterLast()) {
+                tables.add(data.getStringValue(DBConstants.COLUMN_TYPE).substring(
+                        DBConstants.SCHEMA_SETTINGS_TYPE_REBUILD_PREFIX.length()));
+                data.next();
+            }
+        } finally {
+            data.close();
+        }
+
+        return tables;
+    }
+
+    /**
+     * This method carries out every rebuild that hasn't finished. It must not be called inside
+     * a transaction, otherwise the chunks aren't committed until that transaction is.
+     */
+    void rebuildPendingTables() {
+        Map<String, Long> pendingRebuilds = getPendingRebuilds();
+        int remaining = pendingRebuilds.size();
+        for (Map.Entry<String, Long> rebuild : pendingRebuilds.entrySet()) {
+            remaining--;
+            rebuildTable(rebuild.getKey(), rebuild.getValue(), remaining == 0);
+        }
+    }
+
+    private void rebuildTable(String tableName, long lastRowId, boolean isLastRebuild) {
+        String shadowTable = DatabaseTable.getTempTableName(tableName);
+        String progressType = getProgressType(tableName);
+        String columns = StringUtils.convertListToDelimitedString(
+                getCommonColumns(tableName, shadowTable), StringUtils.COMMA);
+        long totalRows = queryLong(String.format(QUERY_ROW_COUNT, tableName));
+        long copiedRows = queryLong(String.format(QUERY_ROW_COUNT, shadowTable));
+        Log.i(TableRebuildMigrator.class.getSimpleName(), "Rebuilding table " + tableName
+                + " from row " + copiedRows + " of " + totalRows);
+
+        while (true) {
+            long chunkRows;
+            long chunkEndRowId;
+            myDatabase.beginTransactionNonExclusive();
+            try {
+                Cursor cursor = myDatabase.rawQuery(String.format(QUERY_CHUNK, tableName,
+                        lastRowId, myChunkSize), null);
+                try {
+                    cursor.moveToFirst();
+                    chunkRows = cursor.getLong(0);
+                    chunkEndRowId = cursor.getLong(1);
+                } finally {
+                    cursor.close();
+                }
+
+                if (chunkRows > 0) {
+                    myDatabase.execSQL(String.format(STATEMENT_COPY_CHUNK, shadowTable, columns,
+                            columns, tableName, lastRowId, chunkEndRowId));
+                    myDatabase.execSQL(STATEMENT_UPDATE_PROGRESS,
+                            new Object[]{String.valueOf(chunkEndRowId), progressType});
+                }
+                myDatabase.setTransactionSuccessful();
+            } finally {
+                myDatabase.endTransaction();
+            }
+
+            if (chunkRows == 0) {
+                break;
+            }
+            lastRowId = chunkEndRowId;
+            copiedRows += chunkRows;
+            if (myListener != null) {
+                myListener.onMigrationProgress(tableName, copiedRows, totalRows);
+            }
+        }
+
+        swapTables(tableName, shadowTable, progressType, isLastRebuild);
+        Log.i(TableRebuildMigrator.class.getSimpleName(), "Rebuilt table " + tableName);
+    }
+
+    /**
+     * This method replaces the old table with the shadow table and creates the table's indexes
+     * on it. When it is the last rebuild the schema hash is stored in the same transaction.
+     */
+    private void swapTables(String tableName, String shadowTable, String progressType,
+                            boolean isLastRebuild) {
+        myDatabase.beginTransactionNonExclusive();
+        try {
+            myDatabase.execSQL(String.format(STATEMENT_DROP_TABLE, tableName));
+            myDatabase.execSQL(String.format(STATEMENT_RENAME_TABLE, shadowTable, tableName));
+            DatabaseTable newTable = mySchema == null ? null : mySchema.getTable(tableName);
+            if (newTable != null) {
+                for (DatabaseIndex index : newTable.getIndexes().values()) {
+                    myDatabase.execSQL(index.getCreateIndexStmt());
+                }
+            }
+            myDatabase.execSQL(STATEMENT_DELETE_SETTING, new Object[]{progressType});
+            if (isLastRebuild && mySchema != null) {
+                myDatabase.execSQL(STATEMENT_DELETE_SETTING,
+                        new Object[]{DBConstants.SCHEMA_SETTINGS_TYPE_SCHEMA_HASH});
+                myDatabase.execSQL(STATEMENT_INSERT_SETTING, new Object[]{
+                        DBConstants.SCHEMA_SETTINGS_TYPE_SCHEMA_HASH, mySchema.getSchemaHash()});
+            }
+            myDatabase.setTransactionSuccessful();
+        } finally {
+            myDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * @return the rowid each unfinished rebuild has copied up to keyed by table name.
+     */
+    private Map<String, Long> getPendingRebuilds() {
+        Map<String, Long> rebuilds = new LinkedHashMap<String, Long>();
+        Cursor cursor = myDatabase.rawQuery(QUERY_PENDING_REBUILDS, null);
+        try {
+            while (cursor.moveToNext()) {
+                String tableName = cursor.getString(0).substring(
+                        DBConstants.SCHEMA_SETTINGS_TYPE_REBUILD_PREFIX.length());
+                rebuilds.put(tableName, Long.parseLong(cursor.getString(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return rebuilds;
+    }
+
+    /**
+     * @return the columns that are in both tables. Only these columns are copied.
+     */
+    private List<String> getCommonColumns(String tableName, String shadowTable) {
+        List<String> shadowColumns = getColumns(shadowTable);
+        List<String> columns = new ArrayList<String>();
+        for (String column : getColumns(tableName)) {
+            if (shadowColumns.contains(column)) {
+                columns.add(column);
+            }
+        }
+
+        return columns;
+    }
+
+    private List<String> getColumns(String tableName) {
+        List<String> columns = new ArrayList<String>();
+        Cursor cursor = myDatabase.rawQuery(String.format(QUERY_TABLE_INFO, tableName), null);
+        try {
+            int nameIndex = cursor.getColumnIndex(COL_NAME);
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return columns;
+    }
+
+    private long queryLong(String query) {
+        Cursor cursor = myDatabase.rawQuery(query, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String getProgressType(String tableName) {
+        return DBConstants.SCHEMA_SETTINGS_TYPE_REBUILD_PREFIX + tableName;
+    }
+}
@@ -0,0 +1,43 @@
+package com.stonecraft.datastore;
+
+/**
+ * This class is returned when a query is executed on a Datastore so that the query can be
+ * cancelled once the result is no longer needed.
+ * <p/>
+ * If the task is still waiting in the connection's queue it is removed from the queue. If it is
+ * already running on the database the query is interrupted. Once a task has been cancelled the
+ * listener passed in with the query will not be notified. A task that writes to the database
+ * can only be cancelled while it is still in the queue.
+ */
+public class TaskHandle {
+    private final DatabaseTask myTask;
+
+    TaskHandle(DatabaseTask task) {
+        myTask = task;
+    }
+
+    /**
+     * This method cancels the task. Calling this method once the task has finished, or once a
+     * write has left the queue, has no effect.
+     *
+     * @return false if the task had already finished or could no longer be cancelled, true
+     * otherwise.
+     */
+    public boolean cancel() {
+        return myTask.cancel();
+    }
+
+    /**
+     * @return true if cancel() has been called before the task finished.
+     */
+    public boolean isCancelled() {
+        return myTask.isCancelled();
+    }
+
+    /**
+     * @return the token the task was executed with.
+     */
+    public int getToken() {
+        return myTask.getToken();
+    }
+}
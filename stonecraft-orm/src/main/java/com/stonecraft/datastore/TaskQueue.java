@@ -0,0 +1,280 @@
+package com.stonecraft.datastore;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class holds the queued tasks of a single database connection. Each connection owns it's
+ * own queue so a long running task on one database does not hold up the tasks queued on
+ * another database.
+ * <p/>
+ * A task is started as soon as no running task and no task queued ahead of it conflicts with it
+ * (see {@link DatabaseTask#conflictsWith(DatabaseTask)}). This means a read only waits for
+ * writes to the tables it reads from that were queued before it, while reads of unrelated
+ * tables are started straight away. Only one write task is passed to the scheduler at a time so
+ * that waiting writes can still be reordered by priority.
+ * <p/>
+ * Priority only reorders tasks that don't conflict with each other. Of the tasks that are
+ * ready to start, those with a higher priority are started first, but a task is never started
+ * ahead of an earlier task it conflicts with, whatever their priorities. To stop background
+ * tasks from being starved, a task that has waited longer than STARVATION_TIMEOUT_MILLIS is
+ * treated as if it has the highest priority.
+ * <p/>
+ * Tasks are passed to the scheduler after the queue's lock has been released, so a scheduler
+ * that runs tasks on the calling thread doesn't run them while holding the lock.
+ * <p/>
+ * When group commit is enabled with setGroupCommit(), a non query task that is ready to start
+ * is run in a GroupCommitTask, which also runs the non query tasks queued behind it inside the
+ * same SQLite transaction.
+ */
+class TaskQueue {
+    static final long STARVATION_TIMEOUT_MILLIS = 5000;
+
+    private final ArrayDeque<DatabaseTask> myPendingTasks;
+    private final List<DatabaseTask> myRunningTasks;
+    private int myMaxGroupTasks;
+    private long myGroupWindowMillis;
+
+    TaskQueue() {
+        myPendingTasks = new ArrayDeque<DatabaseTask>();
+        myRunningTasks = new ArrayList<DatabaseTask>();
+        myMaxGroupTasks = 1;
+    }
+
+    /**
+     * This method sets how many queued non query tasks can be run in a single transaction.
+     *
+     * @param maxTasks the most tasks that are run in one transaction. 1 or less turns group
+     *                 commit off.
+     * @param windowMillis how long a group keeps taking tasks that are added to the queue after
+     *                     it has started.
+     */
+    synchronized void setGroupCommit(int maxTasks, long windowMillis) {
+        myMaxGroupTasks = Math.max(1, maxTasks);
+        myGroupWindowMillis = Math.max(0, windowMillis);
+    }
+
+    /**
+     * This method adds a task to the end of the queue. If the task doesn't conflict with any
+     * task that is running or queued ahead of it, it will be started immediately.
+     *
+     * @param task
+     */
+    void add(DatabaseTask task) {
+        List<DatabaseTask> readyTasks;
+        synchronized (this) {
+            task.setTaskQueue(this, now());
+            myPendingTasks.addLast(task);
+            readyTasks = takeReadyTasks();
+            // wakes up a group that is waiting for more tasks
+            notifyAll();
+        }
+        execute(readyTasks);
+    }
+
+    /**
+     * This method is called by a task once it has finished running so that any tasks that were
+     * waiting on it can be started.
+     *
+     * @param task
+     */
+    void onTaskFinished(DatabaseTask task) {
+        List<DatabaseTask> readyTasks = null;
+        synchronized (this) {
+            if (myRunningTasks.remove(task)) {
+                readyTasks = takeReadyTasks();
+            }
+        }
+        execute(readyTasks);
+    }
+
+    /**
+     * This method removes a task that has not been started from the queue.
+     *
+     * @param task
+     * @return true if the task was waiting in the queue and has been removed.
+     */
+    boolean remove(DatabaseTask task) {
+        List<DatabaseTask> readyTasks;
+        synchronized (this) {
+            if (!myPendingTasks.remove(task)) {
+                return false;
+            }
+            // tasks that were waiting behind the removed task may now be able to start
+            readyTasks = takeReadyTasks();
+        }
+        execute(readyTasks);
+        return true;
+    }
+
+    /**
+     * This method moves the pending tasks that can be started into the running tasks. It must
+     * be called while holding the lock, and the returned tasks executed once it is released.
+     *
+     * @return the tasks to execute
+     */
+    private List<DatabaseTask> takeReadyTasks() {
+        List<DatabaseTask> readyTasks = new ArrayList<DatabaseTask>();
+        if (myPendingTasks.isEmpty()) {
+            return readyTasks;
+        }
+
+        boolean isWriteRunning = isWriteRunning();
+        for (DatabaseTask task : getTasksInPriorityOrder()) {
+            if ((task.isWriteTask() && isWriteRunning)
+                    || hasConflict(task, myRunningTasks)
+                    || hasConflictWithEarlierTask(task)) {
+                continue;
+            }
+
+            myPendingTasks.remove(task);
+            if (myMaxGroupTasks > 1 && task instanceof DatabaseNonQueryTask) {
+                task.markRunning();
+                task = new GroupCommitTask((DatabaseNonQueryTask) task, myMaxGroupTasks,
+                        myGroupWindowMillis);
+                task.setTaskQueue(this, now());
+            }
+            myRunningTasks.add(task);
+            readyTasks.add(task);
+            isWriteRunning |= task.isWriteTask();
+        }
+
+        return readyTasks;
+    }
+
+    private static void execute(List<DatabaseTask> tasks) {
+        if (tasks == null) {
+            return;
+        }
+        for (DatabaseTask task : tasks) {
+            task.execute();
+        }
+    }
+
+    /**
+     * This method moves pending non query tasks into a running group. A task is only taken if
+     * no earlier task that is still pending conflicts with it, so tasks that conflict still run
+     * in the order they were added. If no task can be taken this method waits until the deadline for
+     * one to be added.
+     *
+     * @param group
+     * @param maxTasks the most tasks to take
+     * @param deadline the uptime after which this method no longer waits for tasks to be added
+     * @return true if any tasks were added to the group.
+     */
+    synchronized boolean takeMergeableTasks(GroupCommitTask group, int maxTasks, long deadline) {
+        while (true) {
+            int takenCount = 0;
+            for (DatabaseTask task : getTasksInPriorityOrder()) {
+                if (takenCount < maxTasks && task instanceof DatabaseNonQueryTask
+                        && !task.isCancelled()
+                        && !hasConflictWithEarlierTask(task)
+                        && !hasConflictWithOtherRunningTask(task, group)) {
+                    myPendingTasks.remove(task);
+                    task.markRunning();
+                    group.addMember((DatabaseNonQueryTask) task);
+                    takenCount++;
+                }
+            }
+
+            long now = now();
+            if (takenCount > 0) {
+                return true;
+            } else if (now >= deadline) {
+                return false;
+            }
+
+            try {
+                wait(deadline - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * This method returns the pending tasks sorted by their priority. The sort is stable so
+     * tasks with the same priority stay in the order they were added.
+     *
+     * @return
+     */
+    private List<DatabaseTask> getTasksInPriorityOrder() {
+        List<DatabaseTask> orderedTasks = new ArrayList<DatabaseTask>(myPendingTasks);
+        final long now = now();
+        Collections.sort(orderedTasks, new Comparator<DatabaseTask>() {
+            @Override
+            public int compare(DatabaseTask lhs, DatabaseTask rhs) {
+                int lhsPriority = getEffectivePriority(lhs, now);
+                int rhsPriority = getEffectivePriority(rhs, now);
+                return lhsPriority > rhsPriority ? -1 : (lhsPriority == rhsPriority ? 0 : 1);
+            }
+        });
+        return orderedTasks;
+    }
+
+    private static int getEffectivePriority(DatabaseTask task, long now) {
+        if (now - task.getQueuedTime() >= STARVATION_TIMEOUT_MILLIS) {
+            return Math.max(task.getPriority(), Datastore.PRIORITY_USER_VISIBLE);
+        }
+        return task.getPriority();
+    }
+
+    /**
+     * This method returns the current time used to age queued tasks. It can be overridden so
+     * that tests control the time.
+     *
+     * @return
+     */
+    long now() {
+        return SystemClock.uptimeMillis();
+    }
+
+    /**
+     * This method returns whether a task that was added to the queue before the passed in task
+     * and hasn't been started conflicts with it.
+     */
+    private boolean hasConflictWithEarlierTask(DatabaseTask task) {
+        for (DatabaseTask earlierTask : myPendingTasks) {
+            if (earlierTask == task) {
+                return false;
+            }
+            if (task.conflictsWith(earlierTask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isWriteRunning() {
+        for (DatabaseTask task : myRunningTasks) {
+            if (task.isWriteTask()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasConflictWithOtherRunningTask(DatabaseTask task, DatabaseTask runningTask) {
+        for (DatabaseTask otherTask : myRunningTasks) {
+            if (otherTask != runningTask && task.conflictsWith(otherTask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasConflict(DatabaseTask task, List<DatabaseTask> tasks) {
+        for (DatabaseTask otherTask : tasks) {
+            if (task.conflictsWith(otherTask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package com.stonecraft.datastore.interaction;
+
+import com.stonecraft.datastore.view.DatabaseColumn;
+
+/**
+ * This statement adds a column to an existing table without rebuilding the table.
+ */
+public class AddColumnStatement extends Statement {
+    private DatabaseColumn myColumn;
+
+    public AddColumnStatement(String table, DatabaseColumn column) {
+        super(table);
+        myColumn = column;
+    }
+
+    public DatabaseColumn getColumn() {
+        return myColumn;
+    }
+}
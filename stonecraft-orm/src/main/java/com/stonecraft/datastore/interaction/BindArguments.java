@@ -0,0 +1,148 @@
+package com.stonecraft.datastore.interaction;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class holds the arguments that are bound in place of the '?'s in a statement's where
+ * clause. Arguments keep their type so that they are bound as the type the column is stored as.
+ * Binding an INTEGER column's value as a String makes SQLite convert it on every comparison and
+ * can stop an index on the column from being used.
+ * <p/>
+ * Booleans are stored as 1 or 0, and Dates and Calendars are stored as their time in millis,
+ * the same way they are stored when they are inserted.
+ * <p/>
+ * Each type has it's own add method rather than an overload of one method, so passing a null
+ * to any of them still compiles.
+ */
+public class BindArguments {
+	private List<Object> myValues;
+	private List<String> myStringValues;
+
+	public BindArguments() {
+		myValues = new ArrayList<Object>();
+		myStringValues = new ArrayList<String>();
+	}
+
+	public BindArguments(BindArguments arguments) {
+		myValues = new ArrayList<Object>(arguments.myValues);
+		myStringValues = new ArrayList<String>(arguments.myStringValues);
+	}
+
+	public BindArguments(List<String> arguments) {
+		this();
+		if (arguments != null) {
+			myValues.addAll(arguments);
+			myStringValues.addAll(arguments);
+		}
+	}
+
+	public BindArguments addString(String value) {
+		myValues.add(value);
+		myStringValues.add(value);
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as an INTEGER. Typed arguments should be used
+	 * when comparing against non text columns so that SQLite doesn't need to convert the value
+	 * and can use any index on the column.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public BindArguments addLong(long value) {
+		myValues.add(value);
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as a REAL.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public BindArguments addDouble(double value) {
+		myValues.add(value);
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as 1 for true or 0 for false.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public BindArguments addBoolean(boolean value) {
+		myValues.add(value ? 1L : 0L);
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as a BLOB.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public BindArguments addBlob(byte[] value) {
+		myValues.add(value);
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as the time of the date in millis.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public BindArguments addDate(Date value) {
+		myValues.add(value == null ? null : value.getTime());
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as the time of the calendar in millis.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public BindArguments addCalendar(Calendar value) {
+		myValues.add(value == null ? null : value.getTimeInMillis());
+		return this;
+	}
+
+	/**
+	 * This method adds an argument that is bound as NULL.
+	 *
+	 * @return
+	 */
+	public BindArguments addNull() {
+		myValues.add(null);
+		return this;
+	}
+
+	/**
+	 * @return the arguments in the order they were added. Each value is either a String, Long,
+	 * Double, byte[] or null.
+	 */
+	public List<Object> getValues() {
+		return Collections.unmodifiableList(myValues);
+	}
+
+	/**
+	 * This method returns the arguments that were added as Strings, leaving out arguments of
+	 * other types. It backs the deprecated String argument getters of the statements.
+	 *
+	 * @return
+	 */
+	public List<String> getStringValues() {
+		return Collections.unmodifiableList(myStringValues);
+	}
+
+	public boolean isEmpty() {
+		return myValues.isEmpty();
+	}
+}
@@ -14,10 +14,11 @@ import java.util.List;
  */
 public class Delete extends Statement {
 	private String myWhereClause;
-	private List<String> myArguments;
+	private BindArguments myArguments;
 
 	public Delete(String tableName) {
 		super(tableName);
+		myArguments = new BindArguments();
 	}
 
 	/**
@@ -36,7 +37,7 @@ public class Delete extends Statement {
 						 List<String> whereArgs) {
 		super(tableName);
 		myWhereClause = whereClause;
-		myArguments = whereArgs;
+		myArguments = new BindArguments(whereArgs);
 	}
 
 	/**
@@ -47,10 +48,13 @@ public class Delete extends Statement {
 	}
 
 	/**
-	 * @return the arguments
+	 * @return the arguments that were added as Strings
+	 * @deprecated arguments added through getBindArguments() aren't included. Use
+	 * getBindArguments() instead.
 	 */
+	@Deprecated
 	public List<String> getArguments() {
-		return myArguments;
+		return myArguments.getStringValues();
 	}
 
 	/**+
@@ -72,16 +76,28 @@ public class Delete extends Statement {
 	/**
 	 * You may include ?s in selection, which will be replaced by the
 	 * values from selectionArgs, in order that they appear in the
-	 * selection. The values will be bound as Strings.
+	 * selection. The values will be bound as Strings. Use getBindArguments() to add
+	 * arguments of other types.
 	 *
 	 * @param arg
 	 * @return
 	 */
 	public Delete addArgument(String arg) {
-		myArguments.add(arg);
+		myArguments.addString(arg);
 		return this;
 	}
 
+	/**
+	 * This method returns the arguments that are bound in place of the '?'s in the where
+	 * clause. Arguments that aren't Strings are added to the returned object so they are
+	 * bound with their own type, eg. getBindArguments().addLong(id).
+	 *
+	 * @return
+	 */
+	public BindArguments getBindArguments() {
+		return myArguments;
+	}
+
 	@Override
 	public String toString() {
 		return myWhereClause;
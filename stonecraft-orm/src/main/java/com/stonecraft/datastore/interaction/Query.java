@@ -17,7 +17,7 @@ public class Query implements Cloneable {
 	private Boolean myIsdistinct;
 	private String[] myColumns;
 	private String myWhereClause;
-	private List<String> myArguments;
+	private BindArguments myArguments;
 	private String myGroupBy;
 	private String myHaving;
 	private String myOrderBy;
@@ -28,7 +28,7 @@ public class Query implements Cloneable {
 
 	public Query (String tableName) {
 		myTable = tableName;
-		myArguments = new ArrayList<String>();
+		myArguments = new BindArguments();
 		myJoins = new ArrayList<Join>();
 	}
 
@@ -36,7 +36,7 @@ public class Query implements Cloneable {
 		myIsdistinct = query.myIsdistinct;
 		myColumns = query.myColumns;
 		myWhereClause = query.myWhereClause;
-		myArguments = new ArrayList(query.myArguments);
+		myArguments = new BindArguments(query.myArguments);
 		myGroupBy = query.myGroupBy;
 		myHaving = query.myHaving;
 		myOrderBy = query.myOrderBy;
@@ -104,10 +104,13 @@ public class Query implements Cloneable {
 	}
 
 	/**
-	 * @return the selection arguments
+	 * @return the arguments that were added as Strings
+	 * @deprecated arguments added through getBindArguments() aren't included. Use
+	 * getBindArguments() instead.
 	 */
+	@Deprecated
 	public List<String> getSelectionArgs() {
-		return myArguments;
+		return myArguments.getStringValues();
 	}
 
 	/**
@@ -188,16 +191,28 @@ public class Query implements Cloneable {
 	/**
 	 * You may include ?s in selection, which will be replaced by the
 	 * values from selectionArgs, in order that they appear in the
-	 * selection. The values will be bound as Strings.
+	 * selection. The values will be bound as Strings. Use getBindArguments() to add
+	 * arguments of other types.
 	 *
 	 * @param arg
 	 * @return
 	 */
 	public Query addArgument(String arg) {
-		myArguments.add(arg);
+		myArguments.addString(arg);
 		return this;
 	}
 
+	/**
+	 * This method returns the arguments that are bound in place of the '?'s in the where
+	 * clause. Arguments that aren't Strings are added to the returned object so they are
+	 * bound with their own type, eg. getBindArguments().addLong(id).
+	 *
+	 * @return
+	 */
+	public BindArguments getBindArguments() {
+		return myArguments;
+	}
+
 	/**
 	 *  A filter declaring how to group rows, formatted as an SQL
 	 *  GROUP BY clause (excluding the GROUP BY itself). Passing null
@@ -2,7 +2,6 @@ package com.stonecraft.datastore.interaction;
 
 import android.text.TextUtils;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -19,17 +18,18 @@ import java.util.Map;
 public class Update<T> extends Statement {
 	private Map<String, Object> myValues;
 	private String myWhereClause;
-	private List<String> myArguments;
+	private BindArguments myArguments;
 	private T myUpdateClass;
 
 	public Update(String tableName, Map<String, Object> values) {
 		super(tableName);
 		myValues = values;
+		myArguments = new BindArguments();
 	}
 
 	public Update (String tableName, T updateClass) {
 		super(tableName);
-		myArguments = new ArrayList<String>();
+		myArguments = new BindArguments();
 		myUpdateClass = updateClass;
 	}
 
@@ -48,10 +48,13 @@ public class Update<T> extends Statement {
 	}
 
 	/**
-	 * @return the arguments
+	 * @return the arguments that were added as Strings
+	 * @deprecated arguments added through getBindArguments() aren't included. Use
+	 * getBindArguments() instead.
 	 */
+	@Deprecated
 	public List<String> getArguments() {
-		return myArguments;
+		return myArguments.getStringValues();
 	}
 
 	public T getUpdateClass() {
@@ -77,16 +80,28 @@ public class Update<T> extends Statement {
 	/**
 	 * You may include ?s in selection, which will be replaced by the
 	 * values from selectionArgs, in order that they appear in the
-	 * selection. The values will be bound as Strings.
+	 * selection. The values will be bound as Strings. Use getBindArguments() to add
+	 * arguments of other types.
 	 *
 	 * @param arg
 	 * @return
 	 */
 	public Update addArgument(String arg) {
-		myArguments.add(arg);
+		myArguments.addString(arg);
 		return this;
 	}
 
+	/**
+	 * This method returns the arguments that are bound in place of the '?'s in the where
+	 * clause. Arguments that aren't Strings are added to the returned object so they are
+	 * bound with their own type, eg. getBindArguments().addLong(id).
+	 *
+	 * @return
+	 */
+	public BindArguments getBindArguments() {
+		return myArguments;
+	}
+
 	@Override
 	public String toString() {
 		if(myValues != null) {
@@ -0,0 +1,135 @@
+package com.stonecraft.datastore.interaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class contains the required data to insert rows into a table or update them if they
+ * already exist. An object of this class is passed to Datastore to perform the upsert.
+ * <p/>
+ * By default a row already exists if a row with the same primary key is in the table. Use
+ * conflictColumns() to match rows on other columns that have a unique constraint. Where the
+ * database supports it the upsert is done with a single INSERT ... ON CONFLICT DO UPDATE
+ * statement for each row, otherwise each row is updated and then inserted if no row was updated.
+ * <p/>
+ * Alternatively a where clause can be set, in which case the rows matching the where clause are
+ * updated and the row is inserted if no rows match.
+ * <p/>
+ * Several rows can be upserted with one Upsert. The rows are read from the iterable when the
+ * statement is run.
+ */
+public class Upsert<T> extends Statement {
+	private Iterable<T> myRows;
+	private List<String> myConflictColumns;
+	private String myWhereClause;
+	private BindArguments myArguments;
+
+	/**
+	 * @param tableName
+	 * @param row either a map of column names to values or an object with fields annotated with
+	 *            DbColumnName
+	 */
+	public Upsert(String tableName, T row) {
+		this(tableName, Collections.singletonList(row));
+	}
+
+	/**
+	 * @param tableName
+	 * @param rows either maps of column names to values or objects with fields annotated with
+	 *             DbColumnName
+	 */
+	public Upsert(String tableName, Iterable<T> rows) {
+		super(tableName);
+		myRows = rows;
+		myArguments = new BindArguments();
+	}
+
+	/**
+	 * This method creates an upsert from the row of the passed in insert.
+	 *
+	 * @param insert
+	 * @return
+	 */
+	public static Upsert fromInsert(Insert insert) {
+		if (insert.getInsertRowClasses() != null) {
+			return new Upsert<Object>(insert.getTable(), insert.getInsertRowClasses());
+		}
+		return new Upsert<Map<String, Object>>(insert.getTable(), insert.getValues());
+	}
+
+	public Iterable<T> getRows() {
+		return myRows;
+	}
+
+	/**
+	 * @return the columns that decide whether a row already exists or null if the primary key
+	 * of the table is used.
+	 */
+	public List<String> getConflictColumns() {
+		return myConflictColumns;
+	}
+
+	/**
+	 * This method sets the columns that decide whether a row already exists. The columns must
+	 * have a unique constraint.
+	 *
+	 * @param columns
+	 * @return
+	 */
+	public Upsert<T> conflictColumns(String... columns) {
+		myConflictColumns = Arrays.asList(columns);
+		return this;
+	}
+
+	public String getWhereClause() {
+		return myWhereClause;
+	}
+
+	/**
+	 * This method sets a where clause, formatted as an SQL WHERE clause (excluding the WHERE
+	 * itself), that decides which rows are updated. The row is inserted if no rows match. This
+	 * should only be used when a single row is being upserted.
+	 *
+	 * The '?' character can be used in place of a parameter value if a paraterised
+	 * query is going to be used. Use addArgument to set the values for the query
+	 *
+	 * @param where
+	 * @return
+	 */
+	public Upsert<T> whereClause(String where) {
+		myWhereClause = where;
+		return this;
+	}
+
+	/**
+	 * You may include ?s in the where clause, which will be replaced by the
+	 * values from selectionArgs, in order that they appear in the
+	 * selection. The values will be bound as Strings. Use getBindArguments() to add
+	 * arguments of other types.
+	 *
+	 * @param arg
+	 * @return
+	 */
+	public Upsert<T> addArgument(String arg) {
+		myArguments.addString(arg);
+		return this;
+	}
+
+	/**
+	 * This method returns the arguments that are bound in place of the '?'s in the where
+	 * clause. Arguments that aren't Strings are added to the returned object so they are
+	 * bound with their own type, eg. getBindArguments().addLong(id).
+	 *
+	 * @return
+	 */
+	public BindArguments getBindArguments() {
+		return myArguments;
+	}
+
+	@Override
+	public String toString() {
+		return "Upsert into " + getTable();
+	}
+}
@@ -2,20 +2,27 @@ package com.stonecraft.datastore.interfaces;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.CancellationSignal;
 
+import com.stonecraft.datastore.BulkInsertOptions;
+import com.stonecraft.datastore.BulkInsertResult;
+import com.stonecraft.datastore.ConnectionSettings;
 import com.stonecraft.datastore.DbSchemaModel;
 import com.stonecraft.datastore.RSData;
 import com.stonecraft.datastore.RowCountQuery;
+import com.stonecraft.datastore.StatementCacheStats;
 import com.stonecraft.datastore.exceptions.DatabaseException;
 import com.stonecraft.datastore.interaction.Delete;
 import com.stonecraft.datastore.interaction.Insert;
 import com.stonecraft.datastore.interaction.Query;
 import com.stonecraft.datastore.interaction.Update;
+import com.stonecraft.datastore.interaction.Upsert;
 import com.stonecraft.datastore.view.DatabaseColumn;
 import com.stonecraft.datastore.view.DatabaseTable;
 import com.stonecraft.datastore.view.DatabaseViewFactory;
 
 import java.util.Calendar;
+import java.util.Iterator;
 
 /**
  * This Interface contains the methods for all interaction to any database.
@@ -85,6 +92,33 @@ public interface IDBConnector {
 	 */
 	public void rollBack() throws DatabaseException;
 
+	/**
+	 * This method creates a savepoint inside the current transaction. Changes made after the
+	 * savepoint can be undone with rollBackToSavepoint() without ending the transaction.
+	 *
+	 * @param name
+	 * @throws DatabaseException
+	 */
+	public void setSavepoint(String name) throws DatabaseException;
+
+	/**
+	 * This method removes a savepoint, keeping the changes made since it was created as part of
+	 * the current transaction.
+	 *
+	 * @param name
+	 * @throws DatabaseException
+	 */
+	public void releaseSavepoint(String name) throws DatabaseException;
+
+	/**
+	 * This method undoes all changes made since the savepoint was created. The savepoint is
+	 * left in place and must still be released.
+	 *
+	 * @param name
+	 * @throws DatabaseException
+	 */
+	public void rollBackToSavepoint(String name) throws DatabaseException;
+
 	/**
 	 * This method closes the database connection. This method cleans up the
 	 * database connection and ensures it is closed correctly
@@ -110,8 +144,64 @@ public interface IDBConnector {
 	 */
 	public RSData query(Query query) throws DatabaseException;
 
+	/**
+	 * This method performs a query on this connection in the same way as query(Query). If the
+	 * passed in signal is cancelled while the query is running an
+	 * android.os.OperationCanceledException will be thrown.
+	 *
+	 * @param query
+	 * @param cancellationSignal the signal used to cancel the query. This can be null
+	 * @return
+	 * @throws DatabaseException
+	 */
+	public RSData query(Query query, CancellationSignal cancellationSignal)
+			throws DatabaseException;
+
 	public long queryNumEntries(RowCountQuery query);
 
+	/**
+	 * This method returns the number of rows that match the passed in query. If the passed in
+	 * signal is cancelled while the query is running an android.os.OperationCanceledException
+	 * will be thrown.
+	 *
+	 * @param query
+	 * @param cancellationSignal the signal used to cancel the query. This can be null
+	 * @return
+	 */
+	public long queryNumEntries(RowCountQuery query, CancellationSignal cancellationSignal);
+
+	/**
+	 * This method returns the hit and miss counts of the connection's cache of compiled
+	 * insert, update and delete statements.
+	 *
+	 * @return
+	 */
+	public StatementCacheStats getStatementCacheStats();
+
+	/**
+	 * This method returns the settings the connection's database is running with, such as
+	 * whether write ahead logging is enabled and the values of it's PRAGMAs.
+	 *
+	 * @return
+	 */
+	public ConnectionSettings getConnectionSettings();
+
+	/**
+	 * This method inserts each row of the iterator into the table. The rows are inserted in
+	 * chunks of BulkInsertOptions.getChunkSize() rows, each in it's own transaction. If a row
+	 * fails to insert the chunk it is in is rolled back, but the chunks before it stay
+	 * committed.
+	 *
+	 * @param table
+	 * @param rows either maps of column names to values or objects with fields annotated with
+	 *             DbColumnName
+	 * @param options
+	 * @return
+	 * @throws DatabaseException
+	 */
+	public BulkInsertResult bulkInsert(String table, Iterator<?> rows, BulkInsertOptions options)
+			throws DatabaseException;
+
 	/**
 	 * This method inserts data into the database
 	 * 
@@ -130,6 +220,16 @@ public interface IDBConnector {
 	 */
 	public int update(Update update) throws DatabaseException;
 
+	/**
+	 * This method inserts the rows of the upsert, updating any row that already exists instead
+	 * of inserting it. This must be run inside a transaction.
+	 *
+	 * @param upsert
+	 * @return the number of rows inserted or updated
+	 * @throws DatabaseException
+	 */
+	public int upsert(Upsert upsert) throws DatabaseException;
+
 	/**
 	 * This method deletes data from the database
 	 * 
@@ -154,6 +254,18 @@ public interface IDBConnector {
 	 * @throws DatabaseException
 	 */
 	public RSData executeRawQuery(String stmt) throws DatabaseException;
+
+	/**
+	 * This method executes an sql query without any sort of validation. If the passed in signal
+	 * is cancelled while the query is running an android.os.OperationCanceledException will be
+	 * thrown.
+	 *
+	 * @param stmt
+	 * @param cancellationSignal the signal used to cancel the query. This can be null
+	 * @throws DatabaseException
+	 */
+	public RSData executeRawQuery(String stmt, CancellationSignal cancellationSignal)
+			throws DatabaseException;
 	
 	/**
 	 * This method checks if a table currently exists in the Database.
@@ -189,6 +301,26 @@ public interface IDBConnector {
      * @throws DatabaseException
      */
 	public void updateTable(DatabaseTable oldTable, DatabaseTable newTable) throws DatabaseException;
+
+	/**
+	 * This method adds the passed in column to an existing table without rebuilding the table.
+	 * The column must be one that {@link #canAddColumn(DatabaseColumn)} returns true for.
+	 *
+	 * @param tableName
+	 * @param column
+	 * @throws DatabaseException
+	 */
+	public void addColumn(String tableName, DatabaseColumn column) throws DatabaseException;
+
+	/**
+	 * This method checks if the passed in column can be added to an existing table with
+	 * {@link #addColumn(String, DatabaseColumn)}. If it can't the table must be rebuilt with
+	 * {@link #updateTable(DatabaseTable, DatabaseTable)}.
+	 *
+	 * @param column
+	 * @return
+	 */
+	public boolean canAddColumn(DatabaseColumn column);
 	
 	/** 
 	 * This method returns a new column object that represent a column for this type
@@ -228,5 +360,21 @@ public interface IDBConnector {
 
 	Calendar getTableChangeDate(String tableName);
 
+	/**
+	 * This method notifies anything watching the passed in table that it has changed. This
+	 * should be called once the changes have been committed.
+	 *
+	 * @param tableName
+	 */
 	void sendTableUpdateNotification(String tableName);
+
+	/**
+	 * This method adds a listener that is notified each time sendTableUpdateNotification() is
+	 * called on this connection.
+	 *
+	 * @param listener
+	 */
+	void addTableChangeListener(OnTableChangeListener listener);
+
+	void removeTableChangeListener(OnTableChangeListener listener);
 }
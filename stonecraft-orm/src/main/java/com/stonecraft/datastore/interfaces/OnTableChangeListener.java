@@ -0,0 +1,14 @@
+package com.stonecraft.datastore.interfaces;
+
+/**
+ * This interface is notified by an IDBConnector once changes to a table have been committed.
+ */
+public interface OnTableChangeListener {
+
+	/**
+	 * This method is called on the thread that committed the change.
+	 *
+	 * @param tableName
+	 */
+	void onTableChanged(String tableName);
+}
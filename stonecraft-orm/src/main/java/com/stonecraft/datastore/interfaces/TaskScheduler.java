@@ -0,0 +1,36 @@
+package com.stonecraft.datastore.interfaces;
+
+/**
+ * This interface is used by Datastore to run database tasks off the calling thread.
+ * <p/>
+ * Tasks that modify the database are passed to executeWrite() and must be run one at a time in
+ * the order they were received. Tasks that only read from the database are passed to
+ * executeRead() and may be run concurrently with each other.
+ * <p/>
+ * An implementation can be passed into Datastore.createConnection() so that a connection can be
+ * given it's own threads, or so that tests can run the tasks on a thread they control.
+ */
+public interface TaskScheduler {
+    /**
+     * This method runs a task that only reads from the database.
+     *
+     * @param task
+     */
+    void executeRead(Runnable task);
+
+    /**
+     * This method runs a task that modifies the database. Write tasks must not be run
+     * concurrently with each other.
+     *
+     * @param task
+     */
+    void executeWrite(Runnable task);
+
+    /**
+     * This method runs the passed in runnable on the thread that the listeners of a task are to
+     * be notified on once the task has completed.
+     *
+     * @param result
+     */
+    void deliverResult(Runnable result);
+}
@@ -3,12 +3,15 @@ package com.stonecraft.datastore.parser;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.text.TextUtils;
+import android.util.Log;
 
+import com.stonecraft.datastore.ConnectionConfig;
 import com.stonecraft.datastore.DbSchemaModel;
 import com.stonecraft.datastore.DatabaseUtils;
 import com.stonecraft.datastore.exceptions.SchemaParseException;
 import com.stonecraft.datastore.utils.StringUtils;
 import com.stonecraft.datastore.view.DatabaseColumn;
+import com.stonecraft.datastore.view.DatabaseIndex;
 import com.stonecraft.datastore.view.DatabaseTable;
 import com.stonecraft.datastore.view.SQLiteColumn;
 import com.stonecraft.datastore.view.SQLiteTable;
@@ -17,11 +20,12 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -55,57 +59,118 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 	private static final String LENGTH = "length";
 	private static final String URI = "uri";
 	private static final String DEFAULT = "Default";
+	private static final String INDEX = "Index";
+	private static final String INDEX_COLUMNS = "Columns";
+	private static final String WHERE = "Where";
+	private static final String UNIQUE = "unique";
+	private static final String CONNECTION = "Connection";
+	private static final String WRITE_AHEAD_LOGGING = "WriteAheadLogging";
+	private static final String FOREIGN_KEYS = "ForeignKeys";
+	private static final String STATEMENT_CACHE_SIZE = "StatementCacheSize";
+	private static final String PRAGMA = "Pragma";
+
+	private static final int READ_BUFFER_SIZE = 8192;
 
 	private DbSchemaModel mySchema;
 	private OnSchemaModelCreated myOnSchemaModelCreated;
+	private File myFilesDir;
 
 	public DatabaseParser(OnSchemaModelCreated listener) {
+		this(listener, null);
+	}
+
+	/**
+	 * This constructor creates a parser that caches the parsed schema in the passed in
+	 * directory. When the same xml is parsed again the schema is loaded from the cache instead.
+	 *
+	 * @param listener
+	 * @param filesDir the app's files directory or null if the schema isn't cached
+	 */
+	public DatabaseParser(OnSchemaModelCreated listener, File filesDir) {
 		mySchema = new DbSchemaModel();
 		myOnSchemaModelCreated = listener;
+		myFilesDir = filesDir;
 	}
 
 	@Override
 	protected DbSchemaModel doInBackground(InputStream... params) {
 		try {
-			SAXParserFactory factory = SAXParserFactory.newInstance();
-			SAXParser saxParser = factory.newSAXParser();
-			saxParser.parse(params[0], myHandler);
-		} catch (MalformedURLException e) {
-			// TODO
-			// throw cannot complete exception
-			System.out.println("MalformedURLException " + e);
-			e.printStackTrace();
-		} catch (IOException e) {
-			// TODO
-			// throw cannot complete exception
-			System.out.println("IOException " + e);
-			e.printStackTrace();
-		} catch (SAXException e) {
-			// TODO
-			// throw cannot complete exception
-			System.out.println("SAXException " + e);
-			e.printStackTrace();
-		} catch (ParserConfigurationException e) {
-			// TODO
-			// throw cannot complete exception
-			System.out.println("ParserConfigurationException " + e);
-			e.printStackTrace();
+			mySchema = parseSchema(params[0]);
+		} catch (RuntimeException e) {
+			SchemaParseException parseException = e instanceof SchemaParseException
+					? (SchemaParseException)e
+					: new SchemaParseException("Failed to parse the database xml", e);
+			Log.e(DatabaseParser.class.getSimpleName(), "Failed to parse the database xml",
+					parseException);
+			myOnSchemaModelCreated.OnSchemaParseFailed(parseException);
+			return null;
 		}
-
 		myOnSchemaModelCreated.OnSchemaModelCreated(mySchema);
 
 		return mySchema;
 	}
 
+	/**
+	 * This method loads the schema from the cache or parses it from the passed in xml. A schema
+	 * is only cached once the whole of the xml has been parsed.
+	 *
+	 * @param is
+	 * @return
+	 * @throws SchemaParseException if the xml could not be read or parsed
+	 */
+	private DbSchemaModel parseSchema(InputStream is) {
+		try {
+			byte[] xml = readFully(is);
+			SchemaCache cache = myFilesDir == null ? null : new SchemaCache(myFilesDir, xml);
+			DbSchemaModel cachedSchema = cache == null ? null : cache.load();
+			if (cachedSchema != null) {
+				return cachedSchema;
+			}
+
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			SAXParser saxParser = factory.newSAXParser();
+			saxParser.parse(new ByteArrayInputStream(xml), myHandler);
+			if (cache != null) {
+				cache.store(mySchema);
+			}
+			return mySchema;
+		} catch (IOException | SAXException | ParserConfigurationException e) {
+			throw new SchemaParseException("Failed to parse the database xml", e);
+		}
+	}
+
+	/**
+	 * This method reads the whole of the passed in stream and closes it. The xml is read up
+	 * front so it can be hashed to find it in the cache.
+	 *
+	 * @param is
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] readFully(InputStream is) throws IOException {
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(Math.max(is.available(),
+					READ_BUFFER_SIZE));
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				os.write(buffer, 0, read);
+			}
+			return os.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
 	public DbSchemaModel parse(String databaseLocation) {
 		try {
 			InputStream is = new FileInputStream(new File(databaseLocation));
 			execute(is);
 		} catch (IOException e) {
-			// TODO
-			// throw cannot complete exception
-			System.out.println("IOException " + e);
-			e.printStackTrace();
+			Log.e(DatabaseParser.class.getSimpleName(), "Failed to open the database xml "
+					+ databaseLocation, e);
+			throw new SchemaParseException("Failed to open the database xml "
+					+ databaseLocation, e);
 		}
 		return mySchema;
 	}
@@ -117,6 +182,9 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 
 		private Map<String, String> myTableValues;
 		private Map<String, String> myColumnValues;
+		private Map<String, String> myIndexValues;
+		private List<Map<String, String>> myIndexes = new ArrayList<Map<String, String>>();
+		private String myPragmaName;
 
 		private List<DatabaseColumn> myCols = new ArrayList<DatabaseColumn>();
 
@@ -130,6 +198,14 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 				myCurrentBlock = qName;
 			} else if (myCurrentElement.equalsIgnoreCase(COLUMN)) {
 				myCurrentBlock = qName;
+			} else if (myCurrentElement.equalsIgnoreCase(INDEX)) {
+				myCurrentBlock = qName;
+				myIndexValues = new HashMap<String, String>();
+				myIndexValues.put(UNIQUE, attributes.getValue(UNIQUE));
+			} else if (myCurrentElement.equalsIgnoreCase(CONNECTION)) {
+				myCurrentBlock = qName;
+			} else if (myCurrentElement.equalsIgnoreCase(PRAGMA)) {
+				myPragmaName = attributes.getValue(NAME.toLowerCase());
 			}
 
             //Starts a new table block
@@ -157,9 +233,6 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 		public void endElement(String uri, String localName, String qName)
 				throws SAXException {
             String tagTextValue = myTagTextBuilder.toString().replace("(\\r|\\n|\\t)", "");
-            if(tagTextValue.equals("CONTACTS")){
-                String breakHere = "";
-            }
 			if (myCurrentBlock.equalsIgnoreCase(SCHEMA)) {
 				if (myCurrentElement.equalsIgnoreCase(NAME)) {
 					mySchema.setName(tagTextValue);
@@ -167,6 +240,13 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 					mySchema.setVersion(Integer.parseInt(tagTextValue));
 				}
 
+			} else if (myCurrentBlock.equalsIgnoreCase(CONNECTION)
+					&& !TextUtils.isEmpty(myCurrentElement)) {
+				setConnectionValue(myCurrentElement, tagTextValue.trim());
+			} else if (myCurrentBlock.equalsIgnoreCase(INDEX)
+					&& !myCurrentBlock.equalsIgnoreCase(myCurrentElement)
+					&& !TextUtils.isEmpty(myCurrentElement)) {
+				myIndexValues.put(myCurrentElement, tagTextValue);
 			} else if (myCurrentBlock.equalsIgnoreCase(TABLE)
 					&& !myCurrentBlock.equalsIgnoreCase(myCurrentElement)) {
 				myTableValues.put(myCurrentElement, tagTextValue);
@@ -184,13 +264,24 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 							"the table element " + myTableValues.get(NAME));
 				}
 
-				mySchema.addTable(buildTable());
+				DatabaseTable table = buildTable();
+				for (Map<String, String> indexValues : myIndexes) {
+					table.addIndex(buildIndex(table.getName(), indexValues));
+				}
+				mySchema.addTable(table);
 				myTableValues = new HashMap<String, String>();
 				myCols = new ArrayList<DatabaseColumn>();
+				myIndexes = new ArrayList<Map<String, String>>();
 
 			} else if (qName.equalsIgnoreCase(COLUMN)) {
 				myCols.add(buildCol());
 				myColumnValues = new HashMap<String, String>();
+			} else if (qName.equalsIgnoreCase(INDEX)) {
+				myIndexes.add(myIndexValues);
+				// the rest of the elements belong to the table again
+				myCurrentBlock = TABLE;
+			} else if (qName.equalsIgnoreCase(CONNECTION)) {
+				myCurrentBlock = SCHEMA;
 			}
 		}
 
@@ -198,7 +289,7 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 				throws SAXException {
 
 			if(!TextUtils.isEmpty(myCurrentElement)) {
-				myTagTextBuilder.append(new String(ch, start, start + length));
+				myTagTextBuilder.append(ch, start, length);
 			}
 		}
 
@@ -210,18 +301,76 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 		 * @return
 		 */
 		private DatabaseTable buildTable() {
+			String name = myTableValues.get(NAME);
 			try {
-				String name = myTableValues.get(NAME);
 				String uri = myTableValues.get(URI);
 				DatabaseTable table = new SQLiteTable(name, Uri.parse(uri));
 				for (DatabaseColumn col : myCols) {
 					table.addColumn(col);
 				}
 				return table;
-			} catch (Exception e) {
-				System.out.println("Failed to create Table " + e);
+			} catch (RuntimeException e) {
+				throw new SchemaParseException("Failed to create table " + name, e);
 			}
-			return null;
+		}
+
+		/**
+		 * This method sets the value of an element of the Connection block in the schema's
+		 * connection config.
+		 *
+		 * @param element
+		 * @param value
+		 */
+		private void setConnectionValue(String element, String value) {
+			ConnectionConfig config = mySchema.getConnectionConfig();
+			try {
+				if (element.equalsIgnoreCase(WRITE_AHEAD_LOGGING)) {
+					config.setWriteAheadLoggingEnabled(
+							value.equalsIgnoreCase(Boolean.TRUE.toString()));
+				} else if (element.equalsIgnoreCase(FOREIGN_KEYS)) {
+					config.setForeignKeysEnabled(value.equalsIgnoreCase(Boolean.TRUE.toString()));
+				} else if (element.equalsIgnoreCase(STATEMENT_CACHE_SIZE)) {
+					config.setMaxSqlCacheSize(Integer.parseInt(value));
+				} else if (element.equalsIgnoreCase(PRAGMA)) {
+					config.setPragma(myPragmaName, value);
+				}
+			} catch (IllegalArgumentException e) {
+				throw new SchemaParseException("Invalid connection setting " + element
+						+ " [" + e.getMessage() + "]", e);
+			}
+		}
+
+		/**
+		 * This method builds an index on the passed in table from the values of an Index
+		 * element. The indexed columns are a comma delimited list.
+		 *
+		 * @param tableName
+		 * @param indexValues
+		 * @return
+		 */
+		private DatabaseIndex buildIndex(String tableName, Map<String, String> indexValues) {
+			String name = indexValues.get(NAME);
+			if(TextUtils.isEmpty(name)) {
+				throw new SchemaParseException("There was no name in an index element of table "
+						+ tableName);
+			}
+
+			List<String> columns = new ArrayList<String>();
+			for(String column : StringUtils.getStringNotNull(
+					indexValues.get(INDEX_COLUMNS)).split(StringUtils.COMMA)) {
+				if(!TextUtils.isEmpty(column.trim())) {
+					columns.add(column.trim());
+				}
+			}
+			if(columns.isEmpty()) {
+				throw new SchemaParseException("There were no columns in the index element "
+						+ name);
+			}
+
+			boolean unique = StringUtils.getStringNotNull(
+					indexValues.get(UNIQUE)).equalsIgnoreCase(Boolean.TRUE.toString());
+
+			return new DatabaseIndex(name, tableName, columns, unique, indexValues.get(WHERE));
 		}
 
 		/**
@@ -266,5 +415,13 @@ public class DatabaseParser extends AsyncTask<InputStream, Void, DbSchemaModel>{
 
 	public interface OnSchemaModelCreated {
 		void OnSchemaModelCreated(DbSchemaModel schema);
+
+		/**
+		 * This method is called instead of OnSchemaModelCreated when the xml could not be read
+		 * or is invalid.
+		 *
+		 * @param e
+		 */
+		void OnSchemaParseFailed(SchemaParseException e);
 	}
 }
@@ -0,0 +1,371 @@
+package com.stonecraft.datastore.parser;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.stonecraft.datastore.ConnectionConfig;
+import com.stonecraft.datastore.DbSchemaModel;
+import com.stonecraft.datastore.view.DatabaseColumn;
+import com.stonecraft.datastore.view.DatabaseIndex;
+import com.stonecraft.datastore.view.DatabaseTable;
+import com.stonecraft.datastore.view.SQLiteColumn;
+import com.stonecraft.datastore.view.SQLiteTable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class stores parsed schemas in a binary file so the schema xml doesn't have to be parsed
+ * again the next time the app starts. Each file is named after the SHA-1 hash of the xml it was
+ * parsed from, so a changed xml is never loaded from an old file. The file is memory mapped when
+ * it is read.
+ * <p>
+ * The file starts with a magic number, the format version and the hash of the xml, followed by
+ * the schema. A file that doesn't match any of these is ignored and deleted. When a schema is
+ * stored, the files of older versions of the same schema are deleted.
+ */
+class SchemaCache {
+	private static final String CACHE_DIR = "stonecraft_schema_cache";
+	private static final String CACHE_EXTENSION = ".schema";
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final String CHARSET = "UTF-8";
+	private static final int HASH_LENGTH = 20;
+	private static final int MAGIC = 0x5343534D;
+	/**
+	 * This must be incremented whenever the format of the file changes.
+	 */
+	private static final int FORMAT_VERSION = 1;
+	private static final int NULL_LENGTH = -1;
+	private static final byte UNSET = -1;
+	private static final int FLAG_PRIMARY_KEY = 1;
+	private static final int FLAG_NULLABLE = 1 << 1;
+	private static final int FLAG_AUTO_INCREMENT = 1 << 2;
+
+	private File myCacheDir;
+	private byte[] myHash;
+
+	/**
+	 * @param filesDir the app's files directory
+	 * @param xml the contents of the schema xml
+	 */
+	SchemaCache(File filesDir, byte[] xml) {
+		myCacheDir = new File(filesDir, CACHE_DIR);
+		myHash = hash(xml);
+	}
+
+	/**
+	 * This method returns the schema stored for the xml or null if there isn't one.
+	 *
+	 * @return
+	 */
+	DbSchemaModel load() {
+		File file = getCacheFile();
+		if (!file.exists()) {
+			return null;
+		}
+
+		FileInputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			FileChannel channel = is.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				channel.size());
+			if (!readHeader(buffer, myHash)) {
+				throw new IOException("The header doesn't match");
+			}
+			return readSchema(buffer);
+		} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+			Log.w(SchemaCache.class.getSimpleName(), "Discarding the schema cache "
+				+ file.getName() + " [" + e + "]");
+			file.delete();
+		} finally {
+			close(is);
+		}
+
+		return null;
+	}
+
+	/**
+	 * This method stores the passed in schema for the xml and deletes the files of older
+	 * versions of the schema. The file is written to a temporary file first so a partly
+	 * written file is never loaded.
+	 *
+	 * @param schema
+	 */
+	void store(DbSchemaModel schema) {
+		if (!myCacheDir.isDirectory() && !myCacheDir.mkdirs()) {
+			Log.w(SchemaCache.class.getSimpleName(), "Failed to create the schema cache "
+				+ "directory");
+			return;
+		}
+
+		File file = getCacheFile();
+		File tempFile = new File(myCacheDir, file.getName() + TEMP_EXTENSION);
+		DataOutputStream os = null;
+		try {
+			os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			os.writeInt(MAGIC);
+			os.writeInt(FORMAT_VERSION);
+			os.write(myHash);
+			writeSchema(os, schema);
+			os.close();
+			os = null;
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Failed to rename " + tempFile.getName());
+			}
+		} catch (IOException e) {
+			Log.w(SchemaCache.class.getSimpleName(), "Failed to store the schema cache ["
+				+ e + "]");
+			close(os);
+			tempFile.delete();
+			return;
+		}
+
+		deleteOldVersions(schema.getName(), file);
+	}
+
+	private File getCacheFile() {
+		StringBuilder name = new StringBuilder(myHash.length * 2 + CACHE_EXTENSION.length());
+		for (byte b : myHash) {
+			name.append(Character.forDigit((b >> 4) & 0xF, 16))
+				.append(Character.forDigit(b & 0xF, 16));
+		}
+		return new File(myCacheDir, name.append(CACHE_EXTENSION).toString());
+	}
+
+	/**
+	 * This method deletes every other cache file that holds a schema with the passed in name.
+	 */
+	private void deleteOldVersions(String schemaName, File currentFile) {
+		File[] files = myCacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			if (file.equals(currentFile) || !file.getName().endsWith(CACHE_EXTENSION)) {
+				continue;
+			}
+
+			String name = null;
+			FileInputStream is = null;
+			try {
+				is = new FileInputStream(file);
+				FileChannel channel = is.getChannel();
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+				if (readHeader(buffer, null)) {
+					name = readString(buffer);
+				}
+			} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+				// a file that can't be read is no use to any schema
+			} finally {
+				close(is);
+			}
+
+			if (name == null || name.equals(schemaName)) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * This method reads the header and checks it is a header of this version of the format.
+	 *
+	 * @param buffer
+	 * @param hash the hash the file must have or null if the hash isn't checked
+	 * @return
+	 */
+	private static boolean readHeader(ByteBuffer buffer, byte[] hash) {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+			return false;
+		}
+		byte[] fileHash = new byte[HASH_LENGTH];
+		buffer.get(fileHash);
+
+		return hash == null || Arrays.equals(hash, fileHash);
+	}
+
+	private static void writeSchema(DataOutputStream os, DbSchemaModel schema)
+			throws IOException {
+		writeString(os, schema.getName());
+		os.writeInt(schema.getVersion());
+
+		ConnectionConfig config = schema.getConnectionConfig();
+		writeBoolean(os, config.isWriteAheadLoggingEnabled());
+		writeBoolean(os, config.isForeignKeysEnabled());
+		os.writeInt(config.getMaxSqlCacheSize());
+		os.writeInt(config.getPragmas().size());
+		for (Map.Entry<String, String> pragma : config.getPragmas().entrySet()) {
+			writeString(os, pragma.getKey());
+			writeString(os, pragma.getValue());
+		}
+
+		os.writeInt(schema.getTables().size());
+		for (DatabaseTable table : schema.getTables().values()) {
+			writeString(os, table.getName());
+			writeString(os, table.getUri() == null ? null : table.getUri().toString());
+
+			os.writeInt(table.getColumns().size());
+			for (DatabaseColumn column : table.getColumns().values()) {
+				writeString(os, column.getName());
+				os.writeInt(column.getType());
+				os.writeInt(column.getLength());
+				int flags = 0;
+				if (column.isPrimarykey()) {
+					flags |= FLAG_PRIMARY_KEY;
+				}
+				if (column.isNullable()) {
+					flags |= FLAG_NULLABLE;
+				}
+				if (column.isAutoIncrement()) {
+					flags |= FLAG_AUTO_INCREMENT;
+				}
+				os.writeByte(flags);
+				writeString(os, column.getDefaultValue());
+			}
+
+			os.writeInt(table.getIndexes().size());
+			for (DatabaseIndex index : table.getIndexes().values()) {
+				writeString(os, index.getName());
+				os.writeInt(index.getColumns().size());
+				for (String column : index.getColumns()) {
+					writeString(os, column);
+				}
+				os.writeBoolean(index.isUnique());
+				writeString(os, index.getWhereClause());
+			}
+		}
+	}
+
+	private static DbSchemaModel readSchema(ByteBuffer buffer) throws IOException {
+		DbSchemaModel schema = new DbSchemaModel();
+		schema.setName(readString(buffer));
+		schema.setVersion(buffer.getInt());
+
+		ConnectionConfig config = schema.getConnectionConfig();
+		byte isWalEnabled = buffer.get();
+		if (isWalEnabled != UNSET) {
+			config.setWriteAheadLoggingEnabled(isWalEnabled == 1);
+		}
+		byte isForeignKeysEnabled = buffer.get();
+		if (isForeignKeysEnabled != UNSET) {
+			config.setForeignKeysEnabled(isForeignKeysEnabled == 1);
+		}
+		int maxSqlCacheSize = buffer.getInt();
+		if (maxSqlCacheSize > 0) {
+			config.setMaxSqlCacheSize(maxSqlCacheSize);
+		}
+		int pragmaCount = buffer.getInt();
+		for (int i = 0; i < pragmaCount; i++) {
+			config.setPragma(readString(buffer), readString(buffer));
+		}
+
+		int tableCount = buffer.getInt();
+		for (int i = 0; i < tableCount; i++) {
+			String tableName = readString(buffer);
+			String uri = readString(buffer);
+			DatabaseTable table = new SQLiteTable(tableName, uri == null ? null : Uri.parse(uri));
+
+			int columnCount = buffer.getInt();
+			for (int j = 0; j < columnCount; j++) {
+				String name = readString(buffer);
+				int type = buffer.getInt();
+				int length = buffer.getInt();
+				int flags = buffer.get();
+				DatabaseColumn column = new SQLiteColumn(name, type, length,
+					(flags & FLAG_PRIMARY_KEY) != 0, (flags & FLAG_NULLABLE) != 0,
+					(flags & FLAG_AUTO_INCREMENT) != 0);
+				String defaultValue = readString(buffer);
+				if (defaultValue != null) {
+					column.setDefaultValue(defaultValue);
+				}
+				table.addColumn(column);
+			}
+
+			int indexCount = buffer.getInt();
+			for (int j = 0; j < indexCount; j++) {
+				String name = readString(buffer);
+				int indexColumnCount = buffer.getInt();
+				List<String> columns = new ArrayList<String>(indexColumnCount);
+				for (int k = 0; k < indexColumnCount; k++) {
+					columns.add(readString(buffer));
+				}
+				boolean isUnique = buffer.get() != 0;
+				table.addIndex(new DatabaseIndex(name, tableName, columns, isUnique,
+					readString(buffer)));
+			}
+
+			schema.addTable(table);
+		}
+
+		if (buffer.hasRemaining()) {
+			throw new IOException("Unexpected data after the schema");
+		}
+
+		return schema;
+	}
+
+	private static void writeBoolean(DataOutputStream os, Boolean value) throws IOException {
+		os.writeByte(value == null ? UNSET : value ? 1 : 0);
+	}
+
+	private static void writeString(DataOutputStream os, String value) throws IOException {
+		if (value == null) {
+			os.writeInt(NULL_LENGTH);
+			return;
+		}
+		byte[] bytes = value.getBytes(CHARSET);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+		int length = buffer.getInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	private static byte[] hash(byte[] xml) {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM).digest(xml);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Failed to hash the schema xml", e);
+		}
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// nothing can be done if the file fails to close
+		}
+	}
+}
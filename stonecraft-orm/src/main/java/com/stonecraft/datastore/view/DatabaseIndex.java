@@ -0,0 +1,135 @@
+package com.stonecraft.datastore.view;
+
+import android.text.TextUtils;
+
+import com.stonecraft.datastore.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents an index declared on a table in the schema. An index can be on one or
+ * more columns, can be unique and can be a partial index that only contains the rows matching
+ * its where clause.
+ */
+public class DatabaseIndex {
+	public static final String CREATE_INDEX = "CREATE INDEX";
+	public static final String CREATE_UNIQUE_INDEX = "CREATE UNIQUE INDEX";
+	private static final String IF_NOT_EXISTS = "IF NOT EXISTS";
+	private static final String DROP_INDEX = "DROP INDEX IF EXISTS %s";
+
+	private String myName;
+	private String myTable;
+	private List<String> myColumns;
+	private boolean myIsUnique;
+	private String myWhereClause;
+
+	/**
+	 * @param name
+	 * @param table
+	 * @param columns the indexed columns in order. A column can be followed by ASC, DESC or
+	 *                COLLATE.
+	 * @param isUnique
+	 * @param whereClause the where clause of a partial index or null if every row is indexed
+	 */
+	public DatabaseIndex(String name, String table, List<String> columns, boolean isUnique,
+			String whereClause) {
+		myName = name;
+		myTable = table;
+		myColumns = new ArrayList<String>(columns);
+		myIsUnique = isUnique;
+		myWhereClause = TextUtils.isEmpty(whereClause) ? null : whereClause.trim();
+	}
+
+	public String getName() {
+		return myName;
+	}
+
+	public String getTable() {
+		return myTable;
+	}
+
+	public List<String> getColumns() {
+		return myColumns;
+	}
+
+	public boolean isUnique() {
+		return myIsUnique;
+	}
+
+	public String getWhereClause() {
+		return myWhereClause;
+	}
+
+	/**
+	 * This method returns the statement that creates this index if it doesn't already exist.
+	 *
+	 * @return
+	 */
+	public String getCreateIndexStmt() {
+		return buildCreateStatement(true);
+	}
+
+	/**
+	 * This method returns the definition of this index in the form SQLite stores it in
+	 * sqlite_master, which is the create statement without IF NOT EXISTS. It is compared with
+	 * the stored definition to find if an existing index has changed.
+	 *
+	 * @return
+	 */
+	public String getDefinition() {
+		return buildCreateStatement(false);
+	}
+
+	/**
+	 * This method returns the statement that drops this index.
+	 *
+	 * @return
+	 */
+	public String getDropIndexStmt() {
+		return getDropIndexStmt(myName);
+	}
+
+	/**
+	 * This method returns the statement that drops the index with the passed in name.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static String getDropIndexStmt(String name) {
+		return String.format(DROP_INDEX, name);
+	}
+
+	private String buildCreateStatement(boolean ifNotExists) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(myIsUnique ? CREATE_UNIQUE_INDEX : CREATE_INDEX).append(" ");
+		if (ifNotExists) {
+			builder.append(IF_NOT_EXISTS).append(" ");
+		}
+		builder.append(myName).append(" ON ").append(myTable).append("(");
+		builder.append(StringUtils.convertListToDelimitedString(myColumns, StringUtils.COMMA));
+		builder.append(")");
+		if (myWhereClause != null) {
+			builder.append(" WHERE ").append(myWhereClause);
+		}
+
+		return builder.toString();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof DatabaseIndex)) {
+			return false;
+		}
+
+		return getDefinition().equals(((DatabaseIndex)o).getDefinition());
+	}
+
+	@Override
+	public int hashCode() {
+		return getDefinition().hashCode();
+	}
+}
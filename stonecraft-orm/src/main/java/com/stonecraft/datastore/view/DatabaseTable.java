@@ -8,6 +8,7 @@ import com.stonecraft.datastore.utils.StringUtils;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +30,7 @@ public abstract class DatabaseTable {
 	protected Uri myUri;
 	protected String myName;
 	protected Map<String, DatabaseColumn> myColumns;
+	protected Map<String, DatabaseIndex> myIndexes;
 	protected boolean myIsTempTable;
 	protected Calendar myLastTableUpdate;
 
@@ -36,6 +38,7 @@ public abstract class DatabaseTable {
 		myName = name;
 		myUri = uri;
 		myColumns = new HashMap<String, DatabaseColumn>();
+		myIndexes = new LinkedHashMap<String, DatabaseIndex>();
 	}
 	
 	/**
@@ -58,6 +61,16 @@ public abstract class DatabaseTable {
 		return builder.toString();
 	}
 
+	/**
+	 * This method returns the name of the temporary table that is used while the table with
+	 * the passed in name is being rebuilt
+	 * @param name
+	 * @return
+	 */
+	public static String getTempTableName(String name) {
+		return PREFIX_TEMP + name;
+	}
+
 	/**
 	 * This method returns the column in this table with the given name
 	 * @param name
@@ -82,6 +95,17 @@ public abstract class DatabaseTable {
 		myColumns.put(col.getName(), col);
 	}
 
+	/**
+	 * @return the indexes declared on this table
+	 */
+	public Map<String, DatabaseIndex> getIndexes() {
+		return myIndexes;
+	}
+
+	public void addIndex(DatabaseIndex index) {
+		myIndexes.put(index.getName(), index);
+	}
+
 	/**
 	 * @return the isTempTable
 	 */
@@ -0,0 +1,139 @@
+package com.stonecraft.datastore;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseTaskTest {
+    private static final String TABLE_A = "table_a";
+    private static final String TABLE_C = "table_c";
+
+    private ManualTaskScheduler myScheduler;
+    private Datastore myDatastore;
+    private TaskQueue myQueue;
+    private List<String> myLog;
+
+    @Before
+    public void setUp() throws DatabaseException {
+        myScheduler = new ManualTaskScheduler();
+        Datastore.createConnection(ApplicationProvider.getApplicationContext(),
+                new TestSchemaFactory(), null, myScheduler, null);
+        myDatastore = Datastore.getDataStore(TestSchemaFactory.NAME);
+        myQueue = new TaskQueue();
+        myLog = new ArrayList<String>();
+    }
+
+    @Test
+    public void testPendingWriteIsCancelledAndRemovedFromTheQueue() {
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        myQueue.add(writeA);
+
+        assertTrue(writeA.cancel());
+        assertTrue(writeA.isCancelled());
+        myScheduler.runAll();
+
+        assertEquals(Collections.singletonList("writeC"), myLog);
+        assertFalse(writeA.isNotified());
+    }
+
+    @Test
+    public void testWriteThatHasLeftTheQueueIsNotCancelled() {
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        myQueue.add(writeA);
+
+        assertFalse(writeA.cancel());
+        assertFalse(writeA.isCancelled());
+        myScheduler.runAll();
+
+        assertEquals(Collections.singletonList("writeA"), myLog);
+        assertTrue(writeA.isNotified());
+    }
+
+    @Test
+    public void testRunningReadIsCancelled() {
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        myQueue.add(readA);
+
+        assertTrue(readA.cancel());
+        assertTrue(readA.isCancelled());
+        myScheduler.runAll();
+
+        assertTrue(myLog.isEmpty());
+        assertFalse(readA.isNotified());
+    }
+
+    @Test
+    public void testCancellingPendingTaskStartsTheTasksWaitingOnIt() {
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        RecordingTask readA2 = RecordingTask.read(myDatastore, myLog, "readA2", TABLE_A);
+        myQueue.add(readA);
+        myQueue.add(writeA);
+        myQueue.add(readA2);
+        assertEquals(Arrays.<Runnable>asList(readA), myScheduler.getPendingReads());
+
+        assertTrue(writeA.cancel());
+
+        assertEquals(Arrays.<Runnable>asList(readA, readA2), myScheduler.getPendingReads());
+        assertTrue(myScheduler.getPendingWrites().isEmpty());
+    }
+
+    @Test
+    public void testFinishedTaskIsNotCancelled() {
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        myQueue.add(readA);
+        myScheduler.runAll();
+
+        assertFalse(readA.cancel());
+        assertFalse(readA.isCancelled());
+        assertTrue(readA.isNotified());
+    }
+
+    @Test
+    public void testFutureOfPendingWriteIsCancelled() {
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        DatastoreFuture<Object> future = new DatastoreFuture<Object>();
+        writeA.setFuture(future);
+        myQueue.add(writeA);
+
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(writeA.isCancelled());
+        myScheduler.runAll();
+
+        assertEquals(Collections.singletonList("writeC"), myLog);
+    }
+
+    @Test
+    public void testFutureOfRunningWriteCompletesWithTheWritesResult() throws Exception {
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        DatastoreFuture<Object> future = new DatastoreFuture<Object>();
+        writeA.setFuture(future);
+        myQueue.add(writeA);
+
+        assertFalse(future.cancel(false));
+        assertFalse(future.isDone());
+        myScheduler.runNextWrite();
+
+        assertFalse(future.isCancelled());
+        assertEquals("writeA", future.get());
+        assertTrue(writeA.isNotified());
+    }
+}
@@ -0,0 +1,94 @@
+package com.stonecraft.datastore;
+
+import android.net.Uri;
+
+import com.stonecraft.datastore.view.DatabaseIndex;
+import com.stonecraft.datastore.view.DatabaseTable;
+import com.stonecraft.datastore.view.SQLiteColumn;
+import com.stonecraft.datastore.view.SQLiteTable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class DbSchemaModelTest {
+    private static final String TABLE_ITEMS = "items";
+    private static final String TABLE_NOTES = "notes";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_TEXT = "text";
+    private static final String INDEX_TEXT = "items_text";
+
+    @Test
+    public void testHashIsTheSameWhateverTheDeclarationOrder() {
+        DbSchemaModel schema = new DbSchemaModel();
+        schema.addTable(createTable(TABLE_ITEMS, false, false));
+        schema.addTable(createTable(TABLE_NOTES, false, false));
+
+        DbSchemaModel reordered = new DbSchemaModel();
+        reordered.addTable(createTable(TABLE_NOTES, true, false));
+        reordered.addTable(createTable(TABLE_ITEMS, true, false));
+
+        assertEquals(schema.getSchemaHash(), reordered.getSchemaHash());
+    }
+
+    @Test
+    public void testHashDoesNotDependOnTheVersion() {
+        DbSchemaModel schema = createSchema(false);
+        schema.setVersion(1);
+        DbSchemaModel nextVersion = createSchema(false);
+        nextVersion.setVersion(2);
+
+        assertEquals(schema.getSchemaHash(), nextVersion.getSchemaHash());
+    }
+
+    @Test
+    public void testHashChangesWhenAColumnChanges() {
+        DbSchemaModel schema = createSchema(false);
+        DbSchemaModel changed = createSchema(false);
+        // the text column can now be null
+        changed.getTable(TABLE_ITEMS).addColumn(new SQLiteColumn(COLUMN_TEXT,
+                DBConstants.DATATYPE_INT_STRING, 0, false, true));
+
+        assertNotEquals(schema.getSchemaHash(), changed.getSchemaHash());
+    }
+
+    @Test
+    public void testHashChangesWhenAnIndexIsAdded() {
+        assertNotEquals(createSchema(false).getSchemaHash(), createSchema(true).getSchemaHash());
+    }
+
+    private static DbSchemaModel createSchema(boolean hasIndex) {
+        DbSchemaModel schema = new DbSchemaModel();
+        schema.setName(TestSchemaFactory.NAME);
+        schema.addTable(createTable(TABLE_ITEMS, false, hasIndex));
+        return schema;
+    }
+
+    /**
+     * @param name
+     * @param isReversed true to declare the columns of the table in the reverse order
+     * @param hasIndex true to add an index on the text column
+     * @return
+     */
+    private static DatabaseTable createTable(String name, boolean isReversed, boolean hasIndex) {
+        DatabaseTable table = new SQLiteTable(name,
+                Uri.parse("content://" + TestSchemaFactory.NAME + "/" + name));
+        SQLiteColumn id = new SQLiteColumn(COLUMN_ID, DBConstants.DATATYPE_INT_INTEGER, 0,
+                true, false);
+        SQLiteColumn text = new SQLiteColumn(COLUMN_TEXT, DBConstants.DATATYPE_INT_STRING, 0,
+                false, false);
+        table.addColumn(isReversed ? text : id);
+        table.addColumn(isReversed ? id : text);
+        if (hasIndex) {
+            table.addIndex(new DatabaseIndex(INDEX_TEXT, name,
+                    Collections.singletonList(COLUMN_TEXT), false, null));
+        }
+        return table;
+    }
+}
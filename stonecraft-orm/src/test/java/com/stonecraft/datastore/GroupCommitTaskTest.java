@@ -0,0 +1,106 @@
+package com.stonecraft.datastore;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+import com.stonecraft.datastore.interaction.Insert;
+import com.stonecraft.datastore.interfaces.OnNonQueryComplete;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class GroupCommitTaskTest {
+    private ManualTaskScheduler myScheduler;
+    private Datastore myDatastore;
+    private Map<Integer, Object> myResults;
+
+    @Before
+    public void setUp() throws DatabaseException {
+        myScheduler = new ManualTaskScheduler();
+        Datastore.createConnection(ApplicationProvider.getApplicationContext(),
+                new TestSchemaFactory(), null, myScheduler, null);
+        myDatastore = Datastore.getDataStore(TestSchemaFactory.NAME);
+        myScheduler.runAll();
+        myResults = new HashMap<Integer, Object>();
+    }
+
+    @After
+    public void tearDown() throws DatabaseException {
+        myDatastore.closeAndRemoveConnection();
+    }
+
+    @Test
+    public void testFailedTaskDoesNotStopTheRestOfTheGroupFromBeingCommitted()
+            throws DatabaseException {
+        myDatastore.setGroupCommit(10, 0);
+        myDatastore.executeNonQuery(1, createInsert(TestSchemaFactory.TABLE_ITEMS, "first"),
+                new RecordingListener());
+        // the text column can't be null so this insert fails
+        myDatastore.executeNonQuery(2, createInsert(TestSchemaFactory.TABLE_NOTES, null),
+                new RecordingListener());
+        myDatastore.executeNonQuery(3, createInsert(TestSchemaFactory.TABLE_ITEMS, "second"),
+                new RecordingListener());
+
+        myScheduler.runAll();
+
+        assertEquals(1, myResults.get(1));
+        assertTrue(myResults.get(2) instanceof DatabaseException);
+        assertEquals(1, myResults.get(3));
+        assertEquals(2L, myDatastore.executeAggregateQuery(
+                new RowCountQuery(TestSchemaFactory.TABLE_ITEMS)));
+        assertEquals(0L, myDatastore.executeAggregateQuery(
+                new RowCountQuery(TestSchemaFactory.TABLE_NOTES)));
+        assertNotNull(myDatastore.getLastTableUpdateTime(TestSchemaFactory.TABLE_ITEMS));
+        assertNull(myDatastore.getLastTableUpdateTime(TestSchemaFactory.TABLE_NOTES));
+    }
+
+    @Test
+    public void testEveryTaskOfTheGroupIsCommitted() throws DatabaseException {
+        myDatastore.setGroupCommit(10, 0);
+        for (int i = 0; i < 3; i++) {
+            myDatastore.executeNonQuery(i, createInsert(TestSchemaFactory.TABLE_ITEMS,
+                    "item " + i), new RecordingListener());
+        }
+
+        myScheduler.runAll();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, myResults.get(i));
+        }
+        assertEquals(3L, myDatastore.executeAggregateQuery(
+                new RowCountQuery(TestSchemaFactory.TABLE_ITEMS)));
+    }
+
+    private static Insert createInsert(String table, String text) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put(TestSchemaFactory.COLUMN_TEXT, text);
+        return new Insert(table, values);
+    }
+
+    /**
+     * This class adds the result of each statement to myResults under the statement's token.
+     */
+    private class RecordingListener implements OnNonQueryComplete {
+        @Override
+        public void onNonQueryComplete(int token, int updated) {
+            myResults.put(token, updated);
+        }
+
+        @Override
+        public void onNonQueryFailed(int token, DatabaseException e) {
+            myResults.put(token, e);
+        }
+    }
+}
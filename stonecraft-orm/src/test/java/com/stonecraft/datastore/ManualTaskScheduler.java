@@ -0,0 +1,110 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.interfaces.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a TaskScheduler for tests that doesn't run anything until it is told to. The
+ * reads, writes and results it is given are each held in the order they were passed in, so a
+ * test decides exactly when each one is run and can check what has been started in between.
+ * Everything is run on the test's thread.
+ */
+class ManualTaskScheduler implements TaskScheduler {
+    private final List<Runnable> myReads = new ArrayList<Runnable>();
+    private final List<Runnable> myWrites = new ArrayList<Runnable>();
+    private final List<Runnable> myResults = new ArrayList<Runnable>();
+
+    @Override
+    public synchronized void executeRead(Runnable task) {
+        myReads.add(task);
+    }
+
+    @Override
+    public synchronized void executeWrite(Runnable task) {
+        myWrites.add(task);
+    }
+
+    @Override
+    public synchronized void deliverResult(Runnable result) {
+        myResults.add(result);
+    }
+
+    /**
+     * @return the reads that have been passed to this scheduler and not run yet
+     */
+    synchronized List<Runnable> getPendingReads() {
+        return new ArrayList<Runnable>(myReads);
+    }
+
+    /**
+     * @return the writes that have been passed to this scheduler and not run yet
+     */
+    synchronized List<Runnable> getPendingWrites() {
+        return new ArrayList<Runnable>(myWrites);
+    }
+
+    /**
+     * This method runs the read that was passed in first.
+     *
+     * @return false if there were no reads to run
+     */
+    boolean runNextRead() {
+        return runNext(myReads);
+    }
+
+    /**
+     * This method runs the write that was passed in first.
+     *
+     * @return false if there were no writes to run
+     */
+    boolean runNextWrite() {
+        return runNext(myWrites);
+    }
+
+    /**
+     * This method runs the passed in read, which must be waiting in this scheduler.
+     *
+     * @param task
+     */
+    void runRead(Runnable task) {
+        synchronized (this) {
+            if (!myReads.remove(task)) {
+                throw new IllegalStateException("The read hasn't been passed to the scheduler");
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * This method delivers every result that is waiting, including results that are passed in
+     * while they are being delivered.
+     */
+    void deliverResults() {
+        while (runNext(myResults)) {
+            // keep going until there are no results left
+        }
+    }
+
+    /**
+     * This method runs every read, write and result until there is nothing left to run.
+     */
+    void runAll() {
+        while (runNextWrite() || runNextRead() || runNext(myResults)) {
+            // keep going until there is nothing left
+        }
+    }
+
+    private boolean runNext(List<Runnable> runnables) {
+        Runnable runnable;
+        synchronized (this) {
+            if (runnables.isEmpty()) {
+                return false;
+            }
+            runnable = runnables.remove(0);
+        }
+        runnable.run();
+        return true;
+    }
+}
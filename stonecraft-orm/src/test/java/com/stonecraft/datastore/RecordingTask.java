@@ -0,0 +1,88 @@
+package com.stonecraft.datastore;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class is a task for tests that adds it's name to a log when it is run instead of
+ * touching the database, so the order tasks are started in can be checked.
+ */
+class RecordingTask extends DatabaseTask {
+    private final String myName;
+    private final boolean myIsWrite;
+    private final Set<String> myTables;
+    private final List<String> myLog;
+    private boolean myIsNotified;
+
+    /**
+     * @param datastore the datastore whose scheduler the task is run on
+     * @param log the list the task's name is added to when it is run
+     * @param name
+     * @param isWrite
+     * @param tables the tables the task touches. No tables means every table.
+     */
+    RecordingTask(Datastore datastore, List<String> log, String name, boolean isWrite,
+                  String... tables) {
+        super(0, 0, datastore);
+        myName = name;
+        myIsWrite = isWrite;
+        myTables = tables.length == 0 ? null : createTableSet(tables);
+        myLog = log;
+    }
+
+    static RecordingTask read(Datastore datastore, List<String> log, String name,
+                              String... tables) {
+        return new RecordingTask(datastore, log, name, false, tables);
+    }
+
+    static RecordingTask write(Datastore datastore, List<String> log, String name,
+                               String... tables) {
+        return new RecordingTask(datastore, log, name, true, tables);
+    }
+
+    static RecordingTask write(Datastore datastore, List<String> log, String name,
+                               int priority, String... tables) {
+        RecordingTask task = write(datastore, log, name, tables);
+        task.setPriority(priority);
+        return task;
+    }
+
+    /**
+     * @return true if the statement listeners of this task have been notified
+     */
+    boolean isNotified() {
+        return myIsNotified;
+    }
+
+    @Override
+    public void startTask() throws DatabaseException {
+        myLog.add(myName);
+    }
+
+    @Override
+    boolean isWriteTask() {
+        return myIsWrite;
+    }
+
+    @Override
+    Set<String> getTables() {
+        return myTables;
+    }
+
+    @Override
+    Object getResult() {
+        return myName;
+    }
+
+    @Override
+    void notifyStmtListeners(DatabaseException e) {
+        myIsNotified = true;
+    }
+
+    @Override
+    public String toString() {
+        return myName;
+    }
+}
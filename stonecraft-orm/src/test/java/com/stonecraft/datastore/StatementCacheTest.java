@@ -0,0 +1,108 @@
+package com.stonecraft.datastore;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class StatementCacheTest {
+    private static final String SQL_INSERT_A = "INSERT INTO items (text) VALUES (?)";
+    private static final String SQL_INSERT_B = "INSERT INTO items (id, text) VALUES (?, ?)";
+    private static final String SQL_DELETE = "DELETE FROM items WHERE id = ?";
+
+    private SQLiteDatabase myDatabase;
+    private StatementCache myCache;
+
+    @Before
+    public void setUp() {
+        myDatabase = SQLiteDatabase.create(null);
+        myDatabase.execSQL("CREATE TABLE items (id INTEGER PRIMARY KEY, text TEXT NOT NULL)");
+        myCache = new StatementCache(2);
+    }
+
+    @After
+    public void tearDown() {
+        myCache.clear();
+        myDatabase.close();
+    }
+
+    @Test
+    public void testCachedStatementIsReturnedForTheSameSql() {
+        SQLiteStatement first = get(myDatabase, SQL_INSERT_A);
+        SQLiteStatement second = get(myDatabase, SQL_INSERT_A);
+
+        assertSame(first, second);
+        StatementCacheStats stats = myCache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+        assertEquals(2, stats.getMaxSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsEvicted() {
+        SQLiteStatement insertA = get(myDatabase, SQL_INSERT_A);
+        SQLiteStatement insertB = get(myDatabase, SQL_INSERT_B);
+        // using insertA again makes insertB the least recently used statement
+        get(myDatabase, SQL_INSERT_A);
+        get(myDatabase, SQL_DELETE);
+
+        assertSame(insertA, get(myDatabase, SQL_INSERT_A));
+        assertNotSame(insertB, get(myDatabase, SQL_INSERT_B));
+        StatementCacheStats stats = myCache.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(4, stats.getMissCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testCacheIsClearedWhenTheDatabaseChanges() {
+        SQLiteStatement first = get(myDatabase, SQL_INSERT_A);
+        SQLiteDatabase otherDatabase = SQLiteDatabase.create(null);
+        try {
+            otherDatabase.execSQL(
+                    "CREATE TABLE items (id INTEGER PRIMARY KEY, text TEXT NOT NULL)");
+            SQLiteStatement second = get(otherDatabase, SQL_INSERT_A);
+
+            assertNotSame(first, second);
+            assertEquals(0, myCache.getStats().getHitCount());
+            assertEquals(1, myCache.getStats().getSize());
+        } finally {
+            myCache.clear();
+            otherDatabase.close();
+        }
+    }
+
+    @Test
+    public void testClearRemovesEveryStatement() {
+        get(myDatabase, SQL_INSERT_A);
+        get(myDatabase, SQL_DELETE);
+
+        myCache.clear();
+
+        assertEquals(0, myCache.getStats().getSize());
+    }
+
+    /**
+     * This method gets a statement from the cache and releases the reference that was acquired
+     * for it, as a caller would once it had finished with the statement.
+     *
+     * @param db
+     * @param sql
+     * @return
+     */
+    private SQLiteStatement get(SQLiteDatabase db, String sql) {
+        SQLiteStatement stmt = myCache.get(db, sql);
+        stmt.releaseReference();
+        return stmt;
+    }
+}
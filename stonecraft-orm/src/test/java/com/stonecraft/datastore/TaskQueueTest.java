@@ -0,0 +1,216 @@
+package com.stonecraft.datastore;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.stonecraft.datastore.exceptions.DatabaseException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class TaskQueueTest {
+    private static final String TABLE_A = "table_a";
+    private static final String TABLE_B = "table_b";
+    private static final String TABLE_C = "table_c";
+
+    private ManualTaskScheduler myScheduler;
+    private Datastore myDatastore;
+    private TaskQueue myQueue;
+    private List<String> myLog;
+
+    @Before
+    public void setUp() throws DatabaseException {
+        myScheduler = new ManualTaskScheduler();
+        Datastore.createConnection(ApplicationProvider.getApplicationContext(),
+                new TestSchemaFactory(), null, myScheduler, null);
+        myDatastore = Datastore.getDataStore(TestSchemaFactory.NAME);
+        myQueue = new TaskQueue();
+        myLog = new ArrayList<String>();
+    }
+
+    @Test
+    public void testReadsAreStartedTogether() {
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        RecordingTask readA2 = RecordingTask.read(myDatastore, myLog, "readA2", TABLE_A);
+        myQueue.add(readA);
+        myQueue.add(readA2);
+
+        assertEquals(Arrays.<Runnable>asList(readA, readA2), myScheduler.getPendingReads());
+    }
+
+    @Test
+    public void testOnlyOneWriteIsStartedAtATime() {
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        RecordingTask writeB = RecordingTask.write(myDatastore, myLog, "writeB", TABLE_B);
+        myQueue.add(writeA);
+        myQueue.add(writeB);
+
+        assertEquals(Arrays.<Runnable>asList(writeA), myScheduler.getPendingWrites());
+        myScheduler.runNextWrite();
+        assertEquals(Arrays.<Runnable>asList(writeB), myScheduler.getPendingWrites());
+    }
+
+    @Test
+    public void testReadWaitsForEarlierWriteToItsTable() {
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        RecordingTask readB = RecordingTask.read(myDatastore, myLog, "readB", TABLE_B);
+        myQueue.add(writeA);
+        myQueue.add(readA);
+        myQueue.add(readB);
+
+        assertEquals(Arrays.<Runnable>asList(readB), myScheduler.getPendingReads());
+        myScheduler.runNextWrite();
+        assertEquals(Arrays.<Runnable>asList(readB, readA), myScheduler.getPendingReads());
+    }
+
+    @Test
+    public void testWriteWaitsForRunningReadOfItsTable() {
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        RecordingTask writeB = RecordingTask.write(myDatastore, myLog, "writeB", TABLE_B);
+        myQueue.add(readA);
+        myQueue.add(writeA);
+        myQueue.add(writeB);
+
+        assertEquals(Arrays.<Runnable>asList(writeB), myScheduler.getPendingWrites());
+        myScheduler.runNextWrite();
+        assertTrue(myScheduler.getPendingWrites().isEmpty());
+        myScheduler.runNextRead();
+        assertEquals(Arrays.<Runnable>asList(writeA), myScheduler.getPendingWrites());
+    }
+
+    @Test
+    public void testTaskWithUnknownTablesConflictsWithEveryTable() {
+        RecordingTask rawWrite = RecordingTask.write(myDatastore, myLog, "rawWrite");
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        myQueue.add(rawWrite);
+        myQueue.add(readA);
+
+        assertTrue(myScheduler.getPendingReads().isEmpty());
+        myScheduler.runNextWrite();
+        assertEquals(Arrays.<Runnable>asList(readA), myScheduler.getPendingReads());
+    }
+
+    @Test
+    public void testConflictingTasksRunInTheOrderTheyWereAdded() {
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeA1", TABLE_A));
+        myQueue.add(RecordingTask.read(myDatastore, myLog, "readA", TABLE_A));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeA2", TABLE_A));
+
+        myScheduler.runAll();
+
+        assertEquals(Arrays.asList("writeC", "writeA1", "readA", "writeA2"), myLog);
+    }
+
+    @Test
+    public void testHigherPriorityTaskIsStartedFirst() {
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "backgroundA",
+                Datastore.PRIORITY_BACKGROUND, TABLE_A));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "userVisibleB",
+                Datastore.PRIORITY_USER_VISIBLE, TABLE_B));
+
+        myScheduler.runAll();
+
+        assertEquals(Arrays.asList("writeC", "userVisibleB", "backgroundA"), myLog);
+    }
+
+    @Test
+    public void testPriorityDoesNotReorderConflictingTasks() {
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "deleteA",
+                Datastore.PRIORITY_BACKGROUND, TABLE_A));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "insertA",
+                Datastore.PRIORITY_NORMAL, TABLE_A));
+
+        myScheduler.runAll();
+
+        assertEquals(Arrays.asList("writeC", "deleteA", "insertA"), myLog);
+    }
+
+    @Test
+    public void testUserVisibleReadWaitsForEarlierWriteToItsTable() {
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        myQueue.add(RecordingTask.write(myDatastore, myLog, "writeA",
+                Datastore.PRIORITY_BACKGROUND, TABLE_A));
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        readA.setPriority(Datastore.PRIORITY_USER_VISIBLE);
+        RecordingTask readB = RecordingTask.read(myDatastore, myLog, "readB", TABLE_B);
+        readB.setPriority(Datastore.PRIORITY_USER_VISIBLE);
+        myQueue.add(readA);
+        myQueue.add(readB);
+
+        assertEquals(Arrays.<Runnable>asList(readB), myScheduler.getPendingReads());
+        myScheduler.runNextWrite();
+        assertEquals(Arrays.<Runnable>asList(readB), myScheduler.getPendingReads());
+        myScheduler.runNextWrite();
+        assertEquals(Arrays.<Runnable>asList(readB, readA), myScheduler.getPendingReads());
+    }
+
+    @Test
+    public void testStarvedTaskIsStartedAheadOfHigherPriorityTasks() {
+        ManualClockTaskQueue queue = new ManualClockTaskQueue();
+        queue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        queue.add(RecordingTask.write(myDatastore, myLog, "backgroundA",
+                Datastore.PRIORITY_BACKGROUND, TABLE_A));
+        queue.myNow = TaskQueue.STARVATION_TIMEOUT_MILLIS - 1;
+        queue.add(RecordingTask.write(myDatastore, myLog, "userVisibleB",
+                Datastore.PRIORITY_USER_VISIBLE, TABLE_B));
+
+        queue.myNow = TaskQueue.STARVATION_TIMEOUT_MILLIS;
+        myScheduler.runAll();
+
+        assertEquals(Arrays.asList("writeC", "backgroundA", "userVisibleB"), myLog);
+    }
+
+    @Test
+    public void testTaskKeepsItsPriorityUntilItIsStarved() {
+        ManualClockTaskQueue queue = new ManualClockTaskQueue();
+        queue.add(RecordingTask.write(myDatastore, myLog, "writeC", TABLE_C));
+        queue.add(RecordingTask.write(myDatastore, myLog, "backgroundA",
+                Datastore.PRIORITY_BACKGROUND, TABLE_A));
+        queue.add(RecordingTask.write(myDatastore, myLog, "normalB",
+                Datastore.PRIORITY_NORMAL, TABLE_B));
+
+        queue.myNow = TaskQueue.STARVATION_TIMEOUT_MILLIS - 1;
+        myScheduler.runAll();
+
+        assertEquals(Arrays.asList("writeC", "normalB", "backgroundA"), myLog);
+    }
+
+    @Test
+    public void testFinishedTaskIsRemovedFromTheQueue() {
+        RecordingTask writeA = RecordingTask.write(myDatastore, myLog, "writeA", TABLE_A);
+        myQueue.add(writeA);
+        myScheduler.runAll();
+
+        assertFalse(myQueue.remove(writeA));
+        RecordingTask readA = RecordingTask.read(myDatastore, myLog, "readA", TABLE_A);
+        myQueue.add(readA);
+        assertEquals(Arrays.<Runnable>asList(readA), myScheduler.getPendingReads());
+    }
+
+    /**
+     * This class is a queue whose time is set by the test rather than read from the clock.
+     */
+    private static class ManualClockTaskQueue extends TaskQueue {
+        long myNow;
+
+        @Override
+        long now() {
+            return myNow;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.stonecraft.datastore;
+
+import android.net.Uri;
+
+import com.stonecraft.datastore.view.DatabaseTable;
+import com.stonecraft.datastore.view.SQLiteColumn;
+import com.stonecraft.datastore.view.SQLiteTable;
+
+/**
+ * This class creates the schema of the database the tests are run against. Each table has an
+ * integer primary key and a text column that can't be null.
+ */
+class TestSchemaFactory implements SchemaFactory {
+    static final String NAME = "stonecraft_test";
+    static final String TABLE_ITEMS = "items";
+    static final String TABLE_NOTES = "notes";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_TEXT = "text";
+
+    @Override
+    public DbSchemaModel createSchema() {
+        DbSchemaModel schema = new DbSchemaModel();
+        schema.setName(NAME);
+        schema.setVersion(1);
+        schema.addTable(createTable(TABLE_ITEMS));
+        schema.addTable(createTable(TABLE_NOTES));
+        return schema;
+    }
+
+    static DatabaseTable createTable(String name) {
+        DatabaseTable table = new SQLiteTable(name, Uri.parse("content://" + NAME + "/" + name));
+        table.addColumn(new SQLiteColumn(COLUMN_ID, DBConstants.DATATYPE_INT_INTEGER, 0,
+                true, false));
+        table.addColumn(new SQLiteColumn(COLUMN_TEXT, DBConstants.DATATYPE_INT_STRING, 0,
+                false, false));
+        return table;
+    }
+}
@@ -0,0 +1,163 @@
+package com.stonecraft.datastore.parser;
+
+import android.net.Uri;
+
+import com.stonecraft.datastore.ConnectionConfig;
+import com.stonecraft.datastore.DBConstants;
+import com.stonecraft.datastore.DbSchemaModel;
+import com.stonecraft.datastore.view.DatabaseColumn;
+import com.stonecraft.datastore.view.DatabaseIndex;
+import com.stonecraft.datastore.view.DatabaseTable;
+import com.stonecraft.datastore.view.SQLiteColumn;
+import com.stonecraft.datastore.view.SQLiteTable;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SchemaCacheTest {
+    private static final String CACHE_DIR = "stonecraft_schema_cache";
+    private static final String NAME = "cache_test";
+    private static final String TABLE_ITEMS = "items";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_TEXT = "text";
+    private static final String INDEX_TEXT = "items_text";
+    private static final byte[] XML = "<database name=\"cache_test\" version=\"1\"/>".getBytes();
+    private static final byte[] XML_V2 = "<database name=\"cache_test\" version=\"2\"/>".getBytes();
+
+    @Rule
+    public TemporaryFolder myFolder = new TemporaryFolder();
+
+    private File myFilesDir;
+
+    @Before
+    public void setUp() throws IOException {
+        myFilesDir = myFolder.newFolder("files");
+    }
+
+    @Test
+    public void testStoredSchemaIsLoaded() {
+        DbSchemaModel schema = createSchema(NAME, 1);
+        new SchemaCache(myFilesDir, XML).store(schema);
+
+        DbSchemaModel loaded = new SchemaCache(myFilesDir, XML).load();
+
+        assertNotNull(loaded);
+        assertEquals(NAME, loaded.getName());
+        assertEquals(1, loaded.getVersion());
+        ConnectionConfig config = loaded.getConnectionConfig();
+        assertEquals(Boolean.TRUE, config.isWriteAheadLoggingEnabled());
+        assertNull(config.isForeignKeysEnabled());
+        assertEquals(schema.getConnectionConfig().getPragmas(), config.getPragmas());
+
+        DatabaseTable table = loaded.getTable(TABLE_ITEMS);
+        assertNotNull(table);
+        assertEquals(schema.getTable(TABLE_ITEMS).getUri(), table.getUri());
+        DatabaseColumn id = table.getColumn(COLUMN_ID);
+        assertTrue(id.isPrimarykey());
+        assertTrue(id.isAutoIncrement());
+        assertFalse(id.isNullable());
+        DatabaseColumn text = table.getColumn(COLUMN_TEXT);
+        assertEquals(DBConstants.DATATYPE_INT_STRING, text.getType());
+        assertEquals(50, text.getLength());
+        assertTrue(text.isNullable());
+        assertEquals("'none'", text.getDefaultValue());
+        assertEquals(schema.getTable(TABLE_ITEMS).getIndexes(), table.getIndexes());
+        assertEquals(schema.getSchemaHash(), loaded.getSchemaHash());
+    }
+
+    @Test
+    public void testSchemaOfAnotherXmlIsNotLoaded() {
+        new SchemaCache(myFilesDir, XML).store(createSchema(NAME, 1));
+
+        assertNull(new SchemaCache(myFilesDir, XML_V2).load());
+    }
+
+    @Test
+    public void testTruncatedFileIsDiscarded() throws IOException {
+        new SchemaCache(myFilesDir, XML).store(createSchema(NAME, 1));
+        File file = getCacheFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+
+        assertNull(new SchemaCache(myFilesDir, XML).load());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testCorruptFileIsDiscarded() throws IOException {
+        new SchemaCache(myFilesDir, XML).store(createSchema(NAME, 1));
+        File file = getCacheFiles()[0];
+        byte[] garbage = new byte[64];
+        Arrays.fill(garbage, (byte) 0x7F);
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(garbage);
+        } finally {
+            os.close();
+        }
+
+        assertNull(new SchemaCache(myFilesDir, XML).load());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testStoringNewVersionDeletesTheOldVersion() {
+        new SchemaCache(myFilesDir, XML).store(createSchema(NAME, 1));
+        new SchemaCache(myFilesDir, "<database name=\"other\"/>".getBytes())
+                .store(createSchema("other", 1));
+        new SchemaCache(myFilesDir, XML_V2).store(createSchema(NAME, 2));
+
+        assertEquals(2, getCacheFiles().length);
+        assertNull(new SchemaCache(myFilesDir, XML).load());
+        assertEquals(2, new SchemaCache(myFilesDir, XML_V2).load().getVersion());
+    }
+
+    private File[] getCacheFiles() {
+        File[] files = new File(myFilesDir, CACHE_DIR).listFiles();
+        assertNotNull(files);
+        return files;
+    }
+
+    private static DbSchemaModel createSchema(String name, int version) {
+        DbSchemaModel schema = new DbSchemaModel();
+        schema.setName(name);
+        schema.setVersion(version);
+        schema.getConnectionConfig()
+                .setWriteAheadLoggingEnabled(true)
+                .setSynchronous(ConnectionConfig.SYNCHRONOUS_NORMAL);
+
+        DatabaseTable table = new SQLiteTable(TABLE_ITEMS,
+                Uri.parse("content://" + name + "/" + TABLE_ITEMS));
+        table.addColumn(new SQLiteColumn(COLUMN_ID, DBConstants.DATATYPE_INT_INTEGER, 0,
+                true, false, true));
+        DatabaseColumn text = new SQLiteColumn(COLUMN_TEXT, DBConstants.DATATYPE_INT_STRING, 50,
+                false, true);
+        text.setDefaultValue("'none'");
+        table.addColumn(text);
+        table.addIndex(new DatabaseIndex(INDEX_TEXT, TABLE_ITEMS,
+                Arrays.asList(COLUMN_TEXT), true, "text IS NOT NULL"));
+        schema.addTable(table);
+        return schema;
+    }
+}